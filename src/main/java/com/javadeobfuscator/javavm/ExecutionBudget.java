@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.javadeobfuscator.javavm;
+
+import com.javadeobfuscator.javavm.exceptions.AbortException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Counts what an execution has used against the budgets in its {@link ExecutionOptions}, and aborts it with an
+ * {@link AbortException} once one runs out. Every method the execution calls shares the same budget, and so do paths
+ * explored in parallel, which is why the counts are atomic. Paths run on a pool thread start out at the depth of the
+ * call they branched from.
+ * <p>
+ * Each thread counts instructions against its own view of the budget, see {@link #forThread}. A view takes
+ * instructions from the shared count a chunk at a time, so the shared count is only touched once every
+ * {@link #CHUNK} instructions. Another thread may hold up to a chunk it hasn't used yet, so with several threads an
+ * execution can run out up to a chunk per thread early.
+ */
+public class ExecutionBudget {
+    // instructions taken from the shared count at a time, which is also how often the clock is read
+    private static final int CHUNK = 1024;
+
+    private final Shared shared;
+    // instructions this thread has taken but not executed yet
+    private long _credit;
+
+    ExecutionBudget(ExecutionOptions options) {
+        this.shared = new Shared(options);
+    }
+
+    private ExecutionBudget(Shared shared) {
+        this.shared = shared;
+    }
+
+    /*
+     * A view of the same budget for another thread to count against
+     */
+    ExecutionBudget forThread() {
+        return new ExecutionBudget(shared);
+    }
+
+    /*
+     * Hands what this view hasn't used back, once its thread is done with it
+     */
+    void release() {
+        if (_credit > 0) {
+            Shared.RESERVED.addAndGet(shared, -_credit);
+            _credit = 0;
+        }
+    }
+
+    void instructions(int count) {
+        _credit -= count;
+        if (_credit < 0) {
+            refill();
+        }
+    }
+
+    private void refill() {
+        long reserved = Shared.RESERVED.addAndGet(shared, CHUNK);
+        // whatever the chunk took beyond the budget isn't there to use
+        _credit += Math.min(CHUNK, shared._maxInstructions - (reserved - CHUNK));
+        if (_credit < 0) {
+            throw new AbortException("Exceeded the budget of " + shared._maxInstructions + " instructions");
+        }
+        if (shared._timed && System.nanoTime() - shared._deadline > 0) {
+            throw new AbortException("Exceeded the time budget after " + getInstructions() + " instructions");
+        }
+    }
+
+    void enter(int depth) {
+        if (depth > shared._maxDepth) {
+            throw new AbortException("Exceeded the budget of " + shared._maxDepth + " nested calls");
+        }
+    }
+
+    public void allocation() {
+        if (Shared.ALLOCATIONS.incrementAndGet(shared) > shared._maxAllocations) {
+            throw new AbortException("Exceeded the budget of " + shared._maxAllocations + " allocations");
+        }
+    }
+
+    /*
+     * Exact once every other thread is done, until then it includes what they've taken but not used yet
+     */
+    public long getInstructions() {
+        return Math.min(shared._reserved, shared._maxInstructions) - Math.max(_credit, 0);
+    }
+
+    public long getAllocations() {
+        return shared._allocations;
+    }
+
+    public long getRemainingNanos() {
+        return shared._timed ? Math.max(0, shared._deadline - System.nanoTime()) : TimeUnit.DAYS.toNanos(Integer.MAX_VALUE);
+    }
+
+    private static class Shared {
+        // created here, the updaters may only be made by a class that can see the fields
+        private static final AtomicLongFieldUpdater<Shared> RESERVED = AtomicLongFieldUpdater.newUpdater(Shared.class, "_reserved");
+        private static final AtomicLongFieldUpdater<Shared> ALLOCATIONS = AtomicLongFieldUpdater.newUpdater(Shared.class, "_allocations");
+
+        private final long _maxInstructions;
+        private final long _maxAllocations;
+        private final int _maxDepth;
+        private final boolean _timed;
+        private final long _deadline;
+
+        // instructions handed out to threads, used or not
+        private volatile long _reserved;
+        private volatile long _allocations;
+
+        private Shared(ExecutionOptions options) {
+            this._maxInstructions = options.getMaxInstructions();
+            this._maxAllocations = options.getMaxAllocations();
+            this._maxDepth = options.getMaxDepth();
+            this._timed = options.getMaxTimeNanos() != Long.MAX_VALUE;
+            this._deadline = _timed ? System.nanoTime() + options.getMaxTimeNanos() : 0;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.javadeobfuscator.javavm;
+
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Receives execution events from a {@link VirtualMachine}. Listeners are registered with a mask of the events they
+ * care about, and events nobody subscribed to are never constructed, so an idle VM pays nothing for them.
+ */
+public interface ExecutionListener {
+    int INSTRUCTION = 1;
+    int CALL = 1 << 1;
+    int RETURN = 1 << 2;
+    int EXCEPTION = 1 << 3;
+    int ALLOCATION = 1 << 4;
+    int ALL = INSTRUCTION | CALL | RETURN | EXCEPTION | ALLOCATION;
+
+    /**
+     * Called before an instruction is executed
+     */
+    default void onInstruction(MethodExecution execution, AbstractInsnNode insn, Stack stack, Locals locals) {
+    }
+
+    /**
+     * Called when a guest method is invoked, after the before-call hooks and before the method itself runs
+     */
+    default void onCall(ClassNode classNode, MethodNode methodNode, JavaWrapper instance, JavaWrapper[] args) {
+    }
+
+    /**
+     * Called when a guest method returns normally. The result is null for void methods
+     */
+    default void onReturn(ClassNode classNode, MethodNode methodNode, JavaWrapper result) {
+    }
+
+    /**
+     * Called in each frame a guest exception passes through, at the instruction it was thrown from or passed through
+     */
+    default void onException(MethodExecution execution, AbstractInsnNode insn, JavaWrapper exception) {
+    }
+
+    /**
+     * Called after NEW, NEWARRAY, ANEWARRAY or MULTIANEWARRAY has created a value
+     */
+    default void onAllocation(MethodExecution execution, AbstractInsnNode insn, JavaWrapper value) {
+    }
+}
@@ -9,18 +9,90 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class ExecutionOptions {
+    /*
+     * A few seconds of interpretation, so a guest that loops forever doesn't keep the calling thread forever
+     */
+    public static final long DEFAULT_MAX_INSTRUCTIONS = 100_000_000L;
 
     private Map<AbstractInsnNode, Consumer<BreakpointInfo>> _watchlist = new HashMap<>();
     private List<StackTraceHolder> _stacktrace = new ArrayList<>();
+    private ExplorationOptions _exploration;
+    private long _maxInstructions = DEFAULT_MAX_INSTRUCTIONS;
+    private long _maxTimeNanos = Long.MAX_VALUE;
+    private int _maxDepth = Integer.MAX_VALUE;
+    private long _maxAllocations = Long.MAX_VALUE;
 
     public ExecutionOptions watch(AbstractInsnNode insn, Consumer<BreakpointInfo> consumer) {
         _watchlist.put(insn, consumer);
         return this;
     }
 
+    /*
+     * Overrides the VM's exploration options for this method. Methods it calls use the VM's
+     */
+    public ExecutionOptions explore(ExplorationOptions exploration) {
+        _exploration = exploration;
+        return this;
+    }
+
+    public ExplorationOptions getExploration() {
+        return _exploration;
+    }
+
+    /*
+     * The budgets below cover everything the execution runs, including the methods it calls. Running out of one aborts
+     * the execution, see MethodExecution#getAbortCause. Only instructions are limited by default, to
+     * DEFAULT_MAX_INSTRUCTIONS. Compiled code doesn't count instructions and so only runs when every budget is lifted,
+     * with maxInstructions(Long.MAX_VALUE)
+     */
+    public ExecutionOptions maxInstructions(long maxInstructions) {
+        _maxInstructions = maxInstructions;
+        return this;
+    }
+
+    public ExecutionOptions maxTime(long time, TimeUnit unit) {
+        _maxTimeNanos = unit.toNanos(time);
+        return this;
+    }
+
+    public ExecutionOptions maxDepth(int maxDepth) {
+        _maxDepth = maxDepth;
+        return this;
+    }
+
+    public ExecutionOptions maxAllocations(long maxAllocations) {
+        _maxAllocations = maxAllocations;
+        return this;
+    }
+
+    public boolean hasBudget() {
+        return _maxInstructions != Long.MAX_VALUE || _maxTimeNanos != Long.MAX_VALUE || _maxDepth != Integer.MAX_VALUE || _maxAllocations != Long.MAX_VALUE;
+    }
+
+    public long getMaxInstructions() {
+        return _maxInstructions;
+    }
+
+    public long getMaxTimeNanos() {
+        return _maxTimeNanos;
+    }
+
+    public int getMaxDepth() {
+        return _maxDepth;
+    }
+
+    public long getMaxAllocations() {
+        return _maxAllocations;
+    }
+
+    public boolean hasWatches() {
+        return !_watchlist.isEmpty();
+    }
+
     public boolean shouldRecord(AbstractInsnNode target) {
         return !_watchlist.isEmpty() && _watchlist.containsKey(target);
     }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.javadeobfuscator.javavm;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bounds how much work is spent on a method whose control flow depends on unknown values. Every possible successor of
+ * such a branch becomes a path, and paths are run one at a time from a worklist, see {@link PathExplorer}.
+ */
+public class ExplorationOptions {
+    public enum Strategy {
+        /*
+         * Finish a path, including the paths it forks into, before starting its siblings
+         */
+        DEPTH_FIRST,
+        /*
+         * Run paths in the order they were forked, so shallow paths finish first when the limits cut exploration short
+         */
+        BREADTH_FIRST
+    }
+
+    private Strategy _strategy = Strategy.DEPTH_FIRST;
+    private int _maxPaths = 1024;
+    private long _maxInstructions = 1_000_000;
+    private long _maxPathInstructions = Long.MAX_VALUE;
+    private ForkJoinPool _pool;
+
+    public ExplorationOptions strategy(Strategy strategy) {
+        _strategy = strategy;
+        return this;
+    }
+
+    /*
+     * Once this many paths exist, a path that reaches another unknown branch follows its first successor instead of
+     * forking
+     */
+    public ExplorationOptions maxPaths(int maxPaths) {
+        _maxPaths = maxPaths;
+        return this;
+    }
+
+    /*
+     * Instructions executed across all paths of one exploration, after which the remaining paths are dropped
+     */
+    public ExplorationOptions maxInstructions(long maxInstructions) {
+        _maxInstructions = maxInstructions;
+        return this;
+    }
+
+    /*
+     * Instructions a single path may execute before it's given up on
+     */
+    public ExplorationOptions maxPathInstructions(long maxPathInstructions) {
+        _maxPathInstructions = maxPathInstructions;
+        return this;
+    }
+
+    /*
+     * Run paths as tasks on the given pool instead of one after another on the calling thread. The strategy doesn't
+     * apply, and the path and instruction limits are split evenly between the successors of each branch so the
+     * results are the same however the tasks get scheduled. Paths share the heap, so this only applies to methods that
+     * neither store into fields or arrays nor call other methods. Any other method, and any method explored while the
+     * calling thread holds a monitor or runs a static initializer, is explored on the calling thread as usual
+     */
+    public ExplorationOptions parallel(ForkJoinPool pool) {
+        _pool = pool;
+        return this;
+    }
+
+    public Strategy getStrategy() {
+        return _strategy;
+    }
+
+    public int getMaxPaths() {
+        return _maxPaths;
+    }
+
+    public long getMaxInstructions() {
+        return _maxInstructions;
+    }
+
+    public long getMaxPathInstructions() {
+        return _maxPathInstructions;
+    }
+
+    public ForkJoinPool getPool() {
+        return _pool;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm;
+
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A guest method activation on the heap. With {@link VirtualMachine#FRAME_STACK} on, calls between interpreted methods
+ * push one of these onto the calling thread's frame stack instead of recursing on the host stack, so guest call depth
+ * is no longer bounded by the host thread's stack size.
+ * <p>
+ * Frames for calls are taken from a per-thread {@link Pool} and given back when the call returns, so that their
+ * stack and locals are reused by the next call instead of being allocated again.
+ */
+class Frame {
+    Frame caller;
+    MethodExecution execution;
+    ConstMethod code;
+    final Stack stack;
+    final Locals locals;
+    JavaWrapper instance;
+    boolean returnsValue;
+    /*
+     * The pc of the call this frame is waiting on, or the pc to start from for a frame that hasn't run yet
+     */
+    int pc;
+    Lock lock;
+    /*
+     * The pool the frame goes back to once its call returns, null for frames around a caller's stack and locals
+     */
+    final Pool pool;
+
+    Frame(MethodExecution execution, Stack stack, Locals locals, JavaWrapper instance, int pc) {
+        this(execution, stack, locals, instance, pc, null);
+    }
+
+    private Frame(MethodExecution execution, Stack stack, Locals locals, JavaWrapper instance, int pc, Pool pool) {
+        this.stack = stack;
+        this.locals = locals;
+        this.pool = pool;
+        init(execution, instance, pc);
+    }
+
+    private void init(MethodExecution execution, JavaWrapper instance, int pc) {
+        this.execution = execution;
+        this.code = execution.getConstMethod();
+        this.instance = instance;
+        this.returnsValue = code.returnsValue();
+        this.pc = pc;
+    }
+
+    /*
+     * Frames released by calls that have returned on one thread. Never shared between threads
+     */
+    static class Pool {
+        private static final int CAPACITY = 64;
+
+        private final VirtualMachine vm;
+        private final Frame[] frames = new Frame[CAPACITY];
+        private int size;
+
+        Pool(VirtualMachine vm) {
+            this.vm = vm;
+        }
+
+        /*
+         * Returns a frame with an empty stack and uninitialized locals for a call to the execution's method
+         */
+        Frame acquire(MethodExecution execution, JavaWrapper instance) {
+            if (size == 0) {
+                ConstMethod code = execution.getConstMethod();
+                return new Frame(execution, new Stack(vm, code.getMaxStack()), new Locals(vm, code.getMaxLocals()), instance, 0, this);
+            }
+            Frame frame = frames[--size];
+            frames[size] = null;
+            frame.init(execution, instance, 0);
+            return frame;
+        }
+
+        /*
+         * The frame must not be used afterwards. Its stack and locals are cleared right away so that the pool doesn't
+         * keep guest objects alive
+         */
+        void release(Frame frame) {
+            if (size == CAPACITY) {
+                return;
+            }
+            frame.stack.clear();
+            frame.locals.clear();
+            frame.caller = null;
+            frame.execution = null;
+            frame.code = null;
+            frame.instance = null;
+            frame.lock = null;
+            frames[size++] = frame;
+        }
+    }
+}
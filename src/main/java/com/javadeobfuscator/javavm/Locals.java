@@ -1,10 +1,37 @@
 package com.javadeobfuscator.javavm;
 
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 
+import java.util.Arrays;
+
+/**
+ * The local variables of a frame. Like {@link Stack}, concrete ints and longs written through {@link #setInt(int, int)}
+ * and {@link #setLong(int, long)} stay unboxed until they're read as a {@link JavaWrapper}.
+ */
 public class Locals {
-    public JavaWrapper[] _values = new JavaWrapper[16];
+    private final VirtualMachine _vm;
+    private JavaWrapper[] _values;
+    /*
+     * A register holds a primitive when its reference is null and its tag isn't. Only allocated once a primitive is
+     * written
+     */
+    private long[] _primitives;
+    private byte[] _tags;
+    /*
+     * Set when the values might be shared with a copy, in which case they're copied before being written to
+     */
+    private boolean _shared;
+
+    public Locals(VirtualMachine vm) {
+        this(vm, 16);
+    }
+
+    public Locals(VirtualMachine vm, int capacity) {
+        this._vm = vm;
+        this._values = new JavaWrapper[Math.max(capacity, 1)];
+    }
 
     public JavaWrapper get(int index) {
         if (index >= _values.length) {
@@ -12,32 +39,132 @@ public class Locals {
         }
         JavaWrapper value = _values[index];
         if (value == null) {
-            throw new ExecutionException("Accessing value from uninitialized register " + index);
+            if (!isPrimitive(index)) {
+                throw new ExecutionException("Accessing value from uninitialized register " + index);
+            }
+            value = box(index);
+            if (!_shared) {
+                _values[index] = value;
+                _tags[index] = 0;
+            }
         }
         return value;
     }
 
-    public JavaWrapper remove(int index) {
+    /*
+     * Whether the register holds a known int. The typed accessors below may only be used on such registers
+     */
+    public boolean isInt(int index) {
         if (index >= _values.length) {
-            throw new ExecutionException("Illegal local variable number");
+            return false;
+        }
+        JavaWrapper value = _values[index];
+        if (value == null) {
+            return _tags != null && _tags[index] == Stack.INT;
+        }
+        return value.isKnown(JavaValueType.INTEGER);
+    }
+
+    public boolean isLong(int index) {
+        if (index >= _values.length) {
+            return false;
         }
         JavaWrapper value = _values[index];
         if (value == null) {
-            throw new ExecutionException("Accessing value from uninitialized register " + index);
+            return _tags != null && _tags[index] == Stack.LONG;
+        }
+        return value.isKnown(JavaValueType.LONG);
+    }
+
+    public int getInt(int index) {
+        JavaWrapper value = _values[index];
+        return value == null ? (int) _primitives[index] : value.asInt();
+    }
+
+    public long getLong(int index) {
+        JavaWrapper value = _values[index];
+        return value == null ? _primitives[index] : value.asLong();
+    }
+
+    /*
+     * Pushes the register onto the stack, leaving it unboxed if it is
+     */
+    public void load(int index, Stack stack) {
+        if (!isPrimitive(index)) {
+            stack.push(get(index));
+        } else if (_tags[index] == Stack.INT) {
+            stack.pushInt((int) _primitives[index]);
+        } else {
+            stack.pushLong(_primitives[index]);
+        }
+    }
+
+    /*
+     * Pops the top of the stack into the register, leaving it unboxed if it is
+     */
+    public void store(int index, Stack stack) {
+        switch (stack.peekTag()) {
+            case Stack.INT:
+                setInt(index, stack.popInt());
+                break;
+            case Stack.LONG:
+                setLong(index, stack.popLong());
+                break;
+            default:
+                set(index, stack.pop());
+                break;
+        }
+    }
+
+    public JavaWrapper remove(int index) {
+        JavaWrapper value = get(index);
+        if (_shared) {
+            unshare();
         }
         _values[index] = null;
+        if (_tags != null) {
+            _tags[index] = 0;
+        }
         return value;
     }
 
     public void set(int index, JavaWrapper value) {
+        if (_shared) {
+            unshare();
+        }
         if (index >= _values.length) {
-            int newSize = (1 << (Integer.highestOneBit(_values.length) + 1));
-            JavaWrapper[] copy = new JavaWrapper[newSize];
-            System.arraycopy(_values, 0, copy, 0, _values.length);
-            _values = copy;
+            grow(index);
         }
 
         _values[index] = value;
+        if (_tags != null) {
+            _tags[index] = 0;
+        }
+    }
+
+    public void setInt(int index, int value) {
+        setPrimitive(index, Stack.INT, value);
+    }
+
+    public void setLong(int index, long value) {
+        setPrimitive(index, Stack.LONG, value);
+    }
+
+    /*
+     * Uninitializes every register
+     */
+    public void clear() {
+        if (_shared) {
+            _values = new JavaWrapper[_values.length];
+            _primitives = null;
+            _tags = null;
+            _shared = false;
+        } else {
+            Arrays.fill(_values, null);
+            if (_tags != null) {
+                Arrays.fill(_tags, (byte) 0);
+            }
+        }
     }
 
     public int size() {
@@ -46,25 +173,73 @@ public class Locals {
 
     JavaWrapper[] internalArray() {
         JavaWrapper[] copy = new JavaWrapper[_values.length];
-        System.arraycopy(_values, 0, copy, 0, _values.length);
+        for (int i = 0; i < _values.length; i++) {
+            copy[i] = isPrimitive(i) ? box(i) : _values[i];
+        }
         return copy;
     }
 
+    /*
+     * Constant time, the values are only copied once either side is written to
+     */
     public Locals copy() {
-        Locals newLocals = new Locals();
-        newLocals._values = new JavaWrapper[_values.length];
-        for (int i = 0; i < _values.length; i++) {
-            newLocals._values[i] = _values[i];
-        }
+        Locals newLocals = new Locals(_vm);
+        newLocals._values = _values;
+        newLocals._primitives = _primitives;
+        newLocals._tags = _tags;
+        newLocals._shared = true;
+        _shared = true;
         return newLocals;
     }
 
+    private void setPrimitive(int index, byte tag, long value) {
+        if (_shared) {
+            unshare();
+        }
+        if (index >= _values.length) {
+            grow(index);
+        }
+        if (_tags == null) {
+            _primitives = new long[_values.length];
+            _tags = new byte[_values.length];
+        }
+        _values[index] = null;
+        _primitives[index] = value;
+        _tags[index] = tag;
+    }
+
+    private boolean isPrimitive(int index) {
+        return _values[index] == null && _tags != null && _tags[index] != 0;
+    }
+
+    private JavaWrapper box(int index) {
+        return _tags[index] == Stack.INT ? _vm.newInt((int) _primitives[index]) : _vm.newLong(_primitives[index]);
+    }
+
+    private void grow(int index) {
+        _values = Arrays.copyOf(_values, Integer.highestOneBit(index) << 1);
+        if (_tags != null) {
+            _primitives = Arrays.copyOf(_primitives, _values.length);
+            _tags = Arrays.copyOf(_tags, _values.length);
+        }
+    }
+
+    private void unshare() {
+        _values = _values.clone();
+        if (_tags != null) {
+            _primitives = _primitives.clone();
+            _tags = _tags.clone();
+        }
+        _shared = false;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
         for (int i = 0; i < _values.length; i++) {
-            if (_values[i] != null) {
-                builder.append(i).append(": ").append(_values[i].get()).append(" ");
+            JavaWrapper value = isPrimitive(i) ? box(i) : _values[i];
+            if (value != null) {
+                builder.append(i).append(": ").append(value.get()).append(" ");
             }
         }
         return builder.toString();
@@ -1,12 +1,15 @@
 package com.javadeobfuscator.javavm;
 
+import com.javadeobfuscator.javavm.exceptions.AbortException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ObjectMonitor;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class MethodExecution {
     private final VirtualMachine _virtualMachine;
@@ -14,22 +17,79 @@ public class MethodExecution {
     private final MethodNode _methodNode;
     private final ExecutionOptions _options;
 
-    private final InstructionSnapshot[] _instructions;
-    public Map<AbstractInsnNode, Integer> Visited = new HashMap<>();
+    // allocated on first use, nothing in the VM records snapshots anymore
+    private InstructionSnapshot[] _instructions;
     private JavaWrapper _returnValue;
+    private ConstMethod _constMethod;
+    private boolean[] _watchedPcs;
+    private Frame _pendingFrame;
+    private PathExplorer.Path _path;
+    // entered by this call's MONITORENTERs and not exited yet, allocated on first use
+    private List<ObjectMonitor> _monitors;
+    private final ExecutionBudget _budget;
+    private AbortException _abortCause;
 
     public MethodExecution(VirtualMachine vm, ClassNode classNode, MethodNode methodNode, ExecutionOptions options) {
         this._virtualMachine = vm;
         this._classNode = classNode;
         this._methodNode = methodNode;
-        this._instructions = new InstructionSnapshot[methodNode.instructions.size()];
         this._options = options;
+        this._budget = vm.getCurrentBudget();
+    }
+
+    /*
+     * For calls, which have already looked up the method's ConstMethod
+     */
+    MethodExecution(VirtualMachine vm, ClassNode classNode, ConstMethod code) {
+        this(vm, classNode, code.getMethod(), null);
+        this._constMethod = code;
+    }
+
+    /*
+     * For running a path out of an unknown branch on another thread. Everything but the state of the call in progress
+     * and the view of the budget is shared
+     */
+    MethodExecution(MethodExecution execution) {
+        this._virtualMachine = execution._virtualMachine;
+        this._classNode = execution._classNode;
+        this._methodNode = execution._methodNode;
+        this._instructions = execution._instructions;
+        this._options = execution._options;
+        this._constMethod = execution.getConstMethod();
+        this._watchedPcs = execution._watchedPcs;
+        this._budget = execution._virtualMachine.getCurrentBudget();
     }
 
     public InstructionSnapshot[] getInstructions() {
+        if (this._instructions == null) {
+            this._instructions = new InstructionSnapshot[_methodNode.instructions.size()];
+        }
         return this._instructions;
     }
 
+    public ConstMethod getConstMethod() {
+        if (this._constMethod == null) {
+            this._constMethod = _virtualMachine.getConstMethod(_methodNode);
+        }
+        return this._constMethod;
+    }
+
+    /*
+     * Whether the options watch the instruction at pc. Resolved once per execution, so watches should be registered
+     * before executing
+     */
+    public boolean isWatched(int pc) {
+        if (this._watchedPcs == null) {
+            ConstMethod code = getConstMethod();
+            boolean[] watched = new boolean[code.length()];
+            for (int i = 0; i < watched.length; i++) {
+                watched[i] = _options != null && _options.shouldRecord(code.insnAt(i));
+            }
+            this._watchedPcs = watched;
+        }
+        return this._watchedPcs[pc];
+    }
+
     public ClassNode getClassNode() {
         return this._classNode;
     }
@@ -50,6 +110,79 @@ public class MethodExecution {
         this._returnValue = value;
     }
 
+    void setPendingFrame(Frame frame) {
+        this._pendingFrame = frame;
+    }
+
+    Frame takePendingFrame() {
+        Frame frame = this._pendingFrame;
+        this._pendingFrame = null;
+        return frame;
+    }
+
+    PathExplorer.Path getPath() {
+        return this._path;
+    }
+
+    void setPath(PathExplorer.Path path) {
+        this._path = path;
+    }
+
+    public void monitorEntered(ObjectMonitor monitor) {
+        if (this._monitors == null) {
+            this._monitors = new ArrayList<>();
+        }
+        this._monitors.add(monitor);
+    }
+
+    public void monitorExited(ObjectMonitor monitor) {
+        if (this._monitors != null) {
+            int index = this._monitors.lastIndexOf(monitor);
+            if (index >= 0) {
+                this._monitors.remove(index);
+            }
+        }
+    }
+
+    List<ObjectMonitor> getMonitors() {
+        return this._monitors == null ? Collections.emptyList() : new ArrayList<>(this._monitors);
+    }
+
+    /*
+     * Exits the monitors this call holds and enters the given ones instead. Paths out of an unknown branch all start
+     * from the monitors held at the branch, and the call gives up whatever it still holds once they're done
+     */
+    void setMonitors(List<ObjectMonitor> monitors) {
+        if (this._monitors != null) {
+            for (int i = this._monitors.size() - 1; i >= 0; i--) {
+                _virtualMachine.exitMonitor(this._monitors.get(i));
+            }
+            this._monitors = null;
+        }
+        for (ObjectMonitor monitor : monitors) {
+            _virtualMachine.enterMonitor(monitor);
+            monitorEntered(monitor);
+        }
+    }
+
+    /*
+     * The budget of the outermost execution on this thread that has one, if any
+     */
+    public ExecutionBudget getBudget() {
+        return this._budget;
+    }
+
+    /*
+     * Why the execution was aborted, in which case there's no return value
+     */
+    public AbortException getAbortCause() {
+        return this._abortCause;
+    }
+
+    void setAbortCause(AbortException cause) {
+        this._abortCause = cause;
+    }
+
     public VirtualMachine getVM() {
         return _virtualMachine;
     }
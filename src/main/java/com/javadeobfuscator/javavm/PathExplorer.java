@@ -0,0 +1,324 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.javadeobfuscator.javavm;
+
+import com.javadeobfuscator.javavm.exceptions.AbortException;
+import com.javadeobfuscator.javavm.exceptions.VMException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ObjectMonitor;
+import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import com.javadeobfuscator.javavm.utils.TypeHelper;
+import com.javadeobfuscator.javavm.utils.Utils;
+import com.javadeobfuscator.javavm.values.JavaUnknown;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every path out of a branch on an unknown value. Instead of recursing into each successor, a path that reaches
+ * another unknown branch ends there and hands back its successors, so the number of paths and the work spent on them
+ * can be bounded with {@link ExplorationOptions}.
+ * <p>
+ * Paths are either run one at a time from a worklist, or as tasks on the pool given by
+ * {@link ExplorationOptions#parallel}. In the latter case every task gets its own copy of the stack, locals and
+ * execution, the limits are divided between the successors of each branch, and results are collected in depth first
+ * order. Paths on the pool share the heap, so only methods that can't write to it are explored there, see
+ * {@link ConstMethod#mayWriteHeap}, and then the outcome doesn't depend on scheduling. Everything else is explored on
+ * the calling thread, as is any method explored while the calling thread holds a monitor or runs a static initializer:
+ * it waits for the pool, and a pool thread could end up waiting for it.
+ * <p>
+ * The method's return value becomes a {@link JavaUnknown} carrying a {@link PathResult} for every path that was run.
+ */
+class PathExplorer {
+    private final VirtualMachine vm;
+    private final MethodExecution execution;
+    private final JavaWrapper instance;
+    private final ExplorationOptions options;
+    private final boolean parallel;
+    private final AtomicInteger pruned = new AtomicInteger();
+
+    // only used when exploring on the calling thread
+    private final Deque<Path> pending = new ArrayDeque<>();
+    private int paths;
+    private long instructions;
+
+    PathExplorer(VirtualMachine vm, MethodExecution execution, JavaWrapper instance) {
+        this.vm = vm;
+        this.execution = execution;
+        this.instance = instance;
+        ExecutionOptions executionOptions = execution.getOptions();
+        this.options = executionOptions != null && executionOptions.getExploration() != null ? executionOptions.getExploration() : vm.getExplorationOptions();
+        // monitors are owned by the forking thread, a pool thread exiting one would fail and entering one would deadlock
+        ConstMethod code = execution.getConstMethod();
+        this.parallel = options.getPool() != null && !code.usesMonitors() && !code.mayWriteHeap() && !vm.mayBlockOtherThreads();
+    }
+
+    JavaWrapper explore(ConstMethod code, int pc, Stack stack, Locals locals) {
+        String cause = "Multiple possibilities on " + Utils.prettyprint(code.insnAt(pc));
+        if (code.switchTargetsAt(pc) != null) {
+            cause += " with key " + stack.peek();
+        }
+
+        int[] targets = targets(code, pc, stack);
+        if (targets.length > options.getMaxPaths()) {
+            pruned.addAndGet(targets.length - 1);
+            targets = Arrays.copyOf(targets, 1);
+        }
+        List<Path> roots = successors(targets, stack, locals, new int[0], options.getMaxPaths(), options.getMaxInstructions());
+        List<PathResult> results;
+        try {
+            results = parallel ? exploreParallel(roots) : exploreSequential(roots);
+        } finally {
+            // the paths stand in for the rest of the call, so it doesn't get to exit what it entered itself
+            execution.setMonitors(Collections.emptyList());
+        }
+
+        JavaUnknown unknown = new JavaUnknown(vm, JavaClass.forName(vm, TypeHelper.getTypeByInternalName(vm, "java/lang/Object")), cause + " (" + results.size() + " paths, " + pruned.get() + " pruned)");
+        unknown.setPaths(results);
+        return JavaWrapper.wrap(unknown);
+    }
+
+    private List<PathResult> exploreSequential(List<Path> roots) {
+        List<PathResult> results = new ArrayList<>();
+        List<ObjectMonitor> monitors = execution.getMonitors();
+        queue(roots);
+        Path path;
+        while ((path = next()) != null) {
+            if (instructions >= options.getMaxInstructions()) {
+                pruned.addAndGet(pending.size() + 1);
+                pending.clear();
+                break;
+            }
+            PathResult result = run(execution, path);
+            execution.setMonitors(monitors);
+            if (result != null) {
+                results.add(result);
+            } else {
+                queue(path.successors);
+            }
+        }
+        return results;
+    }
+
+    private List<PathResult> exploreParallel(List<Path> roots) {
+        Thread owner = Thread.currentThread();
+        List<StackTraceHolder> stacktrace = vm.getStacktrace();
+        int depth = vm.depth.get();
+        List<PathTask> tasks = new ArrayList<>();
+        for (Path root : roots) {
+            tasks.add(new PathTask(root, owner, stacktrace, depth));
+        }
+        return options.getPool().invoke(new RecursiveTask<List<PathResult>>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected List<PathResult> compute() {
+                return collect(tasks);
+            }
+        });
+    }
+
+    /*
+     * Called by the interpreter when the path being run reaches another unknown branch. Returns the pc the path goes on
+     * at, or -1 if it ends here and its successors should be run instead
+     */
+    int fork(Path path, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int[] targets = targets(code, pc, stack);
+        boolean outOfPaths;
+        if (parallel) {
+            outOfPaths = targets.length > path.maxPaths;
+        } else {
+            outOfPaths = paths + targets.length > options.getMaxPaths();
+        }
+        if (outOfPaths) {
+            // this one just follows the first successor
+            pruned.addAndGet(targets.length - 1);
+            path.decisions = taken(path.decisions, targets[0]);
+            return targets[0];
+        }
+        path.successors = successors(targets, stack, locals, path.decisions, path.maxPaths, path.maxInstructions - path.executed);
+        return -1;
+    }
+
+    /*
+     * Called by the interpreter before each instruction of a path. Returns false once the path has to be abandoned
+     */
+    boolean step(Path path, int count) {
+        path.executed += count;
+        boolean over;
+        if (parallel) {
+            over = path.executed > path.maxInstructions || path.executed > options.getMaxPathInstructions();
+        } else {
+            over = (instructions += count) > options.getMaxInstructions() || path.executed > options.getMaxPathInstructions();
+        }
+        if (over) {
+            path.exhausted = true;
+        }
+        return !over;
+    }
+
+    /*
+     * Returns null if the path forked
+     */
+    private PathResult run(MethodExecution execution, Path path) {
+        execution.setPath(path);
+        try {
+            JavaWrapper value = vm.executePath(execution, path.stack, path.locals, instance, path.pc);
+            if (path.exhausted) {
+                return new PathResult(PathResult.Outcome.EXHAUSTED, null, path.decisions);
+            }
+            if (path.successors != null) {
+                return null;
+            }
+            return new PathResult(PathResult.Outcome.RETURNED, value, path.decisions);
+        } catch (VMException e) {
+            return new PathResult(PathResult.Outcome.THREW, e.getWrapped(), path.decisions);
+        } catch (AbortException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // one broken path shouldn't take the others down with it
+            return new PathResult(e, path.decisions);
+        } finally {
+            execution.setPath(null);
+        }
+    }
+
+    /*
+     * Switches leave their key on the stack, and it's dropped here like the switch would have
+     */
+    private int[] targets(ConstMethod code, int pc, Stack stack) {
+        int[] targets = code.switchTargetsAt(pc);
+        if (targets != null) {
+            stack.pop();
+            return targets;
+        }
+        return new int[]{code.jumpTargetAt(pc), pc + 1};
+    }
+
+    /*
+     * The limits are only divided up when exploring in parallel, otherwise they're shared by every path
+     */
+    private List<Path> successors(int[] targets, Stack stack, Locals locals, int[] decisions, int maxPaths, long maxInstructions) {
+        List<Path> successors = new ArrayList<>();
+        for (int i = 0; i < targets.length; i++) {
+            int pathShare = maxPaths / targets.length + (i < maxPaths % targets.length ? 1 : 0);
+            long instructionShare = maxInstructions / targets.length + (i < maxInstructions % targets.length ? 1 : 0);
+            successors.add(new Path(this, stack.copy(), locals.copy(), targets[i], taken(decisions, targets[i]), pathShare, instructionShare));
+        }
+        if (!parallel) {
+            paths += successors.size();
+        }
+        return successors;
+    }
+
+    private void queue(List<Path> successors) {
+        if (options.getStrategy() == ExplorationOptions.Strategy.DEPTH_FIRST) {
+            // the worklist is used as a stack, so push in reverse to run the first successor first
+            for (int i = successors.size() - 1; i >= 0; i--) {
+                pending.addLast(successors.get(i));
+            }
+        } else {
+            pending.addAll(successors);
+        }
+    }
+
+    private Path next() {
+        return options.getStrategy() == ExplorationOptions.Strategy.DEPTH_FIRST ? pending.pollLast() : pending.pollFirst();
+    }
+
+    private static int[] taken(int[] decisions, int target) {
+        int[] taken = Arrays.copyOf(decisions, decisions.length + 1);
+        taken[decisions.length] = target;
+        return taken;
+    }
+
+    private static List<PathResult> collect(List<PathTask> tasks) {
+        RecursiveTask.invokeAll(tasks);
+        List<PathResult> results = new ArrayList<>();
+        for (PathTask task : tasks) {
+            results.addAll(task.join());
+        }
+        return results;
+    }
+
+    private class PathTask extends RecursiveTask<List<PathResult>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path path;
+        private final Thread owner;
+        private final List<StackTraceHolder> stacktrace;
+        private final int depth;
+
+        private PathTask(Path path, Thread owner, List<StackTraceHolder> stacktrace, int depth) {
+            this.path = path;
+            this.owner = owner;
+            this.stacktrace = stacktrace;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<PathResult> compute() {
+            PathResult result = vm.onBehalfOf(owner, stacktrace, depth, execution.getBudget(), () -> run(new MethodExecution(execution), path));
+            if (result != null) {
+                return Collections.singletonList(result);
+            }
+            List<PathTask> tasks = new ArrayList<>();
+            for (Path successor : path.successors) {
+                tasks.add(new PathTask(successor, owner, stacktrace, depth));
+            }
+            return collect(tasks);
+        }
+    }
+
+    static class Path {
+        private final PathExplorer explorer;
+        private final Stack stack;
+        private final Locals locals;
+        private final int pc;
+        private int[] decisions;
+        private final int maxPaths;
+        private final long maxInstructions;
+        private long executed;
+        private boolean exhausted;
+        private List<Path> successors;
+
+        private Path(PathExplorer explorer, Stack stack, Locals locals, int pc, int[] decisions, int maxPaths, long maxInstructions) {
+            this.explorer = explorer;
+            this.stack = stack;
+            this.locals = locals;
+            this.pc = pc;
+            this.decisions = decisions;
+            this.maxPaths = maxPaths;
+            this.maxInstructions = maxInstructions;
+        }
+
+        boolean step(int count) {
+            return explorer.step(this, count);
+        }
+
+        int fork(ConstMethod code, int pc, Stack stack, Locals locals) {
+            return explorer.fork(this, code, pc, stack, locals);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.javadeobfuscator.javavm;
+
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+/**
+ * How one path through a method with unknown branches ended
+ */
+public class PathResult {
+    public enum Outcome {
+        RETURNED,
+        THREW,
+        /*
+         * The path ran out of instructions, so there's no value
+         */
+        EXHAUSTED,
+        /*
+         * The VM itself failed while running the path, see getError
+         */
+        FAILED
+    }
+
+    private final Outcome _outcome;
+    private final JavaWrapper _value;
+    private final Throwable _error;
+    private final int[] _decisions;
+
+    PathResult(Outcome outcome, JavaWrapper value, int[] decisions) {
+        this._outcome = outcome;
+        this._value = value;
+        this._error = null;
+        this._decisions = decisions;
+    }
+
+    PathResult(Throwable error, int[] decisions) {
+        this._outcome = Outcome.FAILED;
+        this._value = null;
+        this._error = error;
+        this._decisions = decisions;
+    }
+
+    public Outcome getOutcome() {
+        return _outcome;
+    }
+
+    /*
+     * The return value, null for void methods, or the exception thrown
+     */
+    public JavaWrapper getValue() {
+        return _value;
+    }
+
+    public Throwable getError() {
+        return _error;
+    }
+
+    /*
+     * The pc each unknown branch on this path continued at, in the order they were taken
+     */
+    public int[] getDecisions() {
+        return _decisions.clone();
+    }
+
+    @Override
+    public String toString() {
+        if (_outcome == Outcome.FAILED) {
+            return _outcome + " " + _error;
+        }
+        return _outcome + (_outcome == Outcome.EXHAUSTED ? "" : " " + _value);
+    }
+}
@@ -5,23 +5,62 @@ import com.javadeobfuscator.javavm.values.JavaTop;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 
+import java.util.Arrays;
+
+/**
+ * The operand stack of a frame. Concrete ints and longs pushed through {@link #pushInt(int)} and
+ * {@link #pushLong(long)} are kept unboxed in a parallel primitive array, and are only wrapped if something pops them
+ * as a {@link JavaWrapper}. A slot holds a primitive when its reference is null.
+ */
 public class Stack {
+    static final byte INT = 1;
+    static final byte LONG = 2;
+
+    private final VirtualMachine _vm;
     private int _index = 0;
-    private JavaWrapper[] _values = new JavaWrapper[16];
+    private JavaWrapper[] _values;
+    /*
+     * Only allocated once a primitive is pushed, most frames of library code never push one
+     */
+    private long[] _primitives;
+    private byte[] _tags;
+    /*
+     * Set when the values might be shared with a copy, in which case they're copied before being written to. Slots
+     * above the index may hold stale values while shared
+     */
+    private boolean _shared;
+
+    public Stack(VirtualMachine vm) {
+        this(vm, 16);
+    }
+
+    public Stack(VirtualMachine vm, int capacity) {
+        this._vm = vm;
+        this._values = new JavaWrapper[Math.max(capacity, 1)];
+    }
 
     public void push(JavaWrapper next) {
-        if (next.is(JavaValueType.DOUBLE) || next.is(JavaValueType.LONG)) {
+        if (next.is(JavaValueType.WIDE)) {
             push(JavaWrapper.createTop());
         }
+        if (_shared) {
+            unshare(_index + 1);
+        }
         if (_index >= _values.length) {
-            int newSize = (1 << (Integer.highestOneBit(_values.length) + 1));
-            JavaWrapper[] copy = new JavaWrapper[newSize];
-            System.arraycopy(_values, 0, copy, 0, _values.length);
-            _values = copy;
+            grow();
         }
         _values[_index++] = next;
     }
 
+    public void pushInt(int value) {
+        pushPrimitive(INT, value);
+    }
+
+    public void pushLong(long value) {
+        push(JavaWrapper.createTop());
+        pushPrimitive(LONG, value);
+    }
+
     public void pushAll(JavaWrapper... next) {
         for (JavaWrapper w : next) {
             push(w);
@@ -33,8 +72,12 @@ public class Stack {
             throw new ExecutionException("Unable to pop operand off empty stack");
         }
         JavaWrapper result = _values[_index];
-        _values[_index] = null;
-        if (result.is(JavaValueType.DOUBLE) || result.is(JavaValueType.LONG)) {
+        if (result == null) {
+            result = box(_index);
+        } else if (!_shared) {
+            _values[_index] = null;
+        }
+        if (result.is(JavaValueType.WIDE)) {
             JavaWrapper shouldBeTop = pop();
             if (!(shouldBeTop.get() instanceof JavaTop)) {
                 throw new RuntimeException("Unexpected " + shouldBeTop);
@@ -43,8 +86,82 @@ public class Stack {
         return result;
     }
 
+    /*
+     * Whether the value the given number of slots below the top is a known int. The typed accessors below may only be
+     * used on such values
+     */
+    public boolean isInt(int depth) {
+        int index = _index - 1 - depth;
+        if (index < 0) {
+            return false;
+        }
+        JavaWrapper value = _values[index];
+        if (value == null) {
+            return _tags[index] == INT;
+        }
+        return value.isKnown(JavaValueType.INTEGER);
+    }
+
+    public boolean isLong(int depth) {
+        int index = _index - 1 - depth;
+        if (index < 1) {
+            return false;
+        }
+        JavaWrapper value = _values[index];
+        if (value == null) {
+            return _tags[index] == LONG;
+        }
+        return value.isKnown(JavaValueType.LONG);
+    }
+
+    public int popInt() {
+        int index = --_index;
+        JavaWrapper value = _values[index];
+        if (value == null) {
+            return (int) _primitives[index];
+        }
+        if (!_shared) {
+            _values[index] = null;
+        }
+        return value.asInt();
+    }
+
+    public long popLong() {
+        int index = --_index;
+        JavaWrapper value = _values[index];
+        long result;
+        if (value == null) {
+            result = _primitives[index];
+        } else {
+            if (!_shared) {
+                _values[index] = null;
+            }
+            result = value.asLong();
+        }
+        pop();
+        return result;
+    }
+
     public JavaWrapper peek() {
-        return _values[_index - 1];
+        int index = _index - 1;
+        JavaWrapper value = _values[index];
+        if (value == null) {
+            // Keep the boxed value so that peeking and then popping hands out the same wrapper
+            value = box(index);
+            if (_shared) {
+                unshare(_index);
+            }
+            _values[index] = value;
+        }
+        return value;
+    }
+
+    /*
+     * The tag of the top slot if it's unboxed, otherwise 0
+     */
+    byte peekTag() {
+        int index = _index - 1;
+        return _values[index] == null ? _tags[index] : 0;
     }
 
     public int size() {
@@ -53,33 +170,89 @@ public class Stack {
 
     JavaWrapper[] internalArray() {
         JavaWrapper[] copy = new JavaWrapper[_values.length];
-        System.arraycopy(_values, 0, copy, 0, _values.length);
+        for (int i = 0; i < _index; i++) {
+            copy[i] = _values[i] == null ? box(i) : _values[i];
+        }
         return copy;
     }
 
+    /*
+     * Constant time, the values are only copied once either stack is written to
+     */
     public Stack copy() {
-        Stack newStack = new Stack();
-        newStack._values = new JavaWrapper[_values.length];
+        Stack newStack = new Stack(_vm);
+        newStack._values = _values;
+        newStack._primitives = _primitives;
+        newStack._tags = _tags;
         newStack._index = _index;
-        for (int i = 0; i < _values.length; i++) {
-            newStack._values[i] = _values[i];
-        }
+        newStack._shared = true;
+        _shared = true;
         return newStack;
     }
 
+    private void pushPrimitive(byte tag, long value) {
+        if (_shared) {
+            unshare(_index + 1);
+        }
+        if (_index >= _values.length) {
+            grow();
+        }
+        if (_tags == null) {
+            _primitives = new long[_values.length];
+            _tags = new byte[_values.length];
+        }
+        _values[_index] = null;
+        _primitives[_index] = value;
+        _tags[_index++] = tag;
+    }
+
+    private JavaWrapper box(int index) {
+        return _tags[index] == INT ? _vm.newInt((int) _primitives[index]) : _vm.newLong(_primitives[index]);
+    }
+
+    private void grow() {
+        _values = Arrays.copyOf(_values, _values.length << 1);
+        if (_tags != null) {
+            _primitives = Arrays.copyOf(_primitives, _values.length);
+            _tags = Arrays.copyOf(_tags, _values.length);
+        }
+    }
+
+    private void unshare(int capacity) {
+        int length = Math.max(16, Integer.highestOneBit(capacity) << 1);
+        JavaWrapper[] values = new JavaWrapper[length];
+        System.arraycopy(_values, 0, values, 0, _index);
+        _values = values;
+        if (_tags != null) {
+            long[] primitives = new long[length];
+            byte[] tags = new byte[length];
+            System.arraycopy(_primitives, 0, primitives, 0, _index);
+            System.arraycopy(_tags, 0, tags, 0, _index);
+            _primitives = primitives;
+            _tags = tags;
+        }
+        _shared = false;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        for (int i = _values.length - 1; i >= 0; i--) {
-            if (_values[i] != null) {
-                builder.append(i).append(": ").append(_values[i].get()).append(" ");
-            }
+        for (int i = _index - 1; i >= 0; i--) {
+            JavaWrapper value = _values[i] == null ? box(i) : _values[i];
+            builder.append(i).append(": ").append(value.get()).append(" ");
         }
         return builder.toString();
     }
 
     public void clear() {
-        _values = new JavaWrapper[16];
+        if (_shared) {
+            _values = new JavaWrapper[_values.length];
+            _primitives = null;
+            _tags = null;
+            _shared = false;
+        } else {
+            Arrays.fill(_values, 0, _index, null);
+        }
         _index = 0;
     }
 }
@@ -7,6 +7,7 @@ import com.javadeobfuscator.javavm.ext.net.*;
 import com.javadeobfuscator.javavm.hooks.*;
 import com.javadeobfuscator.javavm.instructions.*;
 import com.javadeobfuscator.javavm.internals.*;
+import com.javadeobfuscator.javavm.jit.*;
 import com.javadeobfuscator.javavm.mirrors.*;
 import com.javadeobfuscator.javavm.nativeimpls.*;
 import com.javadeobfuscator.javavm.oops.*;
@@ -22,6 +23,7 @@ import org.objectweb.asm.tree.*;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.*;
 import java.util.function.*;
 import java.util.stream.*;
@@ -63,10 +65,35 @@ public class VirtualMachine {
     public static boolean TRACE = false;
     public static boolean DEBUG = false;
     public static boolean DEBUG_PRINT_EXCEPTIONS = false;
+    /*
+     * Compile hot static methods that only touch primitives and primitive arrays to host bytecode
+     */
+    public static boolean JIT = false;
+    public static int JIT_THRESHOLD = 100;
+    /*
+     * Count adjacent instruction pairs as they execute, see OpcodePairProfiler. Superinstructions are disabled while
+     * this is on so the counts reflect the original code
+     */
+    public static boolean PROFILE_OPCODE_PAIRS = false;
+    /*
+     * Run calls between interpreted methods on a heap allocated frame stack instead of recursing on the host stack
+     */
+    public static boolean FRAME_STACK = false;
     public static List<String> DEBUG_CLASSES = Arrays.asList();
     public static List<String> DEBUG_METHODS_WITH_DESC = Arrays.asList();
-    public final JavaWrapper TRUE = JavaWrapper.wrap(new JInteger(this, Type.BOOLEAN_TYPE, 1));
-    public final JavaWrapper FALSE = JavaWrapper.wrap(new JInteger(this, Type.BOOLEAN_TYPE, 0));
+    public final JavaWrapper TRUE = JavaWrapper.constant(new JInteger(this, Type.BOOLEAN_TYPE, 1));
+    public final JavaWrapper FALSE = JavaWrapper.constant(new JInteger(this, Type.BOOLEAN_TYPE, 0));
+    /*
+     * Shared wrappers for small values, handed out by the newX methods like the JDK's boxing caches. Chars cover
+     * Latin-1 and ints cover most loop counters and lengths
+     */
+    private final JavaWrapper[] _intCache = new JavaWrapper[1024 + 128];
+    private final JavaWrapper[] _charCache = new JavaWrapper[256];
+    private final JavaWrapper[] _byteCache = new JavaWrapper[256];
+    private final JavaWrapper[] _shortCache = new JavaWrapper[256];
+    private final JavaWrapper[] _longCache = new JavaWrapper[256];
+    private final JavaWrapper _floatZero = JavaWrapper.constant(new JFloat(this, 0.0F));
+    private final JavaWrapper _doubleZero = JavaWrapper.constant(new JDouble(this, 0.0D));
     public final JavaClass INTEGER = new JavaClass(this, Type.INT_TYPE, "int");
     public final JavaClass LONG = new JavaClass(this, Type.LONG_TYPE, "long");
     public final JavaClass DOUBLE = new JavaClass(this, Type.DOUBLE_TYPE, "double");
@@ -76,22 +103,45 @@ public class VirtualMachine {
     public final JavaClass BYTE = new JavaClass(this, Type.BYTE_TYPE, "byte");
     public final JavaClass SHORT = new JavaClass(this, Type.SHORT_TYPE, "short");
     public final JavaClass VOID = new JavaClass(this, Type.VOID_TYPE, "void");
-    private final Instruction[] INSTRUCTION_HANDLERS = new Instruction[255];
+    private final Instruction[] INSTRUCTION_HANDLERS = new Instruction[256 + Superinstructions.COUNT];
     private final Map<String, HookedMethod> HookedMethods = new HashMap<>();
     private final ReadWriteLock methodHookLock = new ReentrantReadWriteLock();
+    // bumped whenever hooks or classes change, so that inline caches know to re-resolve
+    private final AtomicInteger _linkEpoch = new AtomicInteger();
+    private final Object _listenerLock = new Object();
+    private volatile ListenerRegistration[] _listeners = new ListenerRegistration[0];
+    // union of every listener's mask, checked before building any event
+    private volatile int _eventMask;
+    private volatile ExplorationOptions _explorationOptions = new ExplorationOptions();
     private final Map<String, HookedFieldGetter> fieldGetterHooks = new ConcurrentHashMap<>();
     private final Map<String, HookedFieldSetter> fieldSetterHooks = new ConcurrentHashMap<>();
     private final Map<String, ClassNode> _classpath = new ConcurrentHashMap<>();
     private final Map<ClassNode, ConstantPool> _constantPools = new ConcurrentHashMap<>();
     private final Map<String, JavaClass> _classCache = new ConcurrentHashMap<>();
-    private final Map<String, JavaWrapper> internedStrings = new ConcurrentHashMap<>();
+    /*
+     * Held while a class is being created, one per class so that unrelated classes load in parallel
+     */
+    private final Map<String, Object> _classResolutionLocks = new ConcurrentHashMap<>();
+    private final ThreadLocal<Set<String>> _classesBeingCreated = ThreadLocal.withInitial(HashSet::new);
+    /*
+     * Guest monitors held and static initializers being run by each thread, see mayBlockOtherThreads
+     */
+    private final ThreadLocal<int[]> _monitorsHeld = ThreadLocal.withInitial(() -> new int[1]);
+    private final ThreadLocal<int[]> _classesInitializing = ThreadLocal.withInitial(() -> new int[1]);
+    private final Map<MethodNode, ConstMethod> _constMethods = new ConcurrentHashMap<>();
+    private final StringTable stringTable = new StringTable(this);
+    private final SymbolTable symbolTable = new SymbolTable();
+    private final JitCompiler jitCompiler = new JitCompiler(this);
+    private final StringDedupTable stringContents = new StringDedupTable();
     private final java_lang_ClassLoader _java_lang_classLoader = new java_lang_ClassLoader(this);
-    private final JavaWrapper NULL = JavaWrapper.wrap(new JavaNull());
+    private final JavaWrapper NULL = JavaWrapper.constant(new JavaNull());
     private final Map<Class<?>, JavaClass> PRIMITIVE_TO_JAVACLASS_MAP;
     // todo when threading is a thing, move this
     private Map<Thread, ArrayDeque<StackTraceHolder>> _stacktrace = new ConcurrentHashMap<>();
     public Map<Thread, AbstractInsnNode> currentInsn = new ConcurrentHashMap<>();
     ThreadLocal<Integer> depth = ThreadLocal.withInitial(() -> 0);
+    private final ThreadLocal<ExecutionBudget> _budget = new ThreadLocal<>();
+    private final ThreadLocal<Frame.Pool> _framePool = ThreadLocal.withInitial(() -> new Frame.Pool(this));
     private java_lang_invoke_MethodHandle java_lang_invoke_MethodHandle;
     private JavaWrapper systemThreadGroup;
     private JavaWrapper mainThreadGroup;
@@ -117,6 +167,7 @@ public class VirtualMachine {
     }
 
     public VirtualMachine(Collection<byte[]> jvmFiles) {
+        initValueCaches();
         initInstructions();
         load(jvmFiles);
 
@@ -177,7 +228,7 @@ public class VirtualMachine {
         if (str == null) {
             return getNull();
         }
-        return internedStrings.computeIfAbsent(str, this::getString);
+        return stringTable.intern(str);
     }
 
     public JavaWrapper getString(String str) {
@@ -186,22 +237,37 @@ public class VirtualMachine {
         }
 
         JavaObject obj = new JavaObject(getSystemDictionary().getJavaLangString());
-        obj.setField("value", "[C", ArrayConversionHelper.convertCharArray(this, str.toCharArray()));
+        // Strings with the same contents share one array until the guest writes to it
+        obj.setField("value", "[C", JavaWrapper.wrap(JavaArray.share(JavaClass.forName(this, "[C"), stringContents.deduplicate(str))));
         return JavaWrapper.wrap(obj);
     }
 
+    private void initValueCaches() {
+        for (int i = 0; i < _intCache.length; i++) {
+            _intCache[i] = JavaWrapper.constant(new JInteger(this, Type.INT_TYPE, i - 128));
+        }
+        for (int i = 0; i < _charCache.length; i++) {
+            _charCache[i] = JavaWrapper.constant(new JInteger(this, Type.CHAR_TYPE, i));
+        }
+        for (int i = 0; i < 256; i++) {
+            _byteCache[i] = JavaWrapper.constant(new JInteger(this, Type.BYTE_TYPE, i - 128));
+            _shortCache[i] = JavaWrapper.constant(new JInteger(this, Type.SHORT_TYPE, i - 128));
+            _longCache[i] = JavaWrapper.constant(new JLong(this, i - 128));
+        }
+    }
+
     private void initInstructions() {
         INSTRUCTION_HANDLERS[NOP] = new NopInstruction();
         INSTRUCTION_HANDLERS[ACONST_NULL] = new AconstNullInstruction();
-        INSTRUCTION_HANDLERS[ICONST_M1] = new LoadOneWordInstruction((vm) -> JavaWrapper.createInteger(vm, -1));
-        INSTRUCTION_HANDLERS[ICONST_0] = new LoadOneWordInstruction((vm) -> JavaWrapper.createInteger(vm, 0));
-        INSTRUCTION_HANDLERS[ICONST_1] = new LoadOneWordInstruction((vm) -> JavaWrapper.createInteger(vm, 1));
-        INSTRUCTION_HANDLERS[ICONST_2] = new LoadOneWordInstruction((vm) -> JavaWrapper.createInteger(vm, 2));
-        INSTRUCTION_HANDLERS[ICONST_3] = new LoadOneWordInstruction((vm) -> JavaWrapper.createInteger(vm, 3));
-        INSTRUCTION_HANDLERS[ICONST_4] = new LoadOneWordInstruction((vm) -> JavaWrapper.createInteger(vm, 4));
-        INSTRUCTION_HANDLERS[ICONST_5] = new LoadOneWordInstruction((vm) -> JavaWrapper.createInteger(vm, 5));
-        INSTRUCTION_HANDLERS[LCONST_0] = new LoadTwoWordInstruction((vm) -> vm.newLong(0));
-        INSTRUCTION_HANDLERS[LCONST_1] = new LoadTwoWordInstruction((vm) -> vm.newLong(1));
+        INSTRUCTION_HANDLERS[ICONST_M1] = new IntConstantInstruction(-1);
+        INSTRUCTION_HANDLERS[ICONST_0] = new IntConstantInstruction(0);
+        INSTRUCTION_HANDLERS[ICONST_1] = new IntConstantInstruction(1);
+        INSTRUCTION_HANDLERS[ICONST_2] = new IntConstantInstruction(2);
+        INSTRUCTION_HANDLERS[ICONST_3] = new IntConstantInstruction(3);
+        INSTRUCTION_HANDLERS[ICONST_4] = new IntConstantInstruction(4);
+        INSTRUCTION_HANDLERS[ICONST_5] = new IntConstantInstruction(5);
+        INSTRUCTION_HANDLERS[LCONST_0] = new LongConstantInstruction(0);
+        INSTRUCTION_HANDLERS[LCONST_1] = new LongConstantInstruction(1);
         INSTRUCTION_HANDLERS[FCONST_0] = new LoadOneWordInstruction((vm) -> JavaWrapper.createFloat(vm, 0));
         INSTRUCTION_HANDLERS[FCONST_1] = new LoadOneWordInstruction((vm) -> JavaWrapper.createFloat(vm, 1));
         INSTRUCTION_HANDLERS[FCONST_2] = new LoadOneWordInstruction((vm) -> JavaWrapper.createFloat(vm, 2));
@@ -372,73 +438,288 @@ public class VirtualMachine {
         INSTRUCTION_HANDLERS[INVOKEINTERFACE] = new InvocationInstruction(false);
         INSTRUCTION_HANDLERS[INVOKEDYNAMIC] = new InvokeDynamicInstruction();
         INSTRUCTION_HANDLERS[CHECKCAST] = new CheckcastInstruction();
+        INSTRUCTION_HANDLERS[INSTANCEOF] = new InstanceofInstruction();
+
+        INSTRUCTION_HANDLERS[POP] = new PopInstruction();
+        INSTRUCTION_HANDLERS[POP2] = new Pop2Instruction();
+        INSTRUCTION_HANDLERS[DUP] = new DupInstruction();
+        INSTRUCTION_HANDLERS[DUP_X1] = new DupX1Instruction();
+        INSTRUCTION_HANDLERS[DUP_X2] = new DupX2Instruction();
+        INSTRUCTION_HANDLERS[DUP2] = new Dup2Instruction();
+        INSTRUCTION_HANDLERS[DUP2_X1] = new Dup2X1Instruction();
+        INSTRUCTION_HANDLERS[DUP2_X2] = new Dup2X2Instruction();
+        INSTRUCTION_HANDLERS[SWAP] = new SwapInstruction();
+        INSTRUCTION_HANDLERS[IINC] = new IincInstruction();
+
+        INSTRUCTION_HANDLERS[GOTO] = new GotoInstruction();
+        INSTRUCTION_HANDLERS[JSR] = new JsrInstruction();
+        INSTRUCTION_HANDLERS[RET] = new RetInstruction();
+        INSTRUCTION_HANDLERS[TABLESWITCH] = new TableSwitchInstruction();
+        INSTRUCTION_HANDLERS[LOOKUPSWITCH] = new LookupSwitchInstruction();
+        INSTRUCTION_HANDLERS[IRETURN] = new ReturnInstruction(false);
+        INSTRUCTION_HANDLERS[LRETURN] = new ReturnInstruction(false);
+        INSTRUCTION_HANDLERS[FRETURN] = new ReturnInstruction(false);
+        INSTRUCTION_HANDLERS[DRETURN] = new ReturnInstruction(false);
+        INSTRUCTION_HANDLERS[ARETURN] = new ReturnInstruction(false);
+        INSTRUCTION_HANDLERS[RETURN] = new ReturnInstruction(true);
+        INSTRUCTION_HANDLERS[ATHROW] = new AthrowInstruction();
+
+        INSTRUCTION_HANDLERS[GETSTATIC] = new GetStaticInstruction();
+        INSTRUCTION_HANDLERS[PUTSTATIC] = new PutStaticInstruction();
+        INSTRUCTION_HANDLERS[GETFIELD] = new GetFieldInstruction();
+        INSTRUCTION_HANDLERS[PUTFIELD] = new PutFieldInstruction();
+
+        INSTRUCTION_HANDLERS[ANEWARRAY] = new ANewArrayInstruction();
+        INSTRUCTION_HANDLERS[MULTIANEWARRAY] = new MultiANewArrayInstruction();
+        INSTRUCTION_HANDLERS[ARRAYLENGTH] = new ArrayLengthInstruction();
+        INSTRUCTION_HANDLERS[MONITORENTER] = new MonitorEnterInstruction();
+        INSTRUCTION_HANDLERS[MONITOREXIT] = new MonitorExitInstruction();
 
         INSTRUCTION_HANDLERS[D2I] = new Instruction() {
             @Override
-            public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
                 JavaWrapper doubleValue = stack.pop();
                 if (ExecutionUtils.areValuesUnknown(doubleValue)) {
                     stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().INTEGER, "d2i " + doubleValue)));
-                    return;
+                    return pc + 1;
                 }
                 stack.push(JavaWrapper.createInteger(execution.getVM(), (int) doubleValue.asDouble()));
+                return pc + 1;
             }
         };
         INSTRUCTION_HANDLERS[F2I] = new Instruction() {
             @Override
-            public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
                 JavaWrapper floatValue = stack.pop();
                 if (ExecutionUtils.areValuesUnknown(floatValue)) {
                     stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().INTEGER, "f2i " + floatValue)));
-                    return;
+                    return pc + 1;
                 }
                 stack.push(JavaWrapper.createInteger(execution.getVM(), (int) floatValue.asFloat()));
+                return pc + 1;
             }
         };
         INSTRUCTION_HANDLERS[L2F] = new Instruction() {
             @Override
-            public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
                 JavaWrapper longValue = stack.pop();
                 if (ExecutionUtils.areValuesUnknown(longValue)) {
                     stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().FLOAT, "l2f " + longValue)));
-                    return;
+                    return pc + 1;
                 }
                 stack.push(JavaWrapper.createFloat(execution.getVM(), (float) longValue.asLong()));
+                return pc + 1;
             }
         };
         INSTRUCTION_HANDLERS[F2D] = new Instruction() {
             @Override
-            public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
                 JavaWrapper floatValue = stack.pop();
                 if (ExecutionUtils.areValuesUnknown(floatValue)) {
                     stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().DOUBLE, "l2f " + floatValue)));
-                    return;
+                    return pc + 1;
                 }
                 stack.push(JavaWrapper.createDouble(execution.getVM(), floatValue.asFloat()));
+                return pc + 1;
             }
         };
         INSTRUCTION_HANDLERS[D2L] = new Instruction() {
             @Override
-            public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
                 JavaWrapper doubleValue = stack.pop();
                 if (ExecutionUtils.areValuesUnknown(doubleValue)) {
                     stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().LONG, "l2f " + doubleValue)));
-                    return;
+                    return pc + 1;
                 }
                 stack.push(execution.getVM().newLong(doubleValue.asLong()));
+                return pc + 1;
             }
         };
         INSTRUCTION_HANDLERS[L2I] = new Instruction() {
             @Override
-            public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                if (stack.isLong(0)) {
+                    stack.pushInt((int) stack.popLong());
+                    return pc + 1;
+                }
                 JavaWrapper longValue = stack.pop();
                 if (ExecutionUtils.areValuesUnknown(longValue)) {
                     stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().INTEGER, "l2f " + longValue)));
-                    return;
+                    return pc + 1;
                 }
                 stack.push(JavaWrapper.createInteger(execution.getVM(), (int) longValue.asLong()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[I2L] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                if (stack.isInt(0)) {
+                    stack.pushLong(stack.popInt());
+                    return pc + 1;
+                }
+                JavaWrapper intValue = stack.pop();
+                if (ExecutionUtils.areValuesUnknown(intValue)) {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().LONG, "I2L " + intValue.get())));
+                    return pc + 1;
+                }
+                stack.push(execution.getVM().newLong(intValue.asInt()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[I2F] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper intValue = stack.pop();
+                if (ExecutionUtils.areValuesUnknown(intValue)) {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().FLOAT, "I2F " + intValue.get())));
+                    return pc + 1;
+                }
+                stack.push(JavaWrapper.createFloat(execution.getVM(), intValue.asInt()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[I2D] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper intValue = stack.pop();
+                if (ExecutionUtils.areValuesUnknown(intValue)) {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().DOUBLE, "I2D " + intValue.get())));
+                    return pc + 1;
+                }
+                stack.push(JavaWrapper.createDouble(execution.getVM(), intValue.asInt()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[L2D] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper longValue = stack.pop();
+                if (ExecutionUtils.areValuesUnknown(longValue)) {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().DOUBLE, "l2d " + longValue)));
+                    return pc + 1;
+                }
+                stack.push(JavaWrapper.createDouble(execution.getVM(), (double) longValue.asLong()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[F2L] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper floatValue = stack.pop();
+                if (ExecutionUtils.areValuesUnknown(floatValue)) {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().LONG, "f2l " + floatValue)));
+                    return pc + 1;
+                }
+                stack.push(execution.getVM().newLong((long) floatValue.asFloat()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[D2F] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper doubleValue = stack.pop();
+                if (ExecutionUtils.areValuesUnknown(doubleValue)) {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().FLOAT, "d2f " + doubleValue)));
+                    return pc + 1;
+                }
+                stack.push(JavaWrapper.createFloat(execution.getVM(), (float) doubleValue.asDouble()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[I2B] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                stack.push(execution.getVM().newByte(stack.pop().get().asByte()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[I2C] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaValue intValue = stack.pop().get();
+                if (!intValue.is(JavaValueType.UNKNOWN)) {
+                    stack.push(execution.getVM().newChar(intValue.asChar()));
+                } else {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().CHARACTER, JavaUnknown.UnknownCause.I2C, intValue)));
+                }
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[I2S] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                stack.push(execution.getVM().newShort(stack.pop().asPrimitive().asShort()));
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[INEG] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper value = stack.pop();
+                if (!value.get().is(JavaValueType.UNKNOWN)) {
+                    stack.push(JavaWrapper.createInteger(execution.getVM(), -value.get().asInt()));
+                } else {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().INTEGER, "INEG " + value)));
+                }
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[LNEG] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper value = stack.pop();
+                if (!value.get().is(JavaValueType.UNKNOWN)) {
+                    stack.push(execution.getVM().newLong(-value.get().asLong()));
+                } else {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().LONG, "LNEG " + value)));
+                }
+                return pc + 1;
             }
         };
+        INSTRUCTION_HANDLERS[FNEG] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper value = stack.pop();
+                if (!value.get().is(JavaValueType.UNKNOWN)) {
+                    stack.push(JavaWrapper.createFloat(execution.getVM(), -value.get().asFloat()));
+                } else {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().FLOAT, "FNEG " + value)));
+                }
+                return pc + 1;
+            }
+        };
+        INSTRUCTION_HANDLERS[DNEG] = new Instruction() {
+            @Override
+            public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                JavaWrapper value = stack.pop();
+                if (!value.get().is(JavaValueType.UNKNOWN)) {
+                    stack.push(JavaWrapper.createDouble(execution.getVM(), -value.get().asDouble()));
+                } else {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().DOUBLE, "DNEG " + value)));
+                }
+                return pc + 1;
+            }
+        };
+
+        INSTRUCTION_HANDLERS[Superinstructions.ILOAD_ILOAD_IMATH] = new ILoadILoadMathInstruction(INSTRUCTION_HANDLERS);
+        INSTRUCTION_HANDLERS[Superinstructions.ALOAD_ILOAD_XALOAD] = new ALoadILoadArrayLoadInstruction(INSTRUCTION_HANDLERS);
+        INSTRUCTION_HANDLERS[Superinstructions.ALOAD_GETFIELD] = new ALoadGetFieldInstruction(INSTRUCTION_HANDLERS);
+        INSTRUCTION_HANDLERS[Superinstructions.ICONST_IF_ICMP] = new IConstCompareInstruction(INSTRUCTION_HANDLERS);
+        INSTRUCTION_HANDLERS[Superinstructions.ILOAD_ILOAD_IF_ICMP] = new ILoadILoadCompareInstruction(INSTRUCTION_HANDLERS);
+        INSTRUCTION_HANDLERS[Superinstructions.ILOAD_ICONST_IMATH] = new ILoadIConstMathInstruction(INSTRUCTION_HANDLERS);
+
+        for (int opcode = 0; opcode < INSTRUCTION_HANDLERS.length; opcode++) {
+            if (INSTRUCTION_HANDLERS[opcode] == null) {
+                INSTRUCTION_HANDLERS[opcode] = new Instruction() {
+                    @Override
+                    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+                        AbstractInsnNode now = code.insnAt(pc);
+                        throw new ExecutionException("Unknown opcode " + now.getClass().getSimpleName() + " " + Integer.toHexString(now.getOpcode()) + " " + now);
+                    }
+                };
+            }
+        }
     }
 
     public ConstantPool getConstantPool(ClassNode classNode) {
@@ -461,14 +742,19 @@ public class VirtualMachine {
     }
 
     public JavaWrapper intern(JavaWrapper in) {
-        return internedStrings.computeIfAbsent(convertJavaObjectToString(in), this::getString);
+        return stringTable.intern(in);
     }
 
     public String convertJavaObjectToString(JavaWrapper in) {
         if (in.is(JavaValueType.NULL)) {
             return null;
         }
-        return new String(ArrayConversionHelper.convertCharArray(in.asObject().getField("value", "[C").asArray()));
+        JavaArray value = in.asObject().getField("value", "[C").asArray();
+        Object chars = value.readHostArray();
+        if (chars instanceof char[]) {
+            return new String((char[]) chars);
+        }
+        return new String(ArrayConversionHelper.convertCharArray(value));
     }
 
     public java_lang_invoke_MethodHandle getJavaLangInvokeMethodHandle() {
@@ -621,7 +907,7 @@ public class VirtualMachine {
 
     private JavaWrapper createMainThread() {
         JavaUninitialized unit = new JavaUninitialized(getSystemDictionary().getJavaLangThread(), getSystemDictionary().getJavaLangThread().internalGetType().getInternalName());
-        unit.initializedValue().setMetadata("oop", ThreadOop.forCurrentThread());
+        unit.initializedValue().setMetadata(VMSymbols.METADATA_OOP, ThreadOop.forCurrentThread());
         unit.initializedValue().setField("priority", "I", JavaWrapper.createInteger(this, 5));
         unit.initializedValue().setField("status", "I", JavaWrapper.createInteger(this, 1)); // RUNNING?
         JavaWrapper instance = JavaWrapper.wrap(unit);
@@ -659,6 +945,18 @@ public class VirtualMachine {
         return systemDictionary;
     }
 
+    public StringTable getStringTable() {
+        return stringTable;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public StringDedupTable getStringDedupTable() {
+        return stringContents;
+    }
+
     public JavaWrapper newBoolean(boolean input) {
         return input ? TRUE : FALSE;
     }
@@ -674,6 +972,9 @@ public class VirtualMachine {
     }
 
     public JavaWrapper newChar(char input) {
+        if (input < _charCache.length) {
+            return _charCache[input];
+        }
         return JavaWrapper.wrap(new JInteger(this, Type.CHAR_TYPE, input));
     }
 
@@ -688,7 +989,7 @@ public class VirtualMachine {
     }
 
     public JavaWrapper newByte(byte input) {
-        return JavaWrapper.wrap(new JInteger(this, Type.BYTE_TYPE, input));
+        return _byteCache[input + 128];
     }
 
     public JavaWrapper newBoxedByte(byte input) {
@@ -702,6 +1003,9 @@ public class VirtualMachine {
     }
 
     public JavaWrapper newShort(short input) {
+        if (input >= -128 && input < 128) {
+            return _shortCache[input + 128];
+        }
         return JavaWrapper.wrap(new JInteger(this, Type.SHORT_TYPE, input));
     }
 
@@ -716,6 +1020,9 @@ public class VirtualMachine {
     }
 
     public JavaWrapper newInt(int input) {
+        if (input >= -128 && input < 1024) {
+            return _intCache[input + 128];
+        }
         return JavaWrapper.wrap(new JInteger(this, Type.INT_TYPE, input));
     }
 
@@ -730,6 +1037,10 @@ public class VirtualMachine {
     }
 
     public JavaWrapper newFloat(float input) {
+        // only positive zero, -0.0f has other bits
+        if (Float.floatToRawIntBits(input) == 0) {
+            return _floatZero;
+        }
         return JavaWrapper.wrap(new JFloat(this, input));
     }
 
@@ -744,6 +1055,9 @@ public class VirtualMachine {
     }
 
     public JavaWrapper newLong(long input) {
+        if (input >= -128 && input < 128) {
+            return _longCache[(int) input + 128];
+        }
         return JavaWrapper.wrap(new JLong(this, input));
     }
 
@@ -758,6 +1072,9 @@ public class VirtualMachine {
     }
 
     public JavaWrapper newDouble(double input) {
+        if (Double.doubleToRawLongBits(input) == 0) {
+            return _doubleZero;
+        }
         return JavaWrapper.wrap(new JDouble(this, input));
     }
 
@@ -776,6 +1093,10 @@ public class VirtualMachine {
     }
 
     public void initialize(JavaClass clazz) {
+        // the state only ever moves to INITIALIZED once, so there's nothing to lock for
+        if (!clazz.shouldBeInitialized()) {
+            return;
+        }
         // JLS §5.5
         clazz.getInitializationLock().lock();
         if (clazz.getInitializationState() == JavaClass.InitializationState.BEING_INITIALIZED) {
@@ -807,108 +1128,113 @@ public class VirtualMachine {
         } else {
             clazz.setInitializationState(JavaClass.InitializationState.BEING_INITIALIZED, Thread.currentThread());
             clazz.getInitializationLock().unlock();
-            for (FieldNode fieldNode : clazz.getClassNode().fields) {
-                if (fieldNode.value != null && Modifier.isFinal(fieldNode.access) && Modifier.isStatic(fieldNode.access)) {
-                    switch (fieldNode.desc) {
-                        case "J":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newLong((Long) fieldNode.value));
-                            break;
-                        case "F":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newFloat((Float) fieldNode.value));
-                            break;
-                        case "D":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newDouble((Double) fieldNode.value));
-                            break;
-                        case "I":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newInt((Integer) fieldNode.value));
-                            break;
-                        case "S":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newShort(((Integer) fieldNode.value).shortValue()));
-                            break;
-                        case "C":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newChar((char) ((Integer) fieldNode.value).intValue()));
-                            break;
-                        case "B":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newByte(((Integer) fieldNode.value).byteValue()));
-                            break;
-                        case "Z":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, newBoolean((Integer) fieldNode.value != 0));
-                            break;
-                        case "Ljava/lang/String;":
-                            clazz.setStaticField(fieldNode.name, fieldNode.desc, getString((String) fieldNode.value));
-                            break;
+            _classesInitializing.get()[0]++;
+            try {
+                for (FieldNode fieldNode : clazz.getClassNode().fields) {
+                    if (fieldNode.value != null && Modifier.isFinal(fieldNode.access) && Modifier.isStatic(fieldNode.access)) {
+                        switch (fieldNode.desc) {
+                            case "J":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newLong((Long) fieldNode.value));
+                                break;
+                            case "F":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newFloat((Float) fieldNode.value));
+                                break;
+                            case "D":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newDouble((Double) fieldNode.value));
+                                break;
+                            case "I":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newInt((Integer) fieldNode.value));
+                                break;
+                            case "S":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newShort(((Integer) fieldNode.value).shortValue()));
+                                break;
+                            case "C":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newChar((char) ((Integer) fieldNode.value).intValue()));
+                                break;
+                            case "B":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newByte(((Integer) fieldNode.value).byteValue()));
+                                break;
+                            case "Z":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, newBoolean((Integer) fieldNode.value != 0));
+                                break;
+                            case "Ljava/lang/String;":
+                                clazz.setStaticField(fieldNode.name, fieldNode.desc, getString((String) fieldNode.value));
+                                break;
+                        }
                     }
                 }
-            }
 
-            if (!clazz.isInterface()) {
-                List<JavaClass> needsInitialization = new ArrayList<>();
-                JavaClass superClass = clazz.getSuperclass();
-                if (superClass != null) {
-                    needsInitialization.add(superClass);
-
-                    Predicate<JavaClass> shouldInit = intf -> {
-                        boolean init = false;
-                        for (MethodNode mn : intf.getClassNode().methods) {
-                            if (!Modifier.isAbstract(mn.access) && !Modifier.isStatic(mn.access)) {
-                                init = true;
+                if (!clazz.isInterface()) {
+                    List<JavaClass> needsInitialization = new ArrayList<>();
+                    JavaClass superClass = clazz.getSuperclass();
+                    if (superClass != null) {
+                        needsInitialization.add(superClass);
+
+                        Predicate<JavaClass> shouldInit = intf -> {
+                            boolean init = false;
+                            for (MethodNode mn : intf.getClassNode().methods) {
+                                if (!Modifier.isAbstract(mn.access) && !Modifier.isStatic(mn.access)) {
+                                    init = true;
+                                }
                             }
-                        }
-                        return init;
-                    };
+                            return init;
+                        };
 
-                    List<JavaClass> intfInitOrder = new ArrayList<>();
+                        List<JavaClass> intfInitOrder = new ArrayList<>();
 
-                    java.util.Stack<JavaClass> dfs = new java.util.Stack<>();
-                    for (JavaClass intf : clazz.getInterfaces()) {
-                        if (shouldInit.test(intf)) {
-                            dfs.push(intf);
+                        java.util.Stack<JavaClass> dfs = new java.util.Stack<>();
+                        for (JavaClass intf : clazz.getInterfaces()) {
+                            if (shouldInit.test(intf)) {
+                                dfs.push(intf);
+                            }
                         }
-                    }
-                    while (!dfs.isEmpty()) {
-                        JavaClass intf = dfs.pop();
-                        for (JavaClass intf1 : intf.getInterfaces()) {
-                            if (shouldInit.test(intf1)) {
-                                dfs.push(intf1);
+                        while (!dfs.isEmpty()) {
+                            JavaClass intf = dfs.pop();
+                            for (JavaClass intf1 : intf.getInterfaces()) {
+                                if (shouldInit.test(intf1)) {
+                                    dfs.push(intf1);
+                                }
                             }
+                            intfInitOrder.add(0, intf);
                         }
-                        intfInitOrder.add(0, intf);
+
+                        needsInitialization.addAll(intfInitOrder);
                     }
 
-                    needsInitialization.addAll(intfInitOrder);
+                    for (JavaClass javaClass : needsInitialization) {
+                        try {
+                            initialize(javaClass);
+                        } catch (VMException ex) {
+                            clazz.getInitializationLock().lock();
+                            clazz.setInitializationState(JavaClass.InitializationState.ERROR, null);
+                            clazz.getInitializationCondition().signalAll();
+                            clazz.getInitializationLock().unlock();
+                            throw ex;
+                        }
+                    }
                 }
 
-                for (JavaClass javaClass : needsInitialization) {
+                MethodNode clinit = ASMHelper.findMethod(clazz.getClassNode(), "<clinit>", "()V");
+                if (clinit != null) {
                     try {
-                        initialize(javaClass);
+                        internalExecute(clazz.getClassNode(), clinit, null, new JavaWrapper[0], currentInsn.get(Thread.currentThread()));
                     } catch (VMException ex) {
+                        if (DEBUG_PRINT_EXCEPTIONS) {
+                            printException(ex);
+                        }
+                        JavaWrapper err = ex.getWrapped();
+                        if (!getSystemDictionary().getJavaLangError().isAssignableFrom(err.getJavaClass())) {
+                            err = newExceptionInInitializerError(err);
+                        }
                         clazz.getInitializationLock().lock();
                         clazz.setInitializationState(JavaClass.InitializationState.ERROR, null);
                         clazz.getInitializationCondition().signalAll();
                         clazz.getInitializationLock().unlock();
-                        throw ex;
-                    }
-                }
-            }
-
-            MethodNode clinit = ASMHelper.findMethod(clazz.getClassNode(), "<clinit>", "()V");
-            if (clinit != null) {
-                try {
-                    internalExecute(clazz.getClassNode(), clinit, null, new JavaWrapper[0], currentInsn.get(Thread.currentThread()));
-                } catch (VMException ex) {
-                    if (DEBUG_PRINT_EXCEPTIONS) {
-                        printException(ex);
+                        throw new VMException(err);
                     }
-                    JavaWrapper err = ex.getWrapped();
-                    if (!getSystemDictionary().getJavaLangError().isAssignableFrom(err.getJavaClass())) {
-                        err = newExceptionInInitializerError(err);
-                    }
-                    clazz.getInitializationLock().lock();
-                    clazz.setInitializationState(JavaClass.InitializationState.ERROR, null);
-                    clazz.getInitializationCondition().signalAll();
-                    clazz.getInitializationLock().unlock();
-                    throw new VMException(err);
                 }
+            } finally {
+                _classesInitializing.get()[0]--;
             }
             clazz.getInitializationLock().lock();
             clazz.setInitializationState(JavaClass.InitializationState.INITIALIZED, null);
@@ -919,7 +1245,7 @@ public class VirtualMachine {
 
     public JavaWrapper newInstanceWithOop(JavaClass clazz, Oop oop, String ctorsig, JavaWrapper... args) {
         JavaUninitialized unit = new JavaUninitialized(clazz, clazz.internalGetType().getInternalName());
-        unit.initializedValue().setMetadata("oop", oop);
+        unit.initializedValue().setMetadata(VMSymbols.METADATA_OOP, oop);
         JavaWrapper instance = JavaWrapper.wrap(unit);
         if (oop instanceof ThreadOop) {
             ((ThreadOop) oop).setThread(instance);
@@ -958,11 +1284,70 @@ public class VirtualMachine {
         return instance;
     }
 
+    public ConstMethod getConstMethod(MethodNode methodNode) {
+        ConstMethod constMethod = _constMethods.get(methodNode);
+        if (constMethod == null || constMethod.isStale()) {
+            constMethod = new ConstMethod(this, methodNode);
+            _constMethods.put(methodNode, constMethod);
+        }
+        return constMethod;
+    }
+
+    /*
+     * Must be called if a method's instructions are edited in place after it has been executed
+     */
+    public void invalidateConstMethod(MethodNode methodNode) {
+        _constMethods.remove(methodNode);
+    }
+
     @Deprecated
     public JavaClass forName(String name) {
         return _classCache.get(name);
     }
 
+    public Object getClassResolutionLock(String descriptor) {
+        return _classResolutionLocks.computeIfAbsent(descriptor, key -> new Object());
+    }
+
+    /*
+     * Anyone still waiting on the lock finds the class cached once they get it
+     */
+    public void releaseClassResolutionLock(String descriptor, Object lock) {
+        _classResolutionLocks.remove(descriptor, lock);
+    }
+
+    /*
+     * Returns false if the calling thread is already creating the class, which means it's its own superclass
+     */
+    public boolean beginClassCreation(String descriptor) {
+        return _classesBeingCreated.get().add(descriptor);
+    }
+
+    public void endClassCreation(String descriptor) {
+        _classesBeingCreated.get().remove(descriptor);
+    }
+
+    /*
+     * Every guest monitor is entered and exited through these, so that it's known whether a thread holds any
+     */
+    public void enterMonitor(Lock monitor) {
+        monitor.lock();
+        _monitorsHeld.get()[0]++;
+    }
+
+    public void exitMonitor(Lock monitor) {
+        monitor.unlock();
+        _monitorsHeld.get()[0]--;
+    }
+
+    /*
+     * Whether the current thread holds a guest monitor or is running a static initializer. Other threads entering the
+     * monitor or touching the class wait for the current one, so it mustn't wait for them in turn
+     */
+    public boolean mayBlockOtherThreads() {
+        return _monitorsHeld.get()[0] != 0 || _classesInitializing.get()[0] != 0;
+    }
+
     @Deprecated
     public void cacheClass(JavaClass javaClass) {
         if (!javaClass.isPrimitive()) {
@@ -979,6 +1364,7 @@ public class VirtualMachine {
                 throw new IllegalStateException("Hook already exists for " + key + " (thread " + Thread.currentThread().getId() + ")");
             }
             HookedMethods.put(key, method);
+            _linkEpoch.incrementAndGet();
             return this;
         } finally {
             lock.unlock();
@@ -991,6 +1377,7 @@ public class VirtualMachine {
             throw new IllegalStateException("Hook already exists for " + key + " (thread " + Thread.currentThread().getId() + ")");
         }
         fieldGetterHooks.put(key, field);
+        _linkEpoch.incrementAndGet();
         return this;
     }
 
@@ -1000,11 +1387,13 @@ public class VirtualMachine {
             throw new IllegalStateException("Hook already exists for " + key);
         }
         fieldSetterHooks.put(key, field);
+        _linkEpoch.incrementAndGet();
         return this;
     }
 
     public VirtualMachine classpath(Collection<ClassNode> classNodes) {
         classNodes.forEach(node -> _classpath.putIfAbsent(node.name, node));
+        _linkEpoch.incrementAndGet();
 
         return this;
     }
@@ -1017,6 +1406,7 @@ public class VirtualMachine {
             _classpath.putIfAbsent(node.name, node);
             _constantPools.putIfAbsent(node, new ConstantPool(this, reader));
         }
+        _linkEpoch.incrementAndGet();
 
         return this;
     }
@@ -1033,7 +1423,7 @@ public class VirtualMachine {
             instance = JavaWrapper.wrap(new JavaUnknown(this, JavaClass.forName(this, TypeHelper.getTypeByInternalName(this, classNode.name)), "Instance"));
         }
 
-        for (Type type : Type.getArgumentTypes(methodNode.desc)) {
+        for (Type type : symbolTable.method(methodNode.desc).getArgumentTypes()) {
             if (type.getSort() == Type.VOID || type.getSort() == Type.METHOD) {
                 throw new IllegalArgumentException("Unexpected type in desc");
             } else {
@@ -1053,6 +1443,24 @@ public class VirtualMachine {
     }
 
     public MethodExecution execute(ClassNode classNode, MethodNode methodNode, JavaWrapper instance, List<JavaWrapper> params, ExecutionOptions options) throws VMException {
+        if (options == null || !options.hasBudget()) {
+            return executeWithOptions(classNode, methodNode, instance, params, options);
+        }
+        // nested executions without budgets of their own keep counting against this one
+        ExecutionBudget previous = _budget.get();
+        _budget.set(new ExecutionBudget(options));
+        try {
+            return executeWithOptions(classNode, methodNode, instance, params, options);
+        } finally {
+            _budget.set(previous);
+        }
+    }
+
+    public ExecutionBudget getCurrentBudget() {
+        return _budget.get();
+    }
+
+    private MethodExecution executeWithOptions(ClassNode classNode, MethodNode methodNode, JavaWrapper instance, List<JavaWrapper> params, ExecutionOptions options) {
         MethodExecution execution = new MethodExecution(this, classNode, methodNode, options);
 
         HookInfo info = new HookInfo(classNode, methodNode, instance, params);
@@ -1061,9 +1469,12 @@ public class VirtualMachine {
             execution.setReturnValue(info.getReturnValue());
             return execution;
         }
+        if ((_eventMask & ExecutionListener.CALL) != 0) {
+            fireCall(classNode, methodNode, instance, params == null ? null : params.toArray(new JavaWrapper[params.size()]));
+        }
 
-        Stack stack = new Stack();
-        Locals locals = new Locals();
+        Stack stack = new Stack(this);
+        Locals locals = new Locals(this);
         if (!Modifier.isStatic(methodNode.access)) {
             if (instance == null)
                 throw new ExecutionException("NullPointerException");
@@ -1072,7 +1483,7 @@ public class VirtualMachine {
         }
         int index = Modifier.isStatic(methodNode.access) ? 0 : 1;
 
-        Type[] argTypes = Type.getArgumentTypes(methodNode.desc);
+        Type[] argTypes = symbolTable.method(methodNode.desc).getArgumentTypes();
 
         int startTypeInd = 0;
 
@@ -1108,7 +1519,7 @@ public class VirtualMachine {
             }
         } else {
             try {
-                returnValue = execute(execution, stack, locals, instance, methodNode.instructions.getFirst(), false);
+                returnValue = execute(execution, stack, locals, instance, 0, false);
             } catch (VMException e) {
 //                JavaWrapper wrapper = e.getWrapped();
 //                StacktraceException ste = wrapper.get().getMetadata("throwable");
@@ -1116,12 +1527,16 @@ public class VirtualMachine {
                 // todo what
                 throw e;
             } catch (AbortException e) {
+                execution.setAbortCause(e);
                 returnValue = null;
             }
         }
         info.setReturnValue(returnValue);
         afterCallHooks.forEach(c -> c.accept(info));
         execution.setReturnValue(info.getReturnValue());
+        if ((_eventMask & ExecutionListener.RETURN) != 0 && execution.getAbortCause() == null) {
+            fireReturn(classNode, methodNode, execution.getReturnValue());
+        }
         return execution;
     }
 
@@ -1135,26 +1550,163 @@ public class VirtualMachine {
         return token;
     }
 
+    /**
+     * Subscribes the listener to the events in the mask, see the constants in {@link ExecutionListener}
+     */
+    public void addListener(ExecutionListener listener, int mask) {
+        synchronized (_listenerLock) {
+            ListenerRegistration[] updated = Arrays.copyOf(_listeners, _listeners.length + 1);
+            updated[_listeners.length] = new ListenerRegistration(listener, mask);
+            _listeners = updated;
+            _eventMask |= mask;
+        }
+    }
+
+    public void removeListener(ExecutionListener listener) {
+        synchronized (_listenerLock) {
+            List<ListenerRegistration> remaining = new ArrayList<>();
+            int mask = 0;
+            for (ListenerRegistration registration : _listeners) {
+                if (registration.listener != listener) {
+                    remaining.add(registration);
+                    mask |= registration.mask;
+                }
+            }
+            _listeners = remaining.toArray(new ListenerRegistration[remaining.size()]);
+            _eventMask = mask;
+        }
+    }
+
+    public boolean isListening(int event) {
+        return (_eventMask & event) != 0;
+    }
+
+    public void fireAllocation(MethodExecution execution, AbstractInsnNode insn, JavaWrapper value) {
+        for (ListenerRegistration registration : _listeners) {
+            if ((registration.mask & ExecutionListener.ALLOCATION) != 0) {
+                registration.listener.onAllocation(execution, insn, value);
+            }
+        }
+    }
+
+    private void fireInstruction(MethodExecution execution, AbstractInsnNode insn, Stack stack, Locals locals) {
+        for (ListenerRegistration registration : _listeners) {
+            if ((registration.mask & ExecutionListener.INSTRUCTION) != 0) {
+                registration.listener.onInstruction(execution, insn, stack, locals);
+            }
+        }
+    }
+
+    private void fireCall(ClassNode classNode, MethodNode methodNode, JavaWrapper instance, JavaWrapper[] args) {
+        for (ListenerRegistration registration : _listeners) {
+            if ((registration.mask & ExecutionListener.CALL) != 0) {
+                registration.listener.onCall(classNode, methodNode, instance, args);
+            }
+        }
+    }
+
+    private void fireReturn(ClassNode classNode, MethodNode methodNode, JavaWrapper result) {
+        for (ListenerRegistration registration : _listeners) {
+            if ((registration.mask & ExecutionListener.RETURN) != 0) {
+                registration.listener.onReturn(classNode, methodNode, result);
+            }
+        }
+    }
+
+    private void fireException(MethodExecution execution, AbstractInsnNode insn, JavaWrapper exception) {
+        for (ListenerRegistration registration : _listeners) {
+            if ((registration.mask & ExecutionListener.EXCEPTION) != 0) {
+                registration.listener.onException(execution, insn, exception);
+            }
+        }
+    }
+
+    private static class ListenerRegistration {
+        private final ExecutionListener listener;
+        private final int mask;
+
+        private ListenerRegistration(ExecutionListener listener, int mask) {
+            this.listener = listener;
+            this.mask = mask;
+        }
+    }
+
     public JavaWrapper internalExecute(ClassNode classNode, MethodNode methodNode, JavaWrapper instance, JavaWrapper[] params, AbstractInsnNode prev) {
-        MethodExecution execution = new MethodExecution(this, classNode, methodNode, null);
+        return internalExecute(classNode, methodNode, instance, params, prev, getConstMethod(methodNode).getHook(this, classNode));
+    }
 
-        HookInfo info = new HookInfo(classNode, methodNode, instance, params == null ? Collections.emptyList() : Arrays.asList(params));
-        beforeCallHooks.forEach(c -> c.accept(info));
-        if (info.getReturnValue() != null) {
-            return info.getReturnValue();
+    /*
+     * For callers that have already looked up the hook for the method, if any
+     */
+    public JavaWrapper internalExecute(ClassNode classNode, MethodNode methodNode, JavaWrapper instance, JavaWrapper[] params, AbstractInsnNode prev, HookedMethod hookedMethod) {
+        MethodExecution execution = new MethodExecution(this, classNode, getConstMethod(methodNode));
+
+        if (!beforeCallHooks.isEmpty()) {
+            HookInfo info = new HookInfo(classNode, methodNode, instance, params == null ? Collections.emptyList() : Arrays.asList(params));
+            beforeCallHooks.forEach(c -> c.accept(info));
+            if (info.getReturnValue() != null) {
+                return info.getReturnValue();
+            }
+        }
+        if ((_eventMask & ExecutionListener.CALL) != 0) {
+            fireCall(classNode, methodNode, instance, params);
         }
 
-        Stack stack = new Stack();
-        Locals locals = new Locals();
-        if (!Modifier.isStatic(methodNode.access)) {
+        if (!Modifier.isStatic(methodNode.access) && instance == null) {
+            throw new ExecutionException("NullPointerException");
+        }
+
+        if (_stacktrace.computeIfAbsent(Thread.currentThread(), key -> new ArrayDeque<>()).size() > 0) {
+            _stacktrace.get(Thread.currentThread()).peekFirst().setInstruction(currentInsn.get(Thread.currentThread()));
+        }
+
+
+        JavaWrapper result;
+        if (hookedMethod != null) {
+            depth.set(depth.get() + 1);
+            try {
+                if (TRACE) {
+                    System.out.println(StringUtils.repeat("\t", depth.get()) + "Executing hook " + StringEscapeUtils.escapeJava(classNode.name) + "." + StringEscapeUtils.escapeJava(methodNode.name + "." + methodNode.desc));
+                }
+                result = hookedMethod.execute(execution, instance, params, prev);
+            } finally {
+                depth.set(depth.get() - 1);
+            }
+        } else {
+            CompiledMethod compiledMethod = JIT ? getCompiledMethod(execution, params) : null;
+            if (compiledMethod != null) {
+                result = executeCompiled(execution, compiledMethod, params);
+            } else {
+                Frame frame = _framePool.get().acquire(execution, instance);
+                try {
+                    fillLocals(frame.locals, execution.getConstMethod(), instance, params);
+                    result = execute(frame, false);
+                } finally {
+                    releaseFrame(frame);
+                }
+            }
+        }
+        if (!afterCallHooks.isEmpty()) {
+            HookInfo info1 = new HookInfo(classNode, methodNode);
+            info1.setReturnValue(result);
+            afterCallHooks.forEach(c -> c.accept(info1));
+        }
+        if ((_eventMask & ExecutionListener.RETURN) != 0) {
+            fireReturn(classNode, methodNode, result);
+        }
+        return result;
+    }
+
+    private void fillLocals(Locals locals, ConstMethod code, JavaWrapper instance, JavaWrapper[] params) {
+        if (!code.isStatic()) {
             if (instance == null)
                 throw new ExecutionException("NullPointerException");
 
             locals.set(0, instance);
         }
-        int index = Modifier.isStatic(methodNode.access) ? 0 : 1;
+        int index = code.isStatic() ? 0 : 1;
 
-        Type[] argTypes = Type.getArgumentTypes(methodNode.desc);
+        Type[] argTypes = code.getArgumentTypes();
 
         int startTypeInd = 0;
 
@@ -1174,80 +1726,108 @@ public class VirtualMachine {
                 locals.set(index++, JavaWrapper.createTop());
             }
         }
+    }
 
-        if (_stacktrace.computeIfAbsent(Thread.currentThread(), key -> new ArrayDeque<>()).size() > 0) {
-            _stacktrace.get(Thread.currentThread()).peekFirst().setInstruction(currentInsn.get(Thread.currentThread()));
+    /*
+     * Gives a call's frame back to its pool, unless breakpoints or listeners were shown its stack and locals and might
+     * still hold on to them
+     */
+    private void releaseFrame(Frame frame) {
+        if (frame.pool != null && breakpoints.isEmpty() && (_eventMask & ExecutionListener.INSTRUCTION) == 0) {
+            frame.pool.release(frame);
         }
+    }
 
-
-        HookedMethod hookedMethod = getHook(classNode.name, methodNode.name, methodNode.desc);
-        JavaWrapper result;
-        if (hookedMethod != null) {
-            depth.set(depth.get() + 1);
-            try {
-                if (TRACE) {
-                    System.out.println(StringUtils.repeat("\t", depth.get()) + "Executing hook " + StringEscapeUtils.escapeJava(classNode.name) + "." + StringEscapeUtils.escapeJava(methodNode.name + "." + methodNode.desc));
+    /*
+     * Returns the compiled form of the method once it's hot, as long as nothing needs to observe or count individual
+     * instructions and the arguments are concrete
+     */
+    private CompiledMethod getCompiledMethod(MethodExecution execution, JavaWrapper[] params) {
+        if (!breakpoints.isEmpty() || execution.getBudget() != null || (_eventMask & (ExecutionListener.INSTRUCTION | ExecutionListener.EXCEPTION | ExecutionListener.ALLOCATION)) != 0) {
+            return null;
+        }
+        ConstMethod code = execution.getConstMethod();
+        if (!code.isCompilationAttempted()) {
+            if (code.countInvocation() < JIT_THRESHOLD) {
+                return null;
+            }
+            synchronized (code) {
+                if (!code.isCompilationAttempted()) {
+                    code.setCompiledMethod(jitCompiler.compile(execution.getClassNode(), execution.getMethodNode()));
                 }
-                result = hookedMethod.execute(execution, instance, params, prev);
-            } finally {
-                depth.set(depth.get() - 1);
             }
-        } else {
-            result = execute(execution, stack, locals, instance, methodNode.instructions.getFirst(), false);
         }
-        HookInfo info1 = new HookInfo(classNode, methodNode);
-        info1.setReturnValue(result);
-        afterCallHooks.forEach(c -> c.accept(info1));
-        return result;
+        CompiledMethod compiledMethod = code.getCompiledMethod();
+        if (compiledMethod == null || !compiledMethod.canEnter(params)) {
+            return null;
+        }
+        return compiledMethod;
+    }
+
+    private JavaWrapper executeCompiled(MethodExecution execution, CompiledMethod compiledMethod, JavaWrapper[] params) {
+        depth.set(depth.get() + 1);
+        pushStacktrace(execution.getClassNode(), execution.getMethodNode(), execution.getConstMethod().insnAt(0));
+        try {
+            return compiledMethod.invoke(params);
+        } finally {
+            popStacktrace();
+            depth.set(depth.get() - 1);
+        }
     }
 
     /*
-     * Main executor. This will go through each instruction and execute the instruction using a switch statement
+     * Main executor. This will go through each instruction and dispatch it to its handler in INSTRUCTION_HANDLERS
      */
-    private JavaWrapper execute(MethodExecution execution, Stack stack, Locals locals, JavaWrapper curInstance, AbstractInsnNode now, boolean isBranch) {
+    private JavaWrapper execute(MethodExecution execution, Stack stack, Locals locals, JavaWrapper curInstance, int pc, boolean isBranch) {
+        return execute(new Frame(execution, stack, locals, curInstance, pc), isBranch);
+    }
+
+    // frame is the method this call was made for, with the frames it has called into stacked on top
+    private JavaWrapper execute(Frame frame, boolean isBranch) {
+        MethodExecution execution = frame.execution;
+        Stack stack = frame.stack;
+        Locals locals = frame.locals;
+        int pc = frame.pc;
         if (Modifier.isNative(execution.getMethodNode().access)) {
             throw new ExecutionException("UnsatisfiedLinkError: " + execution.getClassNode().name + " " + execution.getMethodNode().name + execution.getMethodNode().desc);
         }
+        ConstMethod code = execution.getConstMethod();
+        AbstractInsnNode now = pc < code.length() ? code.insnAt(pc) : null;
         depth.set(depth.get() + 1);
         if (!isBranch)
             pushStacktrace(execution.getClassNode(), execution.getMethodNode(), now);
+        // set while this is one of the paths out of an unknown branch
+        PathExplorer.Path branchPath = isBranch ? execution.getPath() : null;
+        ExecutionBudget budget = execution.getBudget();
         try {
-            Lock needToUnlock = null;
             try {
-                if (Modifier.isSynchronized(execution.getMethodNode().access)) {
-                    if (curInstance == null) {
-                        JavaClass jc = JavaClass.forName(this, execution.getClassNode().name);
-                        needToUnlock = jc.getLock();
-                    } else {
-                        needToUnlock = curInstance.get().getLock();
-                    }
-                }
-
-                if (needToUnlock != null) {
-                    needToUnlock.lock();
-                }
+                lockFrame(frame);
 
-                execution.Visited.merge(now, 1, Integer::sum);
-                if (execution.Visited.get(now) > 500) {
-                    return JavaWrapper.wrap(new JavaUnknown(this, JavaClass.forName(this, Type.getReturnType(execution.getMethodNode().desc)), "Stack Overflow on " + stack + " " + locals));
+                if (budget != null) {
+                    budget.enter(depth.get());
                 }
 
                 ClassNode classNode = execution.getClassNode();
                 MethodNode method = execution.getMethodNode();
-                InstructionSnapshot[] snapshots = execution.getInstructions();
-
-                List<AbstractInsnNode> branchTo = new ArrayList<>();
 
                 if (TRACE) {
                     System.out.println(Thread.currentThread().getId() + StringUtils.repeat("\t", depth.get()) + "Executing " + StringEscapeUtils.escapeJava(classNode.name) + "." + StringEscapeUtils.escapeJava(method.name + "." + method.desc));
                 }
                 Thread currentThread = Thread.currentThread();
+                int previousPc = -1;
                 forever:
                 while (true) {
                     try {
-                        if (now == null) {
+                        if (budget != null) {
+                            budget.instructions(1);
+                        }
+                        if (branchPath != null && !branchPath.step(1)) {
+                            return null;
+                        }
+                        if (pc >= code.length()) {
                             throw new ExecutionException("Falling off end of code in " + StringEscapeUtils.escapeJava(classNode.name) + " " + StringEscapeUtils.escapeJava(method.name) + StringEscapeUtils.escapeJava(method.desc));
                         }
+                        now = code.insnAt(pc);
                         currentInsn.put(currentThread, now);
                         if (
                                 (DEBUG
@@ -1260,486 +1840,106 @@ public class VirtualMachine {
                             System.out.println();
                             System.out.println(method.instructions.indexOf(now) + " " + Utils.prettyprint(now));
                         }
-                        if (now.getOpcode() != -1 && INSTRUCTION_HANDLERS[now.getOpcode()] != null) {
-                            branchTo.clear();
-                            INSTRUCTION_HANDLERS[now.getOpcode()].execute(execution, now, stack, locals, branchTo);
-                            if (branchTo.size() == 1) {
-                                now = branchTo.get(0);
-                            } else if (branchTo.size() > 1) {
-                                JavaUnknown unknown = new JavaUnknown(this, JavaClass.forName(this, TypeHelper.getTypeByInternalName(this, "java/lang/Object")), "Multiple possibilities on " + Utils.prettyprint(now));
-                                for (AbstractInsnNode node : branchTo) {
-                                    unknown.merge(execute(execution, stack.copy(), locals.copy(), curInstance, node, true).toString());
-                                }
-                                return JavaWrapper.wrap(unknown);
+                        // fused instructions would hide the instructions they cover from anyone observing them
+                        boolean watching = execution.getOptions() != null && execution.getOptions().hasWatches();
+                        boolean observed = watching || !breakpoints.isEmpty() || (_eventMask & ExecutionListener.INSTRUCTION) != 0;
+                        if (observed) {
+                            notifyPseudoInstructions(execution, now, stack, locals);
+                            if ((_eventMask & ExecutionListener.INSTRUCTION) != 0) {
+                                fireInstruction(execution, now, stack, locals);
                             }
-                        } else {
-                            switch (now.getOpcode()) {
-                                case POP:
-                                    stack.pop();
-                                    break;
-                                case POP2: {
-                                    JavaWrapper wrapper = stack.pop();
-                                    if (!wrapper.is(JavaValueType.WIDE)) {
-                                        stack.pop();
-                                    }
-                                    break;
-                                }
-                                case DUP:
-                                    stack.push(stack.peek());
-                                    break;
-                                case DUP_X1: {
-                                    JavaWrapper obj = stack.peek();
-                                    if (obj.is(JavaValueType.WIDE)) {
-                                        throw new ExecutionException("Dup with wide value");
-                                    }
-                                    JavaWrapper a = stack.pop();
-                                    JavaWrapper b = stack.pop();
-                                    stack.push(a);
-                                    stack.push(b);
-                                    stack.push(a);
-                                    break;
-                                }
-                                case DUP_X2: {
-                                    JavaWrapper obj = stack.peek();
-                                    if (obj.is(JavaValueType.WIDE)) {
-                                        throw new ExecutionException("Dup with wide value");
-                                    }
-                                    JavaWrapper a = stack.pop();
-                                    JavaWrapper b = stack.pop();
-                                    JavaWrapper c = stack.pop();
-                                    stack.push(a);
-                                    stack.push(c);
-                                    stack.push(b);
-                                    stack.push(a);
-                                    break;
-                                }
-                                case DUP2: {
-                                    JavaWrapper a = stack.pop();
-                                    if (a.is(JavaValueType.WIDE)) {
-                                        stack.push(a);
-                                        stack.push(a);
-                                    } else {
-                                        JavaWrapper b = stack.pop();
-                                        stack.push(b);
-                                        stack.push(a);
-                                        stack.push(b);
-                                        stack.push(a);
-                                    }
-                                    break;
-                                }
-                                case DUP2_X1: {
-                                    JavaWrapper obj = stack.pop();
-                                    if (obj.is(JavaValueType.WIDE)) {
-                                        JavaWrapper c = stack.pop();
-                                        stack.push(obj);
-                                        stack.push(c);
-                                        stack.push(obj);
-                                    } else {
-                                        JavaWrapper b = stack.pop();
-                                        JavaWrapper c = stack.pop();
-                                        stack.push(b);
-                                        stack.push(obj);
-                                        stack.push(c);
-                                        stack.push(b);
-                                        stack.push(obj);
-                                    }
-                                    break;
-                                }
-                                case DUP2_X2: {
-                                    JavaWrapper obj = stack.pop();
-                                    if (obj.is(JavaValueType.WIDE)) {
-                                        JavaWrapper c = stack.pop();
-                                        if (c.is(JavaValueType.WIDE)) {
-                                            stack.push(obj);
-                                            stack.push(c);
-                                            stack.push(obj);
-                                        } else {
-                                            JavaWrapper d = stack.pop();
-                                            stack.pushAll(obj, d, c, obj);
-                                        }
-                                    } else {
-                                        JavaWrapper b = stack.pop();
-                                        JavaWrapper c = stack.pop();
-                                        if (c.is(JavaValueType.WIDE)) {
-                                            stack.pushAll(b, obj, c, b, obj);
-                                        } else {
-                                            JavaWrapper d = stack.pop();
-                                            stack.pushAll(b, obj, d, c, b, obj);
-                                        }
-                                    }
-                                    break;
-                                }
-                                case SWAP: {
-                                    JavaWrapper a = stack.pop();
-                                    JavaWrapper b = stack.pop();
-                                    stack.push(a);
-                                    stack.push(b);
-                                    break;
-                                }
-                                case INEG: {
-                                    JavaWrapper value = stack.pop();
-                                    if (!value.get().is(JavaValueType.UNKNOWN)) {
-                                        stack.push(JavaWrapper.createInteger(this, -value.get().asInt()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, INTEGER, "INEG " + value)));
-                                    }
-                                    break;
-                                }
-                                case LNEG: {
-                                    JavaWrapper value = stack.pop();
-                                    if (!value.get().is(JavaValueType.UNKNOWN)) {
-                                        stack.push(newLong(-value.get().asLong()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, LONG, "LNEG " + value)));
-                                    }
-                                    break;
-                                }
-                                case FNEG: {
-                                    JavaWrapper value = stack.pop();
-                                    if (!value.get().is(JavaValueType.UNKNOWN)) {
-                                        stack.push(JavaWrapper.createFloat(this, -value.get().asFloat()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, FLOAT, "FNET " + value)));
-                                    }
-                                    break;
-                                }
-                                case DNEG: {
-                                    stack.pop();
-                                    JavaWrapper value = stack.pop();
-                                    if (!value.get().is(JavaValueType.UNKNOWN)) {
-                                        stack.push(JavaWrapper.createDouble(this, -value.get().asDouble()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, DOUBLE, "DNEG " + value)));
-                                    }
-                                    break;
-                                }
-                                case IINC: {
-                                    IincInsnNode cast = (IincInsnNode) now;
-                                    if (locals.get(cast.var).get() instanceof JInteger) {
-                                        JInteger integer = (JInteger) locals.get(cast.var).get();
-                                        locals.set(cast.var, JavaWrapper.createInteger(this, integer.asInt() + cast.incr));
-                                    }
-                                    break;
-                                }
-                                case I2L: {
-                                    JavaWrapper top = stack.pop();
-                                    if (!top.get().is(JavaValueType.UNKNOWN)) {
-                                        stack.push(newLong(top.get().asInt()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, LONG, "I2L " + top.get())));
-                                    }
-                                    break;
-                                }
-                                case I2F: {
-                                    JavaWrapper top = stack.pop();
-                                    if (!top.get().is(JavaValueType.UNKNOWN)) {
-                                        stack.push(JavaWrapper.createFloat(this, top.get().asInt()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, FLOAT, "I2F " + top.get())));
-                                    }
-                                    break;
-                                }
-                                case I2D: {
-                                    JavaWrapper top = stack.pop();
-                                    if (!top.get().is(JavaValueType.UNKNOWN)) {
-                                        stack.push(JavaWrapper.createDouble(this, top.get().asInt()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, DOUBLE, "I2D " + top.get())));
-                                    }
-                                    break;
-                                }
-//                        case L2F: {
-//                            JavaValue value = stack.pop();
-//                            if (VERIFY && !(value instanceof JavaTop)) {
-//                                throw new ExecutionException("Expected JavaTop");
-//                            }
-//                            stack.push(new JavaFloat((float) stack.pop().longValue()));
-//                            break;
-//                        }
-//					case L2D:
-//					{
-//						stack.add(1, new JavaDouble(stack.remove(1).longValue()));
-//						break;
-//					}
-//                        case F2I: {
-//                            stack.push(new JavaInteger((int) stack.pop().floatValue()));
-//                            break;
-//                        }
-//                        case F2L: {
-//                            stack.push(new JavaLong((long) stack.pop().floatValue()));
-//                            stack.push(new JavaTop());
-//                            break;
-//                        }
-//                        case F2D: {
-//                            JavaValue value = stack.pop();
-//                            if (value.isKnown()) {
-//                                stack.push(new JavaDouble((double) stack.pop().floatValue()));
-//                            } else {
-//                                stack.push(new JavaUnknown(JavaDouble.class, "F2D " + value));
-//                            }
-//                            stack.push(new JavaTop());
-//                            break;
-//                        }
-//                        case D2I: {
-//                            JavaValue value = stack.pop();
-//                            if (VERIFY && !(value instanceof JavaTop)) {
-//                                throw new ExecutionException("Expected JavaTop");
-//                            }
-//                            stack.push(new JavaInteger((int) stack.pop().doubleValue()));
-//                            break;
-//                        }
-//					case D2L:
-//					{
-//						stack.add(1, new JavaLong((long) stack.remove(1).doubleValue()));
-//						break;
-//					}
-//                        case D2F: {
-//                            JavaValue value = stack.pop();
-//                            if (VERIFY && !(value instanceof JavaTop)) {
-//                                throw new ExecutionException("Expected JavaTop");
-//                            }
-//                            stack.push(new JavaFloat((float) stack.pop().doubleValue()));
-//                            break;
-//                        }
-                                case I2B: {
-                                    stack.push(newByte(stack.pop().get().asByte()));
-                                    break;
-                                }
-                                case I2C: {
-                                    JavaValue intValue = stack.pop().get();
-                                    if (!intValue.is(JavaValueType.UNKNOWN)) {
-                                        stack.push(newChar(intValue.asChar()));
-                                    } else {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, CHARACTER, JavaUnknown.UnknownCause.I2C, intValue)));
-                                    }
-                                    break;
-                                }
-                                case I2S: {
-                                    stack.push(newShort(stack.pop().asPrimitive().asShort()));
-                                    break;
-                                }
-                                case GOTO: {
-                                    JumpInsnNode cast = (JumpInsnNode) now;
-                                    now = cast.label;
-                                    break;
-                                }
-                                case JSR: {
-                                    JumpInsnNode cast = (JumpInsnNode) now;
-                                    stack.push(JavaWrapper.wrap(new JavaAddress(now)));
-                                    now = cast.label;
-                                    break;
-                                }
-                                case RET: {
-                                    VarInsnNode cast = (VarInsnNode) now;
-                                    JavaValue value = locals.get(cast.var).get();
-                                    if (!(value instanceof JavaAddress)) {
-                                        throw new ExecutionException("Expected address on stack");
-                                    }
-                                    now = ((JavaAddress) value).getReturnAddres();
-                                    break;
-                                }
-                                case TABLESWITCH: {
-                                    int x = stack.pop().get().asInt();
-                                    TableSwitchInsnNode cast = (TableSwitchInsnNode) now;
-                                    if (x - cast.min < cast.labels.size() && x - cast.min >= 0) {
-                                        now = cast.labels.get(x - cast.min);
-                                    } else {
-                                        now = cast.dflt;
-                                    }
-                                    break;
-                                }
-                                case LOOKUPSWITCH: {
-                                    LookupSwitchInsnNode cast = (LookupSwitchInsnNode) now;
-                                    JavaWrapper indexValue = stack.pop();
-                                    if (!indexValue.is(JavaValueType.UNKNOWN)) {
-                                        Integer index = indexValue.asInt();
-                                        if (cast.keys.indexOf(index) != -1) {
-                                            now = cast.labels.get(cast.keys.indexOf(index));
-                                        } else {
-                                            now = cast.dflt;
-                                        }
-                                    } else {
-                                        List<JavaWrapper> results = new ArrayList<>();
-                                        results.add(indexValue);
-                                        results.add(execute(execution, stack.copy(), locals.copy(), curInstance, cast.dflt, true));
-                                        for (LabelNode labelNode : cast.labels) {
-                                            results.add(execute(execution, stack.copy(), locals.copy(), curInstance, labelNode, true));
-                                        }
-                                        return JavaWrapper.wrap(new JavaUnknown(this, JavaClass.forName(this, TypeHelper.getTypeByInternalName(this, "java/lang/Object")), JavaUnknown.UnknownCause.LOOKUPSWITCH, results.toArray(new JavaValue[results.size()])));
-                                    }
-                                    break;
-                                }
-                                case LRETURN:
-                                case DRETURN:
-                                case IRETURN:
-                                case FRETURN:
-                                case ARETURN: {
-                                    return stack.pop();
-                                }
-                                case RETURN: {
-                                    return null;
-                                }
-                                case GETSTATIC: {
-                                    FieldInsnNode cast = (FieldInsnNode) now;
-
-                                    JavaClass ownerClass = JavaClass.forName(this, cast.owner);
-
-                                    Pair<JavaClass, JavaField> targetField = ownerClass.findFieldNode(cast.name, cast.desc, true);
-                                    if (targetField == null) {
-                                        throw new ExecutionException("null target field for " + cast.owner + " " + cast.name + " " + cast.desc);
-                                    }
-                                    initialize(targetField.getLeft());
-
-                                    HookedFieldGetter hook = getHookedFieldGetter(targetField.getLeft().getClassNode().name, cast.name, cast.desc);
-                                    JavaWrapper value;
-                                    if (hook != null) {
-                                        value = hook.get(execution, null);
-                                    } else {
-                                        value = targetField.getLeft().getStaticField(cast.name, cast.desc);
-                                    }
-
-                                    stack.push(value);
-                                    break;
-                                }
-                                case PUTSTATIC: {
-                                    FieldInsnNode cast = (FieldInsnNode) now;
-                                    JavaWrapper obj = stack.pop();
-
-                                    JavaClass ownerClass = JavaClass.forName(this, cast.owner);
-
-                                    Pair<JavaClass, JavaField> targetField = ownerClass.findFieldNode(cast.name, cast.desc, true);
-                                    initialize(targetField.getLeft());
-
-                                    HookedFieldSetter hook = getHookedFieldSetter(targetField.getLeft().getClassNode().name, cast.name, cast.desc);
-                                    if (hook != null) {
-                                        hook.set(execution, null, obj);
-                                    } else {
-                                        targetField.getLeft().setStaticField(cast.name, cast.desc, obj);
-                                    }
-                                    break;
-                                }
-                                case GETFIELD: {
-                                    JavaWrapper obj = stack.pop();
-                                    FieldInsnNode cast = (FieldInsnNode) now;
-
-                                    JavaClass ownerClass = JavaClass.forName(this, cast.owner);
-
-                                    Pair<JavaClass, JavaField> targetField = ownerClass.findFieldNode(cast.name, cast.desc, true);
-                                    HookedFieldGetter hook = getHookedFieldGetter(targetField.getLeft().getClassNode().name, cast.name, cast.desc);
-
-                                    JavaWrapper value;
-                                    if (hook != null) {
-                                        value = hook.get(execution, obj);
-                                    } else {
-                                        value = ((JavaObject) obj.get()).getField(cast.name, cast.desc);
-                                    }
-
-                                    stack.push(value);
+                        }
+                        if (PROFILE_OPCODE_PAIRS) {
+                            if (previousPc == pc - 1 && previousPc >= 0) {
+                                OpcodePairProfiler.record(code.opcodeAt(previousPc), code.opcodeAt(pc));
+                            }
+                            previousPc = pc;
+                            observed = true;
+                        }
+                        int opcode = observed ? code.opcodeAt(pc) : code.fusedOpcodeAt(pc);
+                        int next = INSTRUCTION_HANDLERS[opcode].execute(execution, code, pc, stack, locals);
+                        if (opcode >= 256 && (budget != null || branchPath != null)) {
+                            // only the first instruction of the sequence was counted above
+                            int uncounted = Superinstructions.covered(opcode, pc, next) - 1;
+                            if (budget != null) {
+                                budget.instructions(uncounted);
+                            }
+                            if (branchPath != null && !branchPath.step(uncounted)) {
+                                return null;
+                            }
+                        }
+                        if (next == Instruction.FORK && branchPath != null && frame.caller == null) {
+                            next = branchPath.fork(code, pc, stack, locals);
+                            if (next < 0) {
+                                return null;
+                            }
+                        }
+                        if (next < 0) {
+                            JavaWrapper result;
+                            switch (next) {
+                                case Instruction.RETURN_VALUE:
+                                    result = stack.pop();
                                     break;
-                                }
-                                case PUTFIELD: {
-                                    JavaWrapper obj = stack.pop();
-                                    JavaWrapper instance = stack.pop();
-                                    FieldInsnNode cast = (FieldInsnNode) now;
-
-                                    JavaClass ownerClass = JavaClass.forName(this, cast.owner);
-
-                                    Pair<JavaClass, JavaField> targetField = ownerClass.findFieldNode(cast.name, cast.desc, true);
-                                    HookedFieldSetter hook = getHookedFieldSetter(targetField.getLeft().getClassNode().name, cast.name, cast.desc);
-
-                                    if (hook != null) {
-                                        hook.set(execution, instance, obj);
-                                    } else {
-                                        if (instance.get() instanceof JavaUninitialized) {
-                                            ((JavaUninitialized) instance.get()).initializedValue().setField(cast.name, cast.desc, obj);
-                                        } else {
-                                            ((JavaObject) instance.get()).setField(cast.name, cast.desc, obj);
-                                        }
-                                    }
+                                case Instruction.RETURN_VOID:
+                                    result = null;
                                     break;
-                                }
-                                case ANEWARRAY: {
-                                    TypeInsnNode typeInsnNode = (TypeInsnNode) now;
-                                    int len = stack.pop().get().asInt();
-                                    String type;
-                                    // todo TypeHelper should do this
-                                    if (typeInsnNode.desc.startsWith("[") || (typeInsnNode.desc.startsWith("L") && typeInsnNode.desc.endsWith(";"))) {
-                                        type = "[" + typeInsnNode.desc;
-                                    } else {
-                                        type = "[L" + typeInsnNode.desc + ";";
-                                    }
-                                    stack.push(JavaWrapper.createArray(JavaClass.forName(this, Type.getType(type)), new JavaWrapper[len]));
+                                case Instruction.FORK:
+                                    result = new PathExplorer(this, execution, frame.instance).explore(code, pc, stack, locals);
                                     break;
-                                }
-                                case ARRAYLENGTH: {
-                                    JavaWrapper obj = stack.pop();
-                                    if (obj.is(JavaValueType.UNKNOWN)) {
-                                        stack.push(JavaWrapper.wrap(new JavaUnknown(this, INTEGER, "ArrayLength on (" + obj + ")")));
-                                    } else {
-                                        if (!obj.is(JavaValueType.ARRAY)) {
-                                            throw new ExecutionException("Not array");
-                                        }
-                                        stack.push(newInt(obj.asArray().length()));
-                                    }
-                                    break;
-                                }
-                                case ATHROW: {
-                                    JavaWrapper throwable = stack.pop();
-                                    if (throwable.is(JavaValueType.NULL)) {
-                                        throw newThrowable(VMSymbols.java_lang_NullPointerException);
-                                    }
-                                    if (!getSystemDictionary().getJavaLangThrowable().isAssignableFrom(throwable.getJavaClass())) {
-                                        throw new ExecutionException("Expected throwable, got " + throwable.getJavaClass());
-                                    }
-                                    throw new VMException(throwable);
-                                }
-                                case INSTANCEOF: {
-                                    TypeInsnNode cast = (TypeInsnNode) now;
-                                    JavaValue obj = stack.pop().get();
-
-                                    if (obj.isInstanceOf(TypeHelper.parseType(this, cast.desc))) {
-                                        stack.push(JavaWrapper.createInteger(this, 1));
-                                    } else {
-                                        stack.push(JavaWrapper.createInteger(this, 0));
-                                    }
+                                case Instruction.INVOKE:
+                                    frame.pc = pc;
+                                    frame = enterFrame(frame, execution.takePendingFrame(), now);
+                                    execution = frame.execution;
+                                    code = frame.code;
+                                    stack = frame.stack;
+                                    locals = frame.locals;
+                                    classNode = execution.getClassNode();
+                                    method = execution.getMethodNode();
+                                    pc = frame.pc;
+                                    previousPc = -1;
+                                    continue forever;
+                                default:
+                                    throw new ExecutionException("Unexpected next instruction " + next);
+                            }
+                            if (frame.caller == null) {
+                                return result;
+                            }
 
-                                    break;
-                                }
-                                case MONITORENTER: {
-                                    JavaValue inst = stack.pop().get();
-                                    inst.getLock().lock();
-                                    break;
-                                }
-                                case MONITOREXIT: {
-                                    JavaValue inst = stack.pop().get();
-                                    inst.getLock().unlock();
-                                    break;
-                                }
-                                case MULTIANEWARRAY: {
-                                    MultiANewArrayInsnNode cast = (MultiANewArrayInsnNode) now;
-                                    int[] sizes = new int[cast.dims];
-                                    for (int i = cast.dims - 1; i >= 0; i--) {
-                                        sizes[i] = stack.pop().asPrimitive().asInt();
-                                    }
-                                    Type type = Type.getType(cast.desc);
-                                    JavaWrapper created = ArrayHelper.newInstance(this, type, sizes);
-                                    stack.push(created);
-                                    break;
-                                }
-                                case -1: {
-                                    break;
-                                }
-                                default: {
-                                    throw new ExecutionException("Unknown opcode " + now.getClass().getSimpleName() + " " + Integer.toHexString(now.getOpcode()) + " " + now);
+                            Frame callee = frame;
+                            frame = callee.caller;
+                            leaveFrame(callee);
+                            if ((_eventMask & ExecutionListener.RETURN) != 0) {
+                                fireReturn(callee.execution.getClassNode(), callee.execution.getMethodNode(), result);
+                            }
+                            execution = frame.execution;
+                            code = frame.code;
+                            stack = frame.stack;
+                            locals = frame.locals;
+                            classNode = execution.getClassNode();
+                            method = execution.getMethodNode();
+                            if (callee.returnsValue) {
+                                if (result == null) {
+                                    throw new ExecutionException("Null result from " + callee.execution.getClassNode().name + " " + callee.execution.getMethodNode().name + callee.execution.getMethodNode().desc);
                                 }
+                                stack.push(result);
                             }
+                            releaseFrame(callee);
+                            // the call completes here, so anyone observing the caller sees it like any other instruction
+                            pc = frame.pc;
+                            now = code.insnAt(pc);
+                            currentInsn.put(currentThread, now);
+                            next = pc + 1;
+                            previousPc = -1;
+                            watching = execution.getOptions() != null && execution.getOptions().hasWatches();
                         }
 
-                        ExecutionOptions.BreakpointInfo bpinfo = new ExecutionOptions.BreakpointInfo(now, stack, locals);
-                        breakpoints.values().forEach(k -> k.accept(bpinfo));
+                        if (!breakpoints.isEmpty()) {
+                            ExecutionOptions.BreakpointInfo bpinfo = new ExecutionOptions.BreakpointInfo(now, stack, locals);
+                            breakpoints.values().forEach(k -> k.accept(bpinfo));
+                        }
 
-                        if (execution.getOptions() != null && execution.getOptions().shouldRecord(now)) {
-                            execution.getOptions().notify(now, bpinfo);
+                        if (watching && execution.isWatched(pc)) {
+                            execution.getOptions().notify(now, new ExecutionOptions.BreakpointInfo(now, stack, locals));
 //                                if (snapshots[method.instructions.indexOf(now)] == null) {
 //                                    InstructionSnapshot current = new InstructionSnapshot();
 //                                    current.merge(stack.copy(), locals.copy());
@@ -1749,35 +1949,42 @@ public class VirtualMachine {
 //                                }
                         }
 
-                        now = now.getNext();
+                        pc = next;
                     } catch (VMException t) {
                         if (DEBUG_PRINT_EXCEPTIONS) {
                             printException(t);
                         }
                         JavaWrapper wrapper = t.getWrapped();
-                        if (method.tryCatchBlocks != null) {
-                            for (TryCatchBlockNode tcbn : method.tryCatchBlocks) {
-                                if (method.instructions.indexOf(tcbn.start) <= method.instructions.indexOf(now) && method.instructions.indexOf(now) < method.instructions.indexOf(tcbn.end)) {
-                                    if (tcbn.type == null || tcbn.type.equals("java/lang/Throwable")) {
-                                        stack.clear();
-                                        stack.push(wrapper);
-                                        now = tcbn.handler;
-                                        continue forever;
-                                    } else {
-                                        JavaClass type = wrapper.getJavaClass();
-                                        JavaClass target = JavaClass.forName(this, TypeHelper.parseType(this, tcbn.type));
-                                        if (target.isAssignableFrom(type)) {
-                                            stack.clear();
-                                            stack.push(wrapper);
-                                            now = tcbn.handler;
-                                            continue forever;
-                                        }
-                                    }
-                                }
+                        while (true) {
+                            if ((_eventMask & ExecutionListener.EXCEPTION) != 0) {
+                                fireException(execution, now, wrapper);
+                            }
+                            int handler = code.getExceptionTable().findHandler(pc, wrapper);
+                            if (handler != ExceptionTable.NO_HANDLER) {
+                                stack.clear();
+                                stack.push(wrapper);
+                                pc = handler;
+                                continue forever;
+                            }
+                            if (frame.caller == null) {
+                                throw t;
                             }
-                        }
 
-                        throw t;
+                            // unwind into the caller and look for a handler around the call
+                            Frame callee = frame;
+                            frame = callee.caller;
+                            leaveFrame(callee);
+                            releaseFrame(callee);
+                            execution = frame.execution;
+                            code = frame.code;
+                            stack = frame.stack;
+                            locals = frame.locals;
+                            classNode = execution.getClassNode();
+                            method = execution.getMethodNode();
+                            pc = frame.pc;
+                            now = code.insnAt(pc);
+                            previousPc = -1;
+                        }
                     }
                 }
             } catch (AbortException | VMException e) {
@@ -1801,8 +2008,14 @@ public class VirtualMachine {
                 }
                 throw e;
             } finally {
-                if (needToUnlock != null) {
-                    needToUnlock.unlock();
+                while (frame.caller != null) {
+                    Frame callee = frame;
+                    frame = callee.caller;
+                    leaveFrame(callee);
+                    releaseFrame(callee);
+                }
+                if (frame.lock != null) {
+                    exitMonitor(frame.lock);
                 }
             }
         } finally {
@@ -1812,6 +2025,145 @@ public class VirtualMachine {
         }
     }
 
+    JavaWrapper executePath(MethodExecution execution, Stack stack, Locals locals, JavaWrapper instance, int pc) {
+        return execute(execution, stack, locals, instance, pc, true);
+    }
+
+    /*
+     * Runs guest code on a pool thread for the given thread, which it stands in for: it sees the same guest thread,
+     * starts out with a copy of the given stack trace at the given call depth and counts against the given budget
+     */
+    <T> T onBehalfOf(Thread owner, List<StackTraceHolder> stacktrace, int callDepth, ExecutionBudget budget, Supplier<T> action) {
+        Thread current = Thread.currentThread();
+        if (current == owner) {
+            return action.get();
+        }
+        ArrayDeque<StackTraceHolder> copy = new ArrayDeque<>();
+        for (StackTraceHolder holder : stacktrace) {
+            copy.addLast(new StackTraceHolder(holder.getClassNode(), holder.getMethod(), holder.getInstruction()));
+        }
+        ArrayDeque<StackTraceHolder> previousStacktrace = _stacktrace.put(current, copy);
+        ThreadOop ownerOop = ThreadOop.forThread(owner);
+        ThreadOop previousOop = ownerOop != null ? ownerOop.bind(current) : null;
+        ExecutionBudget previousBudget = _budget.get();
+        ExecutionBudget view = budget != null ? budget.forThread() : null;
+        _budget.set(view);
+        int previousDepth = depth.get();
+        depth.set(callDepth);
+        try {
+            return action.get();
+        } finally {
+            depth.set(previousDepth);
+            if (view != null) {
+                view.release();
+            }
+            _budget.set(previousBudget);
+            if (ownerOop != null) {
+                ThreadOop.unbind(current, previousOop);
+            }
+            if (previousStacktrace != null) {
+                _stacktrace.put(current, previousStacktrace);
+            } else {
+                _stacktrace.remove(current);
+            }
+        }
+    }
+
+    public ExplorationOptions getExplorationOptions() {
+        return _explorationOptions;
+    }
+
+    /*
+     * Used for every method that branches on unknown values, unless its ExecutionOptions say otherwise
+     */
+    public void setExplorationOptions(ExplorationOptions explorationOptions) {
+        this._explorationOptions = explorationOptions;
+    }
+
+    /*
+     * Sets up a call from interpreted code to an interpreted method as a frame for the caller's loop to switch to, see
+     * FRAME_STACK. Returns false if the call has to go through internalExecute instead, which is the case for hooks,
+     * natives, compiled methods and whenever call hooks are registered
+     */
+    public boolean pushFrame(MethodExecution caller, ClassNode classNode, MethodNode methodNode, JavaWrapper instance, JavaWrapper[] params, HookedMethod hookedMethod) {
+        if (!FRAME_STACK || hookedMethod != null || !beforeCallHooks.isEmpty() || !afterCallHooks.isEmpty() || Modifier.isNative(methodNode.access)) {
+            return false;
+        }
+        MethodExecution execution = new MethodExecution(this, classNode, getConstMethod(methodNode));
+        if (JIT && getCompiledMethod(execution, params) != null) {
+            return false;
+        }
+        Frame frame = _framePool.get().acquire(execution, instance);
+        try {
+            fillLocals(frame.locals, execution.getConstMethod(), instance, params);
+        } catch (ExecutionException e) {
+            releaseFrame(frame);
+            throw e;
+        }
+        if ((_eventMask & ExecutionListener.CALL) != 0) {
+            fireCall(classNode, methodNode, instance, params);
+        }
+        caller.setPendingFrame(frame);
+        return true;
+    }
+
+    private Frame enterFrame(Frame caller, Frame callee, AbstractInsnNode callSite) {
+        if (callee.execution.getBudget() != null) {
+            callee.execution.getBudget().enter(depth.get() + 1);
+        }
+        callee.caller = caller;
+        _stacktrace.get(Thread.currentThread()).peekFirst().setInstruction(callSite);
+        depth.set(depth.get() + 1);
+        pushStacktrace(callee.execution.getClassNode(), callee.execution.getMethodNode(), callee.code.length() > 0 ? callee.code.insnAt(0) : null);
+        if (TRACE) {
+            System.out.println(Thread.currentThread().getId() + StringUtils.repeat("\t", depth.get()) + "Executing " + StringEscapeUtils.escapeJava(callee.execution.getClassNode().name) + "." + StringEscapeUtils.escapeJava(callee.execution.getMethodNode().name + "." + callee.execution.getMethodNode().desc));
+        }
+        lockFrame(callee);
+        return callee;
+    }
+
+    private void leaveFrame(Frame frame) {
+        if (frame.lock != null) {
+            exitMonitor(frame.lock);
+        }
+        popStacktrace();
+        depth.set(depth.get() - 1);
+    }
+
+    private void lockFrame(Frame frame) {
+        if (Modifier.isSynchronized(frame.execution.getMethodNode().access)) {
+            if (frame.instance == null) {
+                frame.lock = JavaClass.forName(this, frame.execution.getClassNode().name).getLock();
+            } else {
+                frame.lock = frame.instance.get().getLock();
+            }
+            enterMonitor(frame.lock);
+        }
+    }
+
+    /*
+     * Labels, line numbers and frames aren't part of the decoded code, but breakpoints and watches may still be placed
+     * on them. Report the ones leading up to the instruction about to be executed
+     */
+    private void notifyPseudoInstructions(MethodExecution execution, AbstractInsnNode now, Stack stack, Locals locals) {
+        AbstractInsnNode first = now;
+        while (first.getPrevious() != null && first.getPrevious().getOpcode() == -1) {
+            first = first.getPrevious();
+        }
+        for (AbstractInsnNode pseudo = first; pseudo != now; pseudo = pseudo.getNext()) {
+            ExecutionOptions.BreakpointInfo bpinfo = new ExecutionOptions.BreakpointInfo(pseudo, stack, locals);
+            if (!breakpoints.isEmpty()) {
+                breakpoints.values().forEach(k -> k.accept(bpinfo));
+            }
+            if (execution.getOptions() != null && execution.getOptions().shouldRecord(pseudo)) {
+                execution.getOptions().notify(pseudo, bpinfo);
+            }
+            if ((_eventMask & ExecutionListener.INSTRUCTION) != 0) {
+                fireInstruction(execution, pseudo, stack, locals);
+            }
+        }
+    }
+
     public ClassNode lookupClass(String internalName) {
         if (internalName == null) {
             return null;
@@ -1819,6 +2171,10 @@ public class VirtualMachine {
         return _classpath.get(internalName);
     }
 
+    public int getLinkEpoch() {
+        return _linkEpoch.get();
+    }
+
     public HookedMethod getHook(String owner, String name, String desc) {
         Lock lock = methodHookLock.readLock();
         lock.lock();
@@ -1860,10 +2216,18 @@ public class VirtualMachine {
     public void registerClass(ClassReader classReader, ClassNode classNode) {
         _constantPools.put(classNode, new ConstantPool(this, classReader));
         _classpath.put(classNode.name, classNode);
+        _linkEpoch.incrementAndGet();
     }
 
     public void shutdown() {
         ThreadOop.shutdown();
+        // pooled frames point back at this VM, and would keep it alive for as long as the thread lives
+        _framePool.remove();
+        _classesBeingCreated.remove();
+        _monitorsHeld.remove();
+        _classesInitializing.remove();
+        _budget.remove();
+        depth.remove();
     }
 
     public void printException(VMException e) {
@@ -18,4 +18,15 @@ package com.javadeobfuscator.javavm.exceptions;
 
 public class AbortException extends RuntimeException {
     public static final AbortException INSTANCE = new AbortException();
+
+    public AbortException() {
+        this(null);
+    }
+
+    /*
+     * Aborts are used for control flow, so no stack trace is captured
+     */
+    public AbortException(String message) {
+        super(message, null, false, false);
+    }
 }
@@ -0,0 +1,25 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaObject;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class ALoadGetFieldInstruction extends SuperInstruction {
+    public ALoadGetFieldInstruction(Instruction[] handlers) {
+        super(handlers);
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper obj = locals.get(code.operandAt(pc));
+        if (obj == null || !(obj.get() instanceof JavaObject)) {
+            return fallback(execution, code, pc, stack, locals);
+        }
+        GetFieldInstruction getField = (GetFieldInstruction) handler(code, pc + 1);
+        stack.push(getField.getField(execution, code, pc + 1, obj));
+        return pc + 2;
+    }
+}
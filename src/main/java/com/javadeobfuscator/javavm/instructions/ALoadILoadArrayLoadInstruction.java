@@ -0,0 +1,54 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import com.javadeobfuscator.javavm.values.JavaArray;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+import static org.objectweb.asm.Opcodes.*;
+
+public class ALoadILoadArrayLoadInstruction extends SuperInstruction {
+    public ALoadILoadArrayLoadInstruction(Instruction[] handlers) {
+        super(handlers);
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper arrayInstance = locals.get(code.operandAt(pc));
+        int arrayIndex = code.operandAt(pc + 1);
+        if (arrayInstance == null || !arrayInstance.is(JavaValueType.ARRAY) || arrayInstance.is(JavaValueType.NULL) || arrayInstance.is(JavaValueType.UNKNOWN) || !locals.isInt(arrayIndex)) {
+            return fallback(execution, code, pc, stack, locals);
+        }
+        JavaArray array = (JavaArray) arrayInstance.get();
+        int index = locals.getInt(arrayIndex);
+        if (index < 0 || index >= array.length() || !isElementType(execution.getVM(), array.getJavaClass().getComponentType(), code.opcodeAt(pc + 2))) {
+            return fallback(execution, code, pc, stack, locals);
+        }
+        if (array.isUnboxed()) {
+            stack.pushInt(array.getInt(index));
+        } else {
+            stack.push(array.get(index));
+        }
+        return pc + 3;
+    }
+
+    private static boolean isElementType(VirtualMachine vm, JavaClass componentType, int opcode) {
+        switch (opcode) {
+            case IALOAD:
+                return componentType == vm.INTEGER;
+            case BALOAD:
+                return componentType == vm.BYTE || componentType == vm.BOOLEAN;
+            case CALOAD:
+                return componentType == vm.CHARACTER;
+            case SALOAD:
+                return componentType == vm.SHORT;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedType;
+import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+public class ANewArrayInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int len = stack.pop().get().asInt();
+        ResolvedType resolved = ResolvedType.lookup(execution.getVM(), code, pc);
+        if (resolved == null) {
+            int epoch = execution.getVM().getLinkEpoch();
+            TypeInsnNode typeInsnNode = (TypeInsnNode) code.insnAt(pc);
+            String type;
+            // todo TypeHelper should do this
+            if (typeInsnNode.desc.startsWith("[") || (typeInsnNode.desc.startsWith("L") && typeInsnNode.desc.endsWith(";"))) {
+                type = "[" + typeInsnNode.desc;
+            } else {
+                type = "[L" + typeInsnNode.desc + ";";
+            }
+            Type arrayType = Type.getType(type);
+            resolved = ResolvedType.record(code, pc, epoch, arrayType, JavaClass.forName(execution.getVM(), arrayType));
+        }
+        JavaWrapper created = JavaWrapper.createArray(resolved.getJavaClass(), new JavaWrapper[len]);
+        allocated(execution, code, pc, created);
+        stack.push(created);
+        return pc + 1;
+    }
+}
@@ -3,13 +3,12 @@ package com.javadeobfuscator.javavm.instructions;
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 
 public class AconstNullInstruction extends Instruction {
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
         stack.push(execution.getVM().getNull());
+        return pc + 1;
     }
 }
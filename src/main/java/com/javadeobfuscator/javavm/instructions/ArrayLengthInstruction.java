@@ -0,0 +1,26 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaUnknown;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class ArrayLengthInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper obj = stack.pop();
+        if (obj.is(JavaValueType.UNKNOWN)) {
+            stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().INTEGER, "ArrayLength on (" + obj + ")")));
+        } else {
+            if (!obj.is(JavaValueType.ARRAY)) {
+                throw new ExecutionException("Not array");
+            }
+            stack.push(execution.getVM().newInt(obj.asArray().length()));
+        }
+        return pc + 1;
+    }
+}
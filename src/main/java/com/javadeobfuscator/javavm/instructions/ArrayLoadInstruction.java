@@ -4,16 +4,15 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.utils.ExecutionUtils;
+import com.javadeobfuscator.javavm.utils.TypeHelper;
 import com.javadeobfuscator.javavm.values.JavaArray;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
 
 public class ArrayLoadInstruction extends Instruction {
     private final int _sort;
@@ -26,8 +25,10 @@ public class ArrayLoadInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        JavaWrapper arrayIndex = stack.pop();
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        boolean knownIndex = stack.isInt(0);
+        int index = knownIndex ? stack.popInt() : 0;
+        JavaWrapper arrayIndex = knownIndex ? null : stack.pop();
         JavaWrapper arrayInstance = stack.pop();
 
         if (!arrayInstance.is(JavaValueType.ARRAY)) {
@@ -39,7 +40,7 @@ public class ArrayLoadInstruction extends Instruction {
         }
 
         Type originalType = arrayInstance.getJavaClass().internalGetType();
-        Type resultingType = /*originalType.getElementType(1)*/Type.getType(originalType.getDescriptor().substring(1));
+        Type resultingType = TypeHelper.getSymbol(execution.getVM(), originalType.getDescriptor()).getComponentType();
 
         if (resultingType.getSort() != _sort) {
             if ((resultingType.getSort() == Type.ARRAY && _sort == Type.OBJECT)) {
@@ -53,22 +54,35 @@ public class ArrayLoadInstruction extends Instruction {
             }
         }
 
-        if (!arrayIndex.is(JavaValueType.INTEGER)) {
-            throw new ExecutionException("Expecting to find Integer on stack");
-        }
-
-        if (ExecutionUtils.areValuesUnknown(arrayInstance, arrayIndex)) {
-            stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), arrayInstance.getJavaClass().getComponentType(), "Array load operation on (" + arrayInstance + ") index (" + arrayIndex + ")")));
-            return;
+        if (!knownIndex) {
+            if (!arrayIndex.is(JavaValueType.INTEGER)) {
+                throw new ExecutionException("Expecting to find Integer on stack");
+            }
+            if (ExecutionUtils.areValuesUnknown(arrayInstance, arrayIndex)) {
+                stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), arrayInstance.getJavaClass().getComponentType(), "Array load operation on (" + arrayInstance + ") index (" + arrayIndex + ")")));
+                return pc + 1;
+            }
+            index = arrayIndex.asInt();
+        } else if (arrayInstance.is(JavaValueType.UNKNOWN)) {
+            stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), arrayInstance.getJavaClass().getComponentType(), "Array load operation on (" + arrayInstance + ") index (" + index + ")")));
+            return pc + 1;
         }
 
-        int index = arrayIndex.asInt();
         JavaArray array = ((JavaArray) arrayInstance.get());
 
-        if (index >= array.length()) {
+        if (index < 0 || index >= array.length()) {
             throw execution.getVM().newThrowable(VMSymbols.java_lang_ArrayIndexOutOfBoundsException, String.valueOf(index));
         }
 
-        stack.push(array.get(index));
+        if (!array.isUnboxed()) {
+            stack.push(array.get(index));
+        } else if (_sort == Type.LONG) {
+            stack.pushLong(array.getLong(index));
+        } else if (_sort == Type.INT || _sort == Type.BYTE || _sort == Type.CHAR || _sort == Type.SHORT) {
+            stack.pushInt(array.getInt(index));
+        } else {
+            stack.push(array.get(index));
+        }
+        return pc + 1;
     }
 }
@@ -3,16 +3,16 @@ package com.javadeobfuscator.javavm.instructions;
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.utils.ExecutionUtils;
 import com.javadeobfuscator.javavm.values.JavaArray;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
 
 public class ArrayStoreInstruction extends Instruction {
     private final int _sort;
@@ -25,20 +25,55 @@ public class ArrayStoreInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        JavaWrapper storeValue = stack.pop();
-        JavaWrapper arrayIndexValue = stack.pop();
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        if (isIntSort() ? stack.isInt(0) && stack.isInt(1) : _sort == Type.LONG && stack.isLong(0) && stack.isInt(2)) {
+            storeUnboxed(execution, stack);
+        } else {
+            JavaWrapper storeValue = stack.pop();
+            JavaWrapper arrayIndexValue = stack.pop();
+            store(execution, stack.pop(), arrayIndexValue, storeValue);
+        }
+        return pc + 1;
+    }
+
+    /*
+     * Stores a known int or long without boxing it, as long as the array is known too
+     */
+    private void storeUnboxed(MethodExecution execution, Stack stack) {
+        VirtualMachine vm = execution.getVM();
+        long value = _sort == Type.LONG ? stack.popLong() : stack.popInt();
+        int index = stack.popInt();
         JavaWrapper arrayValue = stack.pop();
+        if (!arrayValue.is(JavaValueType.ARRAY) || arrayValue.is(JavaValueType.NULL) || arrayValue.is(JavaValueType.UNKNOWN)) {
+            store(execution, arrayValue, vm.newInt(index), _sort == Type.LONG ? vm.newLong(value) : vm.newInt((int) value));
+            return;
+        }
+        JavaArray array = (JavaArray) arrayValue.get();
+        if (index < 0 || index >= array.length()) {
+            throw vm.newThrowable(VMSymbols.java_lang_ArrayIndexOutOfBoundsException, String.valueOf(index));
+        }
+        if (_sort == Type.LONG) {
+            array.setLong(index, value);
+        } else {
+            array.setInt(index, (int) value);
+        }
+    }
+
+    private void store(MethodExecution execution, JavaWrapper arrayValue, JavaWrapper arrayIndexValue, JavaWrapper storeValue) {
 
         if (!arrayValue.is(JavaValueType.ARRAY)) {
             throw new ExecutionException("Expecting to find Array on type, instead found " + arrayValue.getJavaClass() + " on " + arrayValue);
         }
 
+        if (arrayValue.is(JavaValueType.NULL) && !arrayValue.is(JavaValueType.UNKNOWN)) {
+            throw execution.getVM().newThrowable(VMSymbols.java_lang_NullPointerException);
+        }
+
         if (ExecutionUtils.areValuesUnknown(arrayValue, arrayIndexValue)) {
             if (arrayValue.is(JavaValueType.UNKNOWN)) {
                 ((JavaUnknown) arrayValue.get()).merge("Array store operation on this at " + arrayIndexValue + " value " + storeValue);
             } else if (arrayIndexValue.is(JavaValueType.UNKNOWN)) {
-                arrayValue.set(new JavaUnknown(execution.getVM(), arrayValue.getJavaClass(), "Array store operation"));
+                arrayValue.makeUnknown(execution.getVM(), "Array store operation");
             } else {
                 throw new ExecutionException("An internal error occurred: Unhandled condition");
             }
@@ -55,6 +90,19 @@ public class ArrayStoreInstruction extends Instruction {
         int index = arrayIndexValue.asInt();
         JavaArray array = ((JavaArray) arrayValue.get());
 
-        array.set(index, storeValue);
+        if (index < 0 || index >= array.length()) {
+            throw execution.getVM().newThrowable(VMSymbols.java_lang_ArrayIndexOutOfBoundsException, String.valueOf(index));
+        }
+
+        if (isIntSort() && storeValue.isKnown(JavaValueType.INTEGER)) {
+            // Narrows the value to the component type
+            array.setInt(index, storeValue.asInt());
+        } else {
+            array.set(index, storeValue);
+        }
+    }
+
+    private boolean isIntSort() {
+        return _sort == Type.INT || _sort == Type.BYTE || _sort == Type.CHAR || _sort == Type.SHORT;
     }
 }
@@ -0,0 +1,25 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.exceptions.VMException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class AthrowInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper throwable = stack.pop();
+        if (throwable.is(JavaValueType.NULL)) {
+            throw execution.getVM().newThrowable(VMSymbols.java_lang_NullPointerException);
+        }
+        if (!execution.getVM().getSystemDictionary().getJavaLangThrowable().isAssignableFrom(throwable.getJavaClass())) {
+            throw new ExecutionException("Expected throwable, got " + throwable.getJavaClass());
+        }
+        throw new VMException(throwable);
+    }
+}
@@ -3,15 +3,14 @@ package com.javadeobfuscator.javavm.instructions;
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
-import org.objectweb.asm.tree.AbstractInsnNode;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import org.objectweb.asm.tree.IntInsnNode;
 
-import java.util.List;
-
 public class BipushInstruction extends Instruction {
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        IntInsnNode cast = (IntInsnNode) currentInsn;
-        stack.push(execution.getVM().newByte((byte) cast.operand));
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        IntInsnNode cast = (IntInsnNode) code.insnAt(pc);
+        stack.pushInt((byte) cast.operand);
+        return pc + 1;
     }
 }
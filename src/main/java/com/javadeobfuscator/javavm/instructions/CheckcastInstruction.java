@@ -4,6 +4,8 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedType;
 import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.TypeHelper;
@@ -11,22 +13,21 @@ import com.javadeobfuscator.javavm.values.JavaObject;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.TypeInsnNode;
 
-import java.util.List;
-
 public class CheckcastInstruction extends Instruction {
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        TypeInsnNode cast = (TypeInsnNode) currentInsn;
-
-        Type desc = TypeHelper.parseType(execution.getVM(), cast.desc);
-        JavaClass other = JavaClass.forName(execution.getVM(), desc);
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        if (ResolvedType.lookup(execution.getVM(), code, pc) == null) {
+            int epoch = execution.getVM().getLinkEpoch();
+            TypeInsnNode cast = (TypeInsnNode) code.insnAt(pc);
+            Type desc = TypeHelper.parseType(execution.getVM(), cast.desc);
+            ResolvedType.record(code, pc, epoch, desc, JavaClass.forName(execution.getVM(), desc));
+        }
         JavaWrapper wrappedValue = stack.pop();
         if (wrappedValue.is(JavaValueType.NULL)) {
             stack.push(wrappedValue);
-            return;
+            return pc + 1;
         }
 
         stack.push(wrappedValue);
@@ -41,5 +42,6 @@ public class CheckcastInstruction extends Instruction {
 //        } else {
 //            stack.push(JavaWrapper.wrap(wrappedValue.asArray().checkcast(other)));
 //        }
+        return pc + 1;
     }
 }
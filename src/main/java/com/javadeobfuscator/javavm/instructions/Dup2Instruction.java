@@ -0,0 +1,26 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class Dup2Instruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper a = stack.pop();
+        if (a.is(JavaValueType.WIDE)) {
+            stack.push(a);
+            stack.push(a);
+        } else {
+            JavaWrapper b = stack.pop();
+            stack.push(b);
+            stack.push(a);
+            stack.push(b);
+            stack.push(a);
+        }
+        return pc + 1;
+    }
+}
@@ -0,0 +1,30 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class Dup2X1Instruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper obj = stack.pop();
+        if (obj.is(JavaValueType.WIDE)) {
+            JavaWrapper c = stack.pop();
+            stack.push(obj);
+            stack.push(c);
+            stack.push(obj);
+        } else {
+            JavaWrapper b = stack.pop();
+            JavaWrapper c = stack.pop();
+            stack.push(b);
+            stack.push(obj);
+            stack.push(c);
+            stack.push(b);
+            stack.push(obj);
+        }
+        return pc + 1;
+    }
+}
@@ -0,0 +1,36 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class Dup2X2Instruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper obj = stack.pop();
+        if (obj.is(JavaValueType.WIDE)) {
+            JavaWrapper c = stack.pop();
+            if (c.is(JavaValueType.WIDE)) {
+                stack.push(obj);
+                stack.push(c);
+                stack.push(obj);
+            } else {
+                JavaWrapper d = stack.pop();
+                stack.pushAll(obj, d, c, obj);
+            }
+        } else {
+            JavaWrapper b = stack.pop();
+            JavaWrapper c = stack.pop();
+            if (c.is(JavaValueType.WIDE)) {
+                stack.pushAll(b, obj, c, b, obj);
+            } else {
+                JavaWrapper d = stack.pop();
+                stack.pushAll(b, obj, d, c, b, obj);
+            }
+        }
+        return pc + 1;
+    }
+}
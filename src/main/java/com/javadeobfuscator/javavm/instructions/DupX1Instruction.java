@@ -0,0 +1,25 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class DupX1Instruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper obj = stack.peek();
+        if (obj.is(JavaValueType.WIDE)) {
+            throw new ExecutionException("Dup with wide value");
+        }
+        JavaWrapper a = stack.pop();
+        JavaWrapper b = stack.pop();
+        stack.push(a);
+        stack.push(b);
+        stack.push(a);
+        return pc + 1;
+    }
+}
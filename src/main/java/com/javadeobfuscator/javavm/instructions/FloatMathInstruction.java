@@ -4,15 +4,13 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.utils.BiFloatInstruction;
 import com.javadeobfuscator.javavm.utils.ExecutionUtils;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaValue;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
 
 public class FloatMathInstruction extends Instruction {
     private final BiFloatInstruction _function;
@@ -24,13 +22,13 @@ public class FloatMathInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
         JavaValue b = stack.pop().get();
         JavaValue a = stack.pop().get();
 
         if (ExecutionUtils.areValuesUnknown(a, b)) {
             stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().FLOAT, JavaUnknown.UnknownCause.FLOAT_MATH, b, a)));
-            return;
+            return pc + 1;
         }
 
         if (!a.is(JavaValueType.FLOAT) || !b.is(JavaValueType.FLOAT)) {
@@ -43,5 +41,6 @@ public class FloatMathInstruction extends Instruction {
         } else {
             stack.push(JavaWrapper.createInteger(execution.getVM(), (int) result));
         }
+        return pc + 1;
     }
 }
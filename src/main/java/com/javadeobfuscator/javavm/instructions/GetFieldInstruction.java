@@ -0,0 +1,31 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedField;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
+import com.javadeobfuscator.javavm.values.JavaObject;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class GetFieldInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper obj = stack.pop();
+        stack.push(getField(execution, code, pc, obj));
+        return pc + 1;
+    }
+
+    public JavaWrapper getField(MethodExecution execution, ConstMethod code, int pc, JavaWrapper obj) {
+        ResolvedField field = ResolvedField.resolve(execution.getVM(), code, pc);
+        if (field.getGetter() != null) {
+            return field.getGetter().get(execution, obj);
+        }
+        if (obj.is(JavaValueType.NULL)) {
+            throw execution.getVM().newThrowable(VMSymbols.java_lang_NullPointerException);
+        }
+        return ((JavaObject) obj.get()).getField(field);
+    }
+}
@@ -0,0 +1,28 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedField;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class GetStaticInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        VirtualMachine vm = execution.getVM();
+        ResolvedField field = ResolvedField.resolve(vm, code, pc);
+        vm.initialize(field.getDeclaringClass());
+
+        JavaWrapper value;
+        if (field.getGetter() != null) {
+            value = field.getGetter().get(execution, null);
+        } else {
+            value = field.getDeclaringClass().getOop().asObject().getFieldByKey(field.getKey(), field.getDesc());
+        }
+
+        stack.push(value);
+        return pc + 1;
+    }
+}
@@ -0,0 +1,20 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+public class IConstCompareInstruction extends SuperInstruction {
+    public IConstCompareInstruction(Instruction[] handlers) {
+        super(handlers);
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        if (!stack.isInt(0)) {
+            return fallback(execution, code, pc, stack, locals);
+        }
+        return compare(code.opcodeAt(pc + 1), stack.popInt(), intConstant(code, pc)) ? code.jumpTargetAt(pc + 1) : pc + 2;
+    }
+}
@@ -0,0 +1,23 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+public class ILoadIConstMathInstruction extends SuperInstruction {
+    public ILoadIConstMathInstruction(Instruction[] handlers) {
+        super(handlers);
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int a = code.operandAt(pc);
+        if (!locals.isInt(a)) {
+            return fallback(execution, code, pc, stack, locals);
+        }
+        IntegerMathInstruction math = (IntegerMathInstruction) handler(code, pc + 2);
+        stack.pushInt(math.apply(locals.getInt(a), intConstant(code, pc + 1)));
+        return pc + 3;
+    }
+}
@@ -0,0 +1,22 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+public class ILoadILoadCompareInstruction extends SuperInstruction {
+    public ILoadILoadCompareInstruction(Instruction[] handlers) {
+        super(handlers);
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int a = code.operandAt(pc);
+        int b = code.operandAt(pc + 1);
+        if (!locals.isInt(a) || !locals.isInt(b)) {
+            return fallback(execution, code, pc, stack, locals);
+        }
+        return compare(code.opcodeAt(pc + 2), locals.getInt(a), locals.getInt(b)) ? code.jumpTargetAt(pc + 2) : pc + 3;
+    }
+}
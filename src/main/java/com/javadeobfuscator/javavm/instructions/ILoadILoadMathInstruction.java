@@ -0,0 +1,24 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+public class ILoadILoadMathInstruction extends SuperInstruction {
+    public ILoadILoadMathInstruction(Instruction[] handlers) {
+        super(handlers);
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int a = code.operandAt(pc);
+        int b = code.operandAt(pc + 1);
+        if (!locals.isInt(a) || !locals.isInt(b)) {
+            return fallback(execution, code, pc, stack, locals);
+        }
+        IntegerMathInstruction math = (IntegerMathInstruction) handler(code, pc + 2);
+        stack.pushInt(math.apply(locals.getInt(a), locals.getInt(b)));
+        return pc + 3;
+    }
+}
@@ -0,0 +1,17 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+public class IincInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int var = code.operandAt(pc);
+        if (locals.isInt(var)) {
+            locals.setInt(var, locals.getInt(var) + code.incrementAt(pc));
+        }
+        return pc + 1;
+    }
+}
@@ -0,0 +1,26 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedType;
+import com.javadeobfuscator.javavm.utils.TypeHelper;
+import com.javadeobfuscator.javavm.values.JavaValue;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+public class InstanceofInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaValue obj = stack.pop().get();
+        ResolvedType resolved = ResolvedType.lookup(execution.getVM(), code, pc);
+        if (resolved == null) {
+            int epoch = execution.getVM().getLinkEpoch();
+            TypeInsnNode cast = (TypeInsnNode) code.insnAt(pc);
+            resolved = ResolvedType.record(code, pc, epoch, TypeHelper.parseType(execution.getVM(), cast.desc), null);
+        }
+
+        stack.pushInt(obj.isInstanceOf(resolved.getType()) ? 1 : 0);
+        return pc + 1;
+    }
+}
@@ -2,11 +2,39 @@ package com.javadeobfuscator.javavm.instructions;
 
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.ExecutionListener;
 import com.javadeobfuscator.javavm.Stack;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
 
 public abstract class Instruction {
-    public abstract void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo);
+    /*
+     * Every successor of the instruction is possible. Switches leave their unknown key on the stack
+     */
+    public static final int FORK = -1;
+    /*
+     * The return value, if any, is left on the stack
+     */
+    public static final int RETURN_VALUE = -2;
+    public static final int RETURN_VOID = -3;
+    /*
+     * A frame for the callee was set up with VirtualMachine#pushFrame, and the loop should switch to it
+     */
+    public static final int INVOKE = -4;
+
+    /**
+     * Executes the instruction at the given pc and returns the pc to continue from, or one of the sentinels above
+     */
+    public abstract int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals);
+
+    protected static void allocated(MethodExecution execution, ConstMethod code, int pc, JavaWrapper value) {
+        if (execution.getBudget() != null) {
+            execution.getBudget().allocation();
+        }
+        VirtualMachine vm = execution.getVM();
+        if (vm.isListening(ExecutionListener.ALLOCATION)) {
+            vm.fireAllocation(execution, code.insnAt(pc), value);
+        }
+    }
 }
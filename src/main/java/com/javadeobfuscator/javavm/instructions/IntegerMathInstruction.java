@@ -4,6 +4,7 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.utils.BiIntegerFunction;
 import com.javadeobfuscator.javavm.utils.ExecutionUtils;
@@ -11,9 +12,6 @@ import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaValue;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
 
 public class IntegerMathInstruction extends Instruction {
     private final BiIntegerFunction _function;
@@ -29,14 +27,28 @@ public class IntegerMathInstruction extends Instruction {
         this.division = division;
     }
 
+    public int apply(int a, int b) {
+        return _function.apply(a, b);
+    }
+
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        if (stack.isInt(0) && stack.isInt(1)) {
+            int b = stack.popInt();
+            int a = stack.popInt();
+            if (division && b == 0) {
+                throw execution.getVM().newThrowable(VMSymbols.java_lang_ArithmeticException, "/ by zero");
+            }
+            stack.pushInt(_function.apply(a, b));
+            return pc + 1;
+        }
+
         JavaValue b = stack.pop().get();
         JavaValue a = stack.pop().get();
 
         if (ExecutionUtils.areValuesUnknown(a, b)) {
             stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().INTEGER, JavaUnknown.UnknownCause.INTEGER_MATH, b, a)));
-            return;
+            return pc + 1;
         }
 
         if (!a.is(JavaValueType.INTEGER) || !b.is(JavaValueType.INTEGER)) {
@@ -48,5 +60,6 @@ public class IntegerMathInstruction extends Instruction {
         }
 
         stack.push(JavaWrapper.createInteger(execution.getVM(), _function.apply(a.asInt(), b.asInt())));
+        return pc + 1;
     }
 }
@@ -3,12 +3,15 @@ package com.javadeobfuscator.javavm.instructions;
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.InlineCache;
+import com.javadeobfuscator.javavm.internals.SymbolTable;
 import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.mirrors.JavaMethodHandle;
 import com.javadeobfuscator.javavm.utils.ASMHelper;
-import com.javadeobfuscator.javavm.utils.TypeHelper;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
@@ -20,7 +23,6 @@ import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.Arrays;
-import java.util.List;
 
 public class InvocationInstruction extends Instruction {
 
@@ -31,12 +33,14 @@ public class InvocationInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        AbstractInsnNode currentInsn = code.insnAt(pc);
         MethodInsnNode cast = (MethodInsnNode) currentInsn;
 
-        Type returnType = Type.getReturnType(cast.desc);
+        SymbolTable.MethodSymbol signature = execution.getVM().getSymbolTable().method(cast.desc);
+        Type returnType = signature.getReturnType();
 
-        JavaWrapper[] args = new JavaWrapper[TypeHelper.getNumberOfArguments(cast.desc)];
+        JavaWrapper[] args = new JavaWrapper[signature.getArgumentCount()];
         for (int i = args.length - 1; i >= 0; i--) {
             args[i] = stack.pop();
         }
@@ -49,65 +53,90 @@ public class InvocationInstruction extends Instruction {
             }
         }
 
-        JavaWrapper provided;
-
-        ClassNode targetNode;
+        VirtualMachine vm = execution.getVM();
+        ClassNode receiverNode;
         if (instance != null) { //bleh
             if (instance.getJavaClass().isArray()) {
-                targetNode = execution.getVM().getSystemDictionary().getJavaLangObject().getClassNode();
+                receiverNode = vm.getSystemDictionary().getJavaLangObject().getClassNode();
             } else {
-                targetNode = instance.asObject().getOriginalClass().getClassNode();
+                receiverNode = instance.asObject().getOriginalClass().getClassNode();
             }
         } else {
-            targetNode = execution.getVM().lookupClass(cast.owner);
+            receiverNode = null;
         }
-        if (targetNode != null) {
-            MethodNode target = ASMHelper.findMethod(targetNode, cast.name, cast.desc);
-            while (target == null) {
-                // todo permissionssssssss
-                if (targetNode.name.equalsIgnoreCase("java/lang/Object"))
-                    break;
-                targetNode = execution.getVM().lookupClass(targetNode.superName);
-                if (targetNode == null)
-                    break;
-                target = ASMHelper.findMethod(targetNode, cast.name, cast.desc);
-            }
 
-            VMSymbols.VMIntrinsics id = JavaMethodHandle.signaturePolymorphicNameId(cast.name);
-            if (id != VMSymbols.VMIntrinsics.NONE) {
-                if (cast.owner.equals("java/lang/invoke/MethodHandle")) {
-                    targetNode = execution.getVM().getSystemDictionary().getJavaLangInvokeMethodHandle().getClassNode();
-                    target = ASMHelper.findMethod(execution.getVM().getSystemDictionary().getJavaLangInvokeMethodHandle().getClassNode(), cast.name, cast.desc);
-                    if (target == null) {
-                        target = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_NATIVE, cast.name, cast.desc, null, null);
-                        if (JavaMethodHandle.isIntrinsicStatic(id)) {
-                            target.access |= Opcodes.ACC_STATIC;
-                        }
-                        targetNode.methods.add(target);
-                        execution.getVM().getJavaLangInvokeMethodHandle().hookPolymorphicSignature(target);
-                    }
+        InlineCache cache = code.inlineCacheAt(pc);
+        InlineCache.Entry entry = cache.lookup(receiverNode);
+        if (entry == null) {
+            int epoch = vm.getLinkEpoch();
+            ClassNode targetNode = instance != null ? receiverNode : vm.lookupClass(cast.owner);
+            if (targetNode == null) {
+                if (returnType.getSort() != Type.VOID) {
+                    stack.push(JavaWrapper.wrap(new JavaUnknown(vm, JavaClass.forName(vm, returnType), "Invocation on " + cast.owner + " " + cast.name + cast.desc)));
                 }
+                return pc + 1;
             }
+            entry = resolve(vm, cast, targetNode, receiverNode, epoch, cache);
+        }
 
-            if (target != null) {
-                if (_isStatic) {
-                    execution.getVM().initialize(JavaClass.forName(execution.getVM(), targetNode.name));
-                }
-                provided = execution.getVM().internalExecute(targetNode, target, instance, args, currentInsn);
+        if (_isStatic) {
+            vm.initialize(JavaClass.forName(vm, entry.getOwner().name));
+        }
+        if (vm.pushFrame(execution, entry.getOwner(), entry.getTarget(), instance, args, entry.getHook())) {
+            return INVOKE;
+        }
+        JavaWrapper provided = vm.internalExecute(entry.getOwner(), entry.getTarget(), instance, args, currentInsn, entry.getHook());
 
-                if (returnType.getSort() != Type.VOID && provided == null) {
-                    throw new ExecutionException("Null result from " + targetNode.name + " " + target.name + target.desc + " " + Arrays.toString(args));
-                }
-            } else {
-                throw new ExecutionException("IncompatibleClassChangeError: Method not found " + cast.owner + "." + cast.name + "." + cast.desc);
-            }
-        } else {
-            provided = JavaWrapper.wrap(new JavaUnknown(execution.getVM(), JavaClass.forName(execution.getVM(), returnType), "Invocation on " + cast.owner + " " + cast.name + cast.desc));
+        if (returnType.getSort() != Type.VOID && provided == null) {
+            throw new ExecutionException("Null result from " + entry.getOwner().name + " " + entry.getTarget().name + entry.getTarget().desc + " " + Arrays.toString(args));
         }
 
         if (returnType.getSort() != Type.VOID) {
             // todo verify
             stack.push(provided);
         }
+        return pc + 1;
+    }
+
+    private InlineCache.Entry resolve(VirtualMachine vm, MethodInsnNode cast, ClassNode targetNode, ClassNode receiverNode, int epoch, InlineCache cache) {
+        MethodNode target = ASMHelper.findMethod(targetNode, cast.name, cast.desc);
+        while (target == null) {
+            // todo permissionssssssss
+            if (targetNode.name.equalsIgnoreCase("java/lang/Object"))
+                break;
+            targetNode = vm.lookupClass(targetNode.superName);
+            if (targetNode == null)
+                break;
+            target = ASMHelper.findMethod(targetNode, cast.name, cast.desc);
+        }
+
+        boolean cacheable = true;
+        VMSymbols.VMIntrinsics id = JavaMethodHandle.signaturePolymorphicNameId(cast.name);
+        if (id != VMSymbols.VMIntrinsics.NONE) {
+            if (cast.owner.equals("java/lang/invoke/MethodHandle")) {
+                // the target may be synthesized and hooked below, so don't remember it
+                cacheable = false;
+                targetNode = vm.getSystemDictionary().getJavaLangInvokeMethodHandle().getClassNode();
+                target = ASMHelper.findMethod(vm.getSystemDictionary().getJavaLangInvokeMethodHandle().getClassNode(), cast.name, cast.desc);
+                if (target == null) {
+                    target = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_NATIVE, cast.name, cast.desc, null, null);
+                    if (JavaMethodHandle.isIntrinsicStatic(id)) {
+                        target.access |= Opcodes.ACC_STATIC;
+                    }
+                    targetNode.methods.add(target);
+                    vm.getJavaLangInvokeMethodHandle().hookPolymorphicSignature(target);
+                }
+            }
+        }
+
+        if (target == null) {
+            throw new ExecutionException("IncompatibleClassChangeError: Method not found " + cast.owner + "." + cast.name + "." + cast.desc);
+        }
+
+        InlineCache.Entry entry = new InlineCache.Entry(receiverNode, targetNode, target, vm.getHook(targetNode.name, target.name, target.desc));
+        if (cacheable) {
+            cache.record(entry, epoch);
+        }
+        return entry;
     }
 }
\ No newline at end of file
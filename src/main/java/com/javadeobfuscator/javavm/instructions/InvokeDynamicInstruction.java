@@ -5,6 +5,8 @@ import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.SymbolTable;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.ASMHelper;
 import com.javadeobfuscator.javavm.utils.Utils;
@@ -20,7 +22,6 @@ import org.objectweb.asm.tree.InvokeDynamicInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class InvokeDynamicInstruction extends Instruction {
@@ -51,7 +52,8 @@ public class InvokeDynamicInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        AbstractInsnNode currentInsn = code.insnAt(pc);
         InvokeDynamicInsnNode cast = (InvokeDynamicInsnNode) currentInsn;
 
         JavaWrapper dynamicinvoker = dynamicinvokerMap.get(cast);
@@ -66,8 +68,9 @@ public class InvokeDynamicInstruction extends Instruction {
             }
         }
 
-        Type[] argumentTypes = Type.getArgumentTypes(cast.desc);
-        Type returnType = Type.getReturnType(cast.desc);
+        SymbolTable.MethodSymbol signature = execution.getVM().getSymbolTable().method(cast.desc);
+        Type[] argumentTypes = signature.getArgumentTypes();
+        Type returnType = signature.getReturnType();
 
         JavaWrapper[] args = new JavaWrapper[argumentTypes.length];
         for (int i = argumentTypes.length - 1; i >= 0; i--) {
@@ -99,6 +102,7 @@ public class InvokeDynamicInstruction extends Instruction {
                 }
             }
         }
+        return pc + 1;
     }
 
     private JavaWrapper loadCallsite(MethodExecution execution, AbstractInsnNode currentInsn, InvokeDynamicInsnNode cast) {
@@ -20,9 +20,10 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.SymbolTable;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.ASMHelper;
-import com.javadeobfuscator.javavm.utils.TypeHelper;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Opcodes;
@@ -33,16 +34,17 @@ import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.lang.reflect.Modifier;
-import java.util.List;
 
 public class InvokeSpecialInstruction extends Instruction {
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        AbstractInsnNode currentInsn = code.insnAt(pc);
         MethodInsnNode cast = (MethodInsnNode) currentInsn;
 
-        Type returnType = Type.getReturnType(cast.desc);
+        SymbolTable.MethodSymbol signature = execution.getVM().getSymbolTable().method(cast.desc);
+        Type returnType = signature.getReturnType();
 
-        JavaWrapper[] args = new JavaWrapper[TypeHelper.getNumberOfArguments(cast.desc)];
+        JavaWrapper[] args = new JavaWrapper[signature.getArgumentCount()];
         for (int i = args.length - 1; i >= 0; i--) {
             args[i] = stack.pop();
         }
@@ -92,9 +94,9 @@ public class InvokeSpecialInstruction extends Instruction {
             provided = JavaWrapper.wrap(new JavaUnknown(execution.getVM(), JavaClass.forName(execution.getVM(), returnType), "Invocation on " + cast.owner + " " + cast.name + cast.desc));
         }
 
-
         if (returnType.getSort() != Type.VOID) {
             stack.push(provided);
         }
+        return pc + 1;
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaAddress;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class JsrInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        stack.push(JavaWrapper.wrap(new JavaAddress(code.insnAt(pc))));
+        return code.jumpTargetAt(pc);
+    }
+}
@@ -4,30 +4,34 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedType;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.TypeHelper;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.LdcInsnNode;
 
-import java.util.List;
-
 public class LdcInstruction extends Instruction {
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        LdcInsnNode cast = (LdcInsnNode) currentInsn;
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        LdcInsnNode cast = (LdcInsnNode) code.insnAt(pc);
 
         Object load = cast.cst;
         if (load instanceof Type) {
             Type type = (Type) load;
             if (type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY) {
-                String bytecodeName = type.getInternalName();
-                Type actualType = TypeHelper.parseType(execution.getVM(), bytecodeName);
-                if (actualType == null) {
-                    throw new ExecutionException("An internal error occurred: Unexpected null Type while loading class");
+                ResolvedType resolved = ResolvedType.lookup(execution.getVM(), code, pc);
+                if (resolved == null) {
+                    int epoch = execution.getVM().getLinkEpoch();
+                    String bytecodeName = type.getInternalName();
+                    Type actualType = TypeHelper.parseType(execution.getVM(), bytecodeName);
+                    if (actualType == null) {
+                        throw new ExecutionException("An internal error occurred: Unexpected null Type while loading class");
+                    }
+                    resolved = ResolvedType.record(code, pc, epoch, actualType, JavaClass.forName(execution.getVM(), actualType));
                 }
-                stack.push(JavaClass.forName(execution.getVM(), actualType).getOop());
+                stack.push(resolved.getJavaClass().getOop());
             } else {
                 throw new ExecutionException("An internal error occurred: Unexpected sort on loaded type: " + load);
             }
@@ -44,5 +48,6 @@ public class LdcInstruction extends Instruction {
         } else {
             throw new ExecutionException("An internal error occurred: Unexpected ldc type " + (load == null ? "null" : load.getClass()));
         }
+        return pc + 1;
     }
 }
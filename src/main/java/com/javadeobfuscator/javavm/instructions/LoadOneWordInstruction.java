@@ -4,10 +4,9 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.tree.AbstractInsnNode;
 
-import java.util.List;
 import java.util.function.Function;
 
 public class LoadOneWordInstruction extends Instruction {
@@ -18,7 +17,8 @@ public class LoadOneWordInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
         stack.push(_javaValueSupplier.apply(execution.getVM()));
+        return pc + 1;
     }
 }
@@ -4,14 +4,12 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
-import java.util.List;
-
 public class LocalLoadInstruction extends Instruction {
 
     private final int _sort;
@@ -24,8 +22,12 @@ public class LocalLoadInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        VarInsnNode varInsnNode = (VarInsnNode) currentInsn;
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        VarInsnNode varInsnNode = (VarInsnNode) code.insnAt(pc);
+        if (_sort == Type.INT ? locals.isInt(varInsnNode.var) : _sort == Type.LONG && locals.isLong(varInsnNode.var)) {
+            locals.load(varInsnNode.var, stack);
+            return pc + 1;
+        }
         JavaWrapper top = locals.get(varInsnNode.var);
 
         switch (_sort) {
@@ -34,31 +36,31 @@ public class LocalLoadInstruction extends Instruction {
                     throw new ExecutionException("Register " + varInsnNode.var + " contains wrong type. Expected INTEGER, got (" + top.get().getClass() + ")");
                 }
                 stack.push(top);
-                return;
+                return pc + 1;
             case Type.FLOAT:
                 if (!top.is(JavaValueType.FLOAT)) {
                     throw new ExecutionException("Register " + varInsnNode.var + " contains wrong type. Expected FLOAT, got (" + top.get().getClass() + ")");
                 }
                 stack.push(top);
-                return;
+                return pc + 1;
             case Type.OBJECT:
                 if (!top.is(JavaValueType.OBJECT) && !top.is(JavaValueType.UNINITIALIZED)) {
                     throw new ExecutionException("Register " + varInsnNode.var + " contains wrong type. Expected OBJECT, got (" + top.get().getClass() + ")");
                 }
                 stack.push(top);
-                return;
+                return pc + 1;
             case Type.DOUBLE:
                 if (!top.is(JavaValueType.DOUBLE)) {
                     throw new ExecutionException("Register " + varInsnNode.var + " contains wrong type. Expected DOUBLE, got (" + top.get().getClass() + ")");
                 }
                 stack.push(top);
-                return;
+                return pc + 1;
             case Type.LONG:
                 if (!top.is(JavaValueType.LONG)) {
                     throw new ExecutionException("Register " + varInsnNode.var + " contains wrong type. Expected LONG, got (" + top.get().getClass() + ")");
                 }
                 stack.push(top);
-                return;
+                return pc + 1;
             default:
                 throw new ExecutionException("An internal error occurred: Unhandled sort " + _sort);
         }
@@ -4,14 +4,12 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
-import java.util.List;
-
 public class LocalStoreInstruction extends Instruction {
 
     private final int _sort;
@@ -24,8 +22,12 @@ public class LocalStoreInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        VarInsnNode varInsnNode = (VarInsnNode) currentInsn;
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        VarInsnNode varInsnNode = (VarInsnNode) code.insnAt(pc);
+        if (_sort == Type.INT ? stack.isInt(0) : _sort == Type.LONG && stack.isLong(0)) {
+            locals.store(varInsnNode.var, stack);
+            return pc + 1;
+        }
         JavaWrapper top = stack.pop();
 
         switch (_sort) {
@@ -62,5 +64,6 @@ public class LocalStoreInstruction extends Instruction {
             default:
                 throw new ExecutionException("An internal error occurred: Unhandled sort " + _sort);
         }
+        return pc + 1;
     }
 }
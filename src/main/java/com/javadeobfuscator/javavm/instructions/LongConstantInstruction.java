@@ -0,0 +1,20 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+public class LongConstantInstruction extends Instruction {
+    private final long _value;
+
+    public LongConstantInstruction(long value) {
+        this._value = value;
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        stack.pushLong(_value);
+        return pc + 1;
+    }
+}
@@ -4,15 +4,13 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.utils.BiLongIntegerFunction;
 import com.javadeobfuscator.javavm.utils.ExecutionUtils;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaValue;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
 
 public class LongIntegerMathInstruction extends Instruction {
     private final BiLongIntegerFunction _function;
@@ -22,13 +20,19 @@ public class LongIntegerMathInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        if (stack.isInt(0) && stack.isLong(1)) {
+            int b = stack.popInt();
+            stack.pushLong(_function.apply(stack.popLong(), b));
+            return pc + 1;
+        }
+
         JavaValue b = stack.pop().get();
         JavaValue a = stack.pop().get();
 
         if (ExecutionUtils.areValuesUnknown(a, b)) {
             stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().LONG, JavaUnknown.UnknownCause.LONG_INTEGER_MATH, b, a)));
-            return;
+            return pc + 1;
         }
 
         if (!b.is(JavaValueType.INTEGER)) {
@@ -39,5 +43,6 @@ public class LongIntegerMathInstruction extends Instruction {
         }
 
         stack.push(execution.getVM().newLong(_function.apply(a.asLong(), b.asInt())));
+        return pc + 1;
     }
 }
@@ -4,15 +4,13 @@ import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.utils.BiLongFunction;
 import com.javadeobfuscator.javavm.utils.ExecutionUtils;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
 import com.javadeobfuscator.javavm.values.JavaValue;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.tree.AbstractInsnNode;
-
-import java.util.List;
 
 public class LongMathInstruction extends Instruction {
     private final BiLongFunction _function;
@@ -24,13 +22,25 @@ public class LongMathInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        if (stack.isLong(0) && stack.isLong(2)) {
+            long b = stack.popLong();
+            long a = stack.popLong();
+            long result = _function.apply(a, b);
+            if (!_returnInt) {
+                stack.pushLong(result);
+            } else {
+                stack.pushInt((int) result);
+            }
+            return pc + 1;
+        }
+
         JavaValue b = stack.pop().get();
         JavaValue a = stack.pop().get();
 
         if (ExecutionUtils.areValuesUnknown(a, b)) {
             stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), execution.getVM().LONG, JavaUnknown.UnknownCause.LONG_MATH, b, a)));
-            return;
+            return pc + 1;
         }
 
         if (!a.is(JavaValueType.LONG) || !b.is(JavaValueType.LONG)) {
@@ -43,5 +53,6 @@ public class LongMathInstruction extends Instruction {
         } else {
             stack.push(JavaWrapper.createInteger(execution.getVM(), (int) result));
         }
+        return pc + 1;
     }
 }
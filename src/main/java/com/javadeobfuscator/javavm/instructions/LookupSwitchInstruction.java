@@ -0,0 +1,28 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class LookupSwitchInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper indexValue = stack.pop();
+        if (indexValue.is(JavaValueType.UNKNOWN)) {
+            stack.push(indexValue);
+            return FORK;
+        }
+        int index = indexValue.asInt();
+        int[] keys = code.switchKeysAt(pc);
+        int[] targets = code.switchTargetsAt(pc);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == index) {
+                return targets[i + 1];
+            }
+        }
+        return targets[0];
+    }
+}
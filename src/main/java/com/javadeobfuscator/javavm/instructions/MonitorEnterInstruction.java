@@ -0,0 +1,24 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ObjectMonitor;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class MonitorEnterInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper inst = stack.pop();
+        if (inst.is(JavaValueType.NULL) && !inst.is(JavaValueType.UNKNOWN)) {
+            throw execution.getVM().newThrowable(VMSymbols.java_lang_NullPointerException);
+        }
+        ObjectMonitor monitor = inst.get().getMonitor();
+        execution.getVM().enterMonitor(monitor);
+        execution.monitorEntered(monitor);
+        return pc + 1;
+    }
+}
@@ -0,0 +1,30 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedType;
+import com.javadeobfuscator.javavm.utils.ArrayHelper;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+
+public class MultiANewArrayInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int[] sizes = new int[code.operandAt(pc)];
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            sizes[i] = stack.pop().asPrimitive().asInt();
+        }
+        ResolvedType resolved = ResolvedType.lookup(execution.getVM(), code, pc);
+        if (resolved == null) {
+            MultiANewArrayInsnNode cast = (MultiANewArrayInsnNode) code.insnAt(pc);
+            resolved = ResolvedType.record(code, pc, execution.getVM().getLinkEpoch(), Type.getType(cast.desc), null);
+        }
+        JavaWrapper created = ArrayHelper.newInstance(execution.getVM(), resolved.getType(), sizes);
+        allocated(execution, code, pc, created);
+        stack.push(created);
+        return pc + 1;
+    }
+}
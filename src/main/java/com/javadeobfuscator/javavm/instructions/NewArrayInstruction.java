@@ -3,6 +3,7 @@ package com.javadeobfuscator.javavm.instructions;
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.ArrayHelper;
 import com.javadeobfuscator.javavm.values.JavaUnknown;
@@ -10,11 +11,8 @@ import com.javadeobfuscator.javavm.values.JavaValue;
 import com.javadeobfuscator.javavm.values.JavaValueType;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.IntInsnNode;
 
-import java.util.List;
-
 import static org.objectweb.asm.Opcodes.*;
 
 public class NewArrayInstruction extends Instruction {
@@ -32,15 +30,18 @@ public class NewArrayInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        IntInsnNode cast = (IntInsnNode) currentInsn;
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        IntInsnNode cast = (IntInsnNode) code.insnAt(pc);
 
         JavaValue lengthValue = stack.pop().get();
 
         if (!lengthValue.is(JavaValueType.UNKNOWN)) {
-            stack.push(ArrayHelper.newInstance(execution.getVM(), MAPPING[cast.operand], lengthValue.asInt()));
+            JavaWrapper created = ArrayHelper.newInstance(execution.getVM(), MAPPING[cast.operand], lengthValue.asInt());
+            allocated(execution, code, pc, created);
+            stack.push(created);
         } else {
             stack.push(JavaWrapper.wrap(new JavaUnknown(execution.getVM(), JavaClass.forName(execution.getVM(), MAPPING[cast.operand]), JavaUnknown.UnknownCause.ANEWARRAY, lengthValue)));
         }
+        return pc + 1;
     }
 }
@@ -3,25 +3,34 @@ package com.javadeobfuscator.javavm.instructions;
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedType;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.TypeHelper;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.TypeInsnNode;
 
-import java.util.List;
-
 public class NewInstruction extends Instruction {
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        TypeInsnNode cast = (TypeInsnNode) currentInsn;
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        TypeInsnNode cast = (TypeInsnNode) code.insnAt(pc);
 
-        Type descType = TypeHelper.parseType(execution.getVM(), cast.desc);
-        JavaClass clazz = JavaClass.forName(execution.getVM(), descType);
+        VirtualMachine vm = execution.getVM();
+        ResolvedType resolved = ResolvedType.lookup(vm, code, pc);
+        if (resolved == null) {
+            int epoch = vm.getLinkEpoch();
+            Type descType = TypeHelper.parseType(vm, cast.desc);
+            resolved = ResolvedType.record(code, pc, epoch, descType, JavaClass.forName(vm, descType));
+        }
+        JavaClass clazz = resolved.getJavaClass();
 
-        execution.getVM().initialize(clazz);
+        vm.initialize(clazz);
 
-        stack.push(JavaWrapper.createUninitialized(clazz, cast.desc));
+        JavaWrapper created = JavaWrapper.createUninitialized(clazz, cast.desc);
+        allocated(execution, code, pc, created);
+        stack.push(created);
+        return pc + 1;
     }
 }
@@ -0,0 +1,30 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedField;
+import com.javadeobfuscator.javavm.values.JavaObject;
+import com.javadeobfuscator.javavm.values.JavaUninitialized;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class PutFieldInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper obj = stack.pop();
+        JavaWrapper instance = stack.pop();
+        ResolvedField field = ResolvedField.resolve(execution.getVM(), code, pc);
+
+        if (field.getSetter() != null) {
+            field.getSetter().set(execution, instance, obj);
+        } else {
+            if (instance.get() instanceof JavaUninitialized) {
+                ((JavaUninitialized) instance.get()).initializedValue().setField(field, obj);
+            } else {
+                ((JavaObject) instance.get()).setField(field, obj);
+            }
+        }
+        return pc + 1;
+    }
+}
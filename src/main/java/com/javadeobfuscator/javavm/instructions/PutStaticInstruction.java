@@ -0,0 +1,26 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ResolvedField;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class PutStaticInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        VirtualMachine vm = execution.getVM();
+        JavaWrapper obj = stack.pop();
+        ResolvedField field = ResolvedField.resolve(vm, code, pc);
+        vm.initialize(field.getDeclaringClass());
+
+        if (field.getSetter() != null) {
+            field.getSetter().set(execution, null, obj);
+        } else {
+            field.getDeclaringClass().getOop().asObject().setFieldByKey(field.getKey(), obj);
+        }
+        return pc + 1;
+    }
+}
@@ -0,0 +1,20 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaAddress;
+import com.javadeobfuscator.javavm.values.JavaValue;
+
+public class RetInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaValue value = locals.get(code.operandAt(pc)).get();
+        if (!(value instanceof JavaAddress)) {
+            throw new ExecutionException("Expected address on stack");
+        }
+        return code.pcOf(((JavaAddress) value).getReturnAddres()) + 1;
+    }
+}
@@ -0,0 +1,19 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+public class ReturnInstruction extends Instruction {
+    private final boolean _void;
+
+    public ReturnInstruction(boolean isVoid) {
+        this._void = isVoid;
+    }
+
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        return _void ? RETURN_VOID : RETURN_VALUE;
+    }
+}
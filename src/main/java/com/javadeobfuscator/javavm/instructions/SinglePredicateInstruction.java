@@ -3,14 +3,14 @@ package com.javadeobfuscator.javavm.instructions;
 import com.javadeobfuscator.javavm.Locals;
 import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
 import com.javadeobfuscator.javavm.utils.MaybeBoolean;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.JumpInsnNode;
 
-import java.util.List;
 import java.util.function.Function;
 
+import static org.objectweb.asm.Opcodes.*;
+
 public class SinglePredicateInstruction extends Instruction {
 
     private final Function<JavaWrapper, MaybeBoolean> _handler;
@@ -20,21 +20,20 @@ public class SinglePredicateInstruction extends Instruction {
     }
 
     @Override
-    public void execute(MethodExecution execution, AbstractInsnNode currentInsn, Stack stack, Locals locals, List<AbstractInsnNode> branchTo) {
-        JumpInsnNode jumpInsnNode = (JumpInsnNode) currentInsn;
-
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        int opcode = code.opcodeAt(pc);
+        if (opcode >= IFEQ && opcode <= IFLE && stack.isInt(0)) {
+            return SuperInstruction.compare(opcode - IFEQ + IF_ICMPEQ, stack.popInt(), 0) ? code.jumpTargetAt(pc) : pc + 1;
+        }
         JavaWrapper top = stack.pop();
         MaybeBoolean result = _handler.apply(top);
         switch (result) {
             case YES:
-                branchTo.add(jumpInsnNode.label);
-                break;
+                return code.jumpTargetAt(pc);
             case MAYBE:
-                branchTo.add(jumpInsnNode.label);
-                branchTo.add(jumpInsnNode.getNext());
-                break;
-            case NO:
-                break;
+                return FORK;
+            default:
+                return pc + 1;
         }
     }
 }
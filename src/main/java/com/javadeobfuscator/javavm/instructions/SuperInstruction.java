@@ -0,0 +1,53 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * A handler for a fused sequence of instructions. The fast path only covers concrete values of the expected types and
+ * must not touch the stack or locals until it knows it can finish; everything else falls back to running the first
+ * instruction of the sequence on its own.
+ */
+public abstract class SuperInstruction extends Instruction {
+    private final Instruction[] _handlers;
+
+    protected SuperInstruction(Instruction[] handlers) {
+        this._handlers = handlers;
+    }
+
+    protected Instruction handler(ConstMethod code, int pc) {
+        return _handlers[code.opcodeAt(pc)];
+    }
+
+    protected int fallback(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        return _handlers[code.opcodeAt(pc)].execute(execution, code, pc, stack, locals);
+    }
+
+    protected static int intConstant(ConstMethod code, int pc) {
+        int opcode = code.opcodeAt(pc);
+        return opcode == BIPUSH || opcode == SIPUSH ? code.operandAt(pc) : opcode - ICONST_0;
+    }
+
+    protected static boolean compare(int opcode, int a, int b) {
+        switch (opcode) {
+            case IF_ICMPEQ:
+                return a == b;
+            case IF_ICMPNE:
+                return a != b;
+            case IF_ICMPLT:
+                return a < b;
+            case IF_ICMPGE:
+                return a >= b;
+            case IF_ICMPGT:
+                return a > b;
+            case IF_ICMPLE:
+                return a <= b;
+            default:
+                throw new InternalError("Not an integer comparison: " + opcode);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.javadeobfuscator.javavm.instructions;
+
+import com.javadeobfuscator.javavm.Locals;
+import com.javadeobfuscator.javavm.MethodExecution;
+import com.javadeobfuscator.javavm.Stack;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+public class TableSwitchInstruction extends Instruction {
+    @Override
+    public int execute(MethodExecution execution, ConstMethod code, int pc, Stack stack, Locals locals) {
+        JavaWrapper indexValue = stack.pop();
+        if (indexValue.is(JavaValueType.UNKNOWN)) {
+            stack.push(indexValue);
+            return FORK;
+        }
+        int x = indexValue.asInt();
+        int[] keys = code.switchKeysAt(pc);
+        int[] targets = code.switchTargetsAt(pc);
+        if (keys.length > 0 && x - keys[0] < keys.length && x - keys[0] >= 0) {
+            return targets[x - keys[0] + 1];
+        }
+        return targets[0];
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.internals;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.hooks.HookedMethod;
+import com.javadeobfuscator.javavm.jit.CompiledMethod;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pre-decoded form of a method body. Labels, line numbers and frames are stripped so that every pc refers to a
+ * real instruction, and all branch targets are resolved to pcs ahead of time.
+ * <p>
+ * Also holds what a call needs to know about the method, so that setting up a frame doesn't have to parse the
+ * descriptor or look up hooks every time.
+ */
+public class ConstMethod {
+    public static final int NO_TARGET = -1;
+
+    private final MethodNode method;
+    private final int sourceSize;
+    private final AbstractInsnNode sourceFirst;
+    private final AbstractInsnNode sourceLast;
+    private final int sourceTryCatchBlocks;
+
+    private final AbstractInsnNode[] code;
+    private final int[] opcodes;
+    // opcodes with the start of every fusable sequence replaced by its superinstruction
+    private final int[] fusedOpcodes;
+    private final int[] operands;
+    private final int[] increments;
+    private final int[] jumpTargets;
+    // [0] is the default target, followed by one target per key
+    private final int[][] switchTargets;
+    private final int[][] switchKeys;
+    private final Map<AbstractInsnNode, Integer> pcs;
+    private final InlineCache[] inlineCaches;
+    // ResolvedField/ResolvedType for each pc, filled in on first execution
+    private final Object[] resolved;
+    private final ExceptionTable exceptionTable;
+
+    private final boolean isStatic;
+    // synchronized, or contains a MONITORENTER
+    private final boolean usesMonitors;
+    // stores into a field or an array, or calls out to code that might
+    private final boolean mayWriteHeap;
+    private final Type[] argumentTypes;
+    private final boolean returnsValue;
+    private final int maxStack;
+    // at least as many as the arguments take up, in case maxs weren't computed
+    private final int maxLocals;
+    private volatile HookBinding hook;
+
+    private final AtomicInteger invocations = new AtomicInteger();
+    private volatile boolean compilationAttempted;
+    private volatile CompiledMethod compiledMethod;
+
+    public ConstMethod(VirtualMachine vm, MethodNode method) {
+        InsnList instructions = method.instructions;
+        this.method = method;
+        this.sourceSize = instructions.size();
+        this.sourceFirst = instructions.getFirst();
+        this.sourceLast = instructions.getLast();
+        this.sourceTryCatchBlocks = method.tryCatchBlocks == null ? 0 : method.tryCatchBlocks.size();
+        this.pcs = new IdentityHashMap<>(sourceSize * 2);
+
+        int length = 0;
+        for (AbstractInsnNode insn = sourceFirst; insn != null; insn = insn.getNext()) {
+            if (insn.getOpcode() != -1) {
+                length++;
+            }
+        }
+
+        this.code = new AbstractInsnNode[length];
+        this.opcodes = new int[length];
+        this.operands = new int[length];
+        this.increments = new int[length];
+        this.jumpTargets = new int[length];
+        this.switchTargets = new int[length][];
+        this.switchKeys = new int[length][];
+        this.inlineCaches = new InlineCache[length];
+        this.resolved = new Object[length];
+
+        // pseudo-instructions resolve to the next real instruction, or to the end of the code
+        int pc = 0;
+        for (AbstractInsnNode insn = sourceFirst; insn != null; insn = insn.getNext()) {
+            pcs.put(insn, pc);
+            if (insn.getOpcode() != -1) {
+                code[pc] = insn;
+                opcodes[pc] = insn.getOpcode();
+                pc++;
+            }
+        }
+
+        for (pc = 0; pc < length; pc++) {
+            AbstractInsnNode insn = code[pc];
+            jumpTargets[pc] = NO_TARGET;
+            switch (insn.getType()) {
+                case AbstractInsnNode.VAR_INSN:
+                    operands[pc] = ((VarInsnNode) insn).var;
+                    break;
+                case AbstractInsnNode.INT_INSN:
+                    operands[pc] = ((IntInsnNode) insn).operand;
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    operands[pc] = ((IincInsnNode) insn).var;
+                    increments[pc] = ((IincInsnNode) insn).incr;
+                    break;
+                case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                    operands[pc] = ((MultiANewArrayInsnNode) insn).dims;
+                    break;
+                case AbstractInsnNode.METHOD_INSN:
+                    if (insn.getOpcode() != Opcodes.INVOKESPECIAL) {
+                        inlineCaches[pc] = new InlineCache(vm);
+                    }
+                    break;
+                case AbstractInsnNode.JUMP_INSN:
+                    jumpTargets[pc] = pcOf(((JumpInsnNode) insn).label);
+                    break;
+                case AbstractInsnNode.TABLESWITCH_INSN: {
+                    TableSwitchInsnNode cast = (TableSwitchInsnNode) insn;
+                    switchTargets[pc] = targets(cast.dflt, cast.labels);
+                    int[] keys = new int[cast.labels.size()];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = cast.min + i;
+                    }
+                    switchKeys[pc] = keys;
+                    break;
+                }
+                case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+                    LookupSwitchInsnNode cast = (LookupSwitchInsnNode) insn;
+                    switchTargets[pc] = targets(cast.dflt, cast.labels);
+                    int[] keys = new int[cast.keys.size()];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = cast.keys.get(i);
+                    }
+                    switchKeys[pc] = keys;
+                    break;
+                }
+            }
+        }
+
+        this.exceptionTable = new ExceptionTable(vm, this, method.tryCatchBlocks);
+        this.fusedOpcodes = Superinstructions.fuse(code, opcodes);
+
+        this.isStatic = (method.access & Opcodes.ACC_STATIC) != 0;
+        boolean usesMonitors = (method.access & Opcodes.ACC_SYNCHRONIZED) != 0;
+        boolean mayWriteHeap = false;
+        for (int opcode : opcodes) {
+            usesMonitors |= opcode == Opcodes.MONITORENTER;
+            mayWriteHeap |= opcode == Opcodes.PUTFIELD || opcode == Opcodes.PUTSTATIC
+                    || (opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE)
+                    || (opcode >= Opcodes.INVOKEVIRTUAL && opcode <= Opcodes.INVOKEDYNAMIC);
+        }
+        this.usesMonitors = usesMonitors;
+        this.mayWriteHeap = mayWriteHeap;
+        this.argumentTypes = vm.getSymbolTable().method(method.desc).getArgumentTypes();
+        this.returnsValue = !method.desc.endsWith(")V");
+        int argumentSlots = isStatic ? 0 : 1;
+        for (Type argumentType : argumentTypes) {
+            argumentSlots += argumentType.getSize();
+        }
+        this.maxStack = method.maxStack;
+        this.maxLocals = Math.max(method.maxLocals, argumentSlots);
+    }
+
+    private int[] targets(LabelNode dflt, List<LabelNode> labels) {
+        int[] targets = new int[labels.size() + 1];
+        targets[0] = pcOf(dflt);
+        for (int i = 0; i < labels.size(); i++) {
+            targets[i + 1] = pcOf(labels.get(i));
+        }
+        return targets;
+    }
+
+    /*
+     * The InsnList is mutable, so callers may edit a method between executions. This won't catch an in-place set(),
+     * which is what VirtualMachine.invalidateConstMethod is for
+     */
+    public boolean isStale() {
+        InsnList instructions = method.instructions;
+        int tryCatchBlocks = method.tryCatchBlocks == null ? 0 : method.tryCatchBlocks.size();
+        return instructions.size() != sourceSize || instructions.getFirst() != sourceFirst || instructions.getLast() != sourceLast || tryCatchBlocks != sourceTryCatchBlocks;
+    }
+
+    public MethodNode getMethod() {
+        return method;
+    }
+
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    /*
+     * Whether a frame of this method may hold a monitor
+     */
+    public boolean usesMonitors() {
+        return usesMonitors;
+    }
+
+    /*
+     * Whether running this method may change anything outside its own stack and locals. Static initializers it
+     * triggers aren't counted
+     */
+    public boolean mayWriteHeap() {
+        return mayWriteHeap;
+    }
+
+    /*
+     * Shared, don't modify
+     */
+    public Type[] getArgumentTypes() {
+        return argumentTypes;
+    }
+
+    public boolean returnsValue() {
+        return returnsValue;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    /*
+     * The hook registered for this method on the given owner, if any. Looked up again whenever the link epoch changes
+     */
+    public HookedMethod getHook(VirtualMachine vm, ClassNode owner) {
+        int epoch = vm.getLinkEpoch();
+        HookBinding binding = hook;
+        if (binding == null || binding.epoch != epoch || binding.owner != owner) {
+            binding = new HookBinding(epoch, owner, vm.getHook(owner.name, method.name, method.desc));
+            hook = binding;
+        }
+        return binding.hook;
+    }
+
+    public ExceptionTable getExceptionTable() {
+        return exceptionTable;
+    }
+
+    public int countInvocation() {
+        return invocations.incrementAndGet();
+    }
+
+    public boolean isCompilationAttempted() {
+        return compilationAttempted;
+    }
+
+    public CompiledMethod getCompiledMethod() {
+        return compiledMethod;
+    }
+
+    /**
+     * Records the result of compiling this method. A null result means the method stays interpreted
+     */
+    public void setCompiledMethod(CompiledMethod compiledMethod) {
+        this.compiledMethod = compiledMethod;
+        this.compilationAttempted = true;
+    }
+
+    public int length() {
+        return code.length;
+    }
+
+    public AbstractInsnNode insnAt(int pc) {
+        return code[pc];
+    }
+
+    public int opcodeAt(int pc) {
+        return opcodes[pc];
+    }
+
+    public int fusedOpcodeAt(int pc) {
+        return fusedOpcodes[pc];
+    }
+
+    public int operandAt(int pc) {
+        return operands[pc];
+    }
+
+    public int incrementAt(int pc) {
+        return increments[pc];
+    }
+
+    public int jumpTargetAt(int pc) {
+        return jumpTargets[pc];
+    }
+
+    public InlineCache inlineCacheAt(int pc) {
+        return inlineCaches[pc];
+    }
+
+    public Object resolvedAt(int pc) {
+        return resolved[pc];
+    }
+
+    public void setResolved(int pc, Object value) {
+        resolved[pc] = value;
+    }
+
+    public int[] switchTargetsAt(int pc) {
+        return switchTargets[pc];
+    }
+
+    public int[] switchKeysAt(int pc) {
+        return switchKeys[pc];
+    }
+
+    /**
+     * Returns the pc of the given node. Labels and other pseudo-instructions map to the instruction that follows them
+     */
+    public int pcOf(AbstractInsnNode insn) {
+        Integer pc = pcs.get(insn);
+        if (pc == null) {
+            throw new ExecutionException("Instruction does not belong to " + method.name + method.desc);
+        }
+        return pc;
+    }
+
+    private static class HookBinding {
+        private final int epoch;
+        private final ClassNode owner;
+        private final HookedMethod hook;
+
+        private HookBinding(int epoch, ClassNode owner, HookedMethod hook) {
+            this.epoch = epoch;
+            this.owner = owner;
+            this.hook = hook;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.internals;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import com.javadeobfuscator.javavm.utils.TypeHelper;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The try/catch blocks of a method resolved to pcs. The code is split into segments at every block boundary, and each
+ * segment keeps the blocks covering it in declaration order, so a lookup is a binary search followed by a short scan.
+ */
+public class ExceptionTable {
+    public static final int NO_HANDLER = -1;
+
+    private final VirtualMachine vm;
+    private final int[] startPcs;
+    private final int[] endPcs;
+    private final int[] handlerPcs;
+    // null means catch-all
+    private final String[] catchTypes;
+    private final JavaClass[] resolvedCatchTypes;
+
+    private final int[] boundaries;
+    // segments[i] covers [boundaries[i], boundaries[i + 1])
+    private final int[][] segments;
+
+    public ExceptionTable(VirtualMachine vm, ConstMethod code, List<TryCatchBlockNode> tryCatchBlocks) {
+        this.vm = vm;
+        int size = tryCatchBlocks == null ? 0 : tryCatchBlocks.size();
+        this.startPcs = new int[size];
+        this.endPcs = new int[size];
+        this.handlerPcs = new int[size];
+        this.catchTypes = new String[size];
+        this.resolvedCatchTypes = new JavaClass[size];
+
+        TreeSet<Integer> points = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            TryCatchBlockNode tcbn = tryCatchBlocks.get(i);
+            startPcs[i] = code.pcOf(tcbn.start);
+            endPcs[i] = code.pcOf(tcbn.end);
+            handlerPcs[i] = code.pcOf(tcbn.handler);
+            catchTypes[i] = tcbn.type == null || tcbn.type.equals("java/lang/Throwable") ? null : tcbn.type;
+            if (startPcs[i] < endPcs[i]) {
+                points.add(startPcs[i]);
+                points.add(endPcs[i]);
+            }
+        }
+
+        this.boundaries = new int[points.size()];
+        int index = 0;
+        for (int point : points) {
+            boundaries[index++] = point;
+        }
+
+        this.segments = new int[Math.max(boundaries.length - 1, 0)][];
+        List<Integer> covering = new ArrayList<>();
+        for (int segment = 0; segment < segments.length; segment++) {
+            covering.clear();
+            for (int i = 0; i < size; i++) {
+                if (startPcs[i] <= boundaries[segment] && boundaries[segment] < endPcs[i]) {
+                    covering.add(i);
+                }
+            }
+            segments[segment] = covering.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public boolean isEmpty() {
+        return segments.length == 0;
+    }
+
+    /**
+     * Returns the pc of the handler for an exception thrown at the given pc, or {@link #NO_HANDLER}
+     */
+    public int findHandler(int pc, JavaWrapper exception) {
+        int segment = Arrays.binarySearch(boundaries, pc);
+        if (segment < 0) {
+            segment = -segment - 2;
+        }
+        if (segment < 0 || segment >= segments.length) {
+            return NO_HANDLER;
+        }
+
+        JavaClass thrown = null;
+        for (int i : segments[segment]) {
+            if (catchTypes[i] == null) {
+                return handlerPcs[i];
+            }
+            if (thrown == null) {
+                thrown = exception.getJavaClass();
+            }
+            if (getCatchType(i).isAssignableFrom(thrown)) {
+                return handlerPcs[i];
+            }
+        }
+        return NO_HANDLER;
+    }
+
+    private JavaClass getCatchType(int i) {
+        JavaClass catchType = resolvedCatchTypes[i];
+        if (catchType == null) {
+            catchType = JavaClass.forName(vm, TypeHelper.parseType(vm, catchTypes[i]));
+            resolvedCatchTypes[i] = catchType;
+        }
+        return catchType;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.internals;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.utils.NameHelper;
+import com.javadeobfuscator.javavm.utils.TypeHelper;
+import com.javadeobfuscator.javavm.values.JavaValue;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.objectweb.asm.tree.FieldNode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The slots of an object's fields. A class's layout starts with its superclass's, so a slot number means the same
+ * field in every subclass, and it's the offset handed out by sun.misc.Unsafe.
+ * <p>
+ * A field shadowed by a subclass keeps its own slot. Lookups by name and type find the most derived one, lookups
+ * through a resolved field find the declared one.
+ */
+public class FieldLayout {
+    public static final FieldLayout EMPTY = new FieldLayout(new FieldNode[0]);
+
+    private final FieldNode[] fields;
+    private final Map<String, Integer> slotsByKey = new HashMap<>();
+    /*
+     * The slots of the fields with each name, most derived first
+     */
+    private final Map<String, int[]> slotsByName = new HashMap<>();
+    /*
+     * What a new object's slots are filled with, built on first use since it needs the VM's shared values
+     */
+    private volatile JavaWrapper[] defaults;
+
+    private FieldLayout(FieldNode[] fields) {
+        this.fields = fields;
+        for (int slot = 0; slot < fields.length; slot++) {
+            slotsByKey.put(NameHelper.nameAndType(fields[slot].name, fields[slot].desc), slot);
+            int[] named = slotsByName.get(fields[slot].name);
+            if (named == null) {
+                named = new int[]{slot};
+            } else {
+                int[] copy = new int[named.length + 1];
+                copy[0] = slot;
+                System.arraycopy(named, 0, copy, 1, named.length);
+                named = copy;
+            }
+            slotsByName.put(fields[slot].name, named);
+        }
+    }
+
+    /*
+     * Appends the given fields to this layout
+     */
+    public FieldLayout extend(List<FieldNode> added) {
+        if (added.isEmpty()) {
+            return this;
+        }
+        FieldNode[] result = Arrays.copyOf(fields, fields.length + added.size());
+        for (int i = 0; i < added.size(); i++) {
+            result[fields.length + i] = added.get(i);
+        }
+        return new FieldLayout(result);
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    public FieldNode fieldAt(int slot) {
+        if (slot < 0 || slot >= fields.length) {
+            throw new ExecutionException("No field at slot " + slot);
+        }
+        return fields[slot];
+    }
+
+    /*
+     * Returns -1 if no field in this layout is stored under the key, see NameHelper.nameAndType
+     */
+    public int slotOf(String key) {
+        Integer slot = slotsByKey.get(key);
+        return slot == null ? -1 : slot;
+    }
+
+    public int slotOf(String name, String desc) {
+        int[] named = slotsByName.get(name);
+        if (named != null) {
+            for (int slot : named) {
+                if (fields[slot].desc.equals(desc)) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public int slotOf(FieldNode field) {
+        for (int slot = fields.length - 1; slot >= 0; slot--) {
+            if (fields[slot] == field) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Whether the slot holds exactly the given field
+     */
+    public boolean holds(int slot, FieldNode field) {
+        return slot >= 0 && slot < fields.length && fields[slot] == field;
+    }
+
+    /*
+     * A copy of the default value of every slot
+     */
+    public JavaWrapper[] newSlots(VirtualMachine vm) {
+        JavaWrapper[] result = defaults;
+        if (result == null) {
+            result = new JavaWrapper[fields.length];
+            for (int slot = 0; slot < fields.length; slot++) {
+                result[slot] = JavaValue.forPrimitive(vm, TypeHelper.getTypeByDescriptor(fields[slot].desc));
+            }
+            defaults = result;
+        }
+        return result.clone();
+    }
+}
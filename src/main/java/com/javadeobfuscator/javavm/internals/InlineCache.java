@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.internals;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.hooks.HookedMethod;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.Arrays;
+
+/**
+ * Remembers where a call site dispatched to for the receiver classes it has seen. A site starts out monomorphic, grows
+ * to at most {@link #POLYMORPHIC_LIMIT} receivers, and then gives up and resolves every call from scratch.
+ * <p>
+ * Entries are dropped whenever the VM's link epoch changes, which happens when hooks are registered or the classpath
+ * is modified.
+ */
+public class InlineCache {
+    public static final int POLYMORPHIC_LIMIT = 4;
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final VirtualMachine vm;
+    private volatile Entry[] entries = EMPTY;
+    private volatile boolean megamorphic;
+    private volatile int epoch;
+
+    public InlineCache(VirtualMachine vm) {
+        this.vm = vm;
+        this.epoch = vm.getLinkEpoch();
+    }
+
+    /**
+     * Returns the cached target for the given receiver class, or null if it has to be resolved. Static call sites use
+     * a null receiver
+     */
+    public Entry lookup(ClassNode receiver) {
+        if (epoch != vm.getLinkEpoch()) {
+            reset();
+            return null;
+        }
+        for (Entry entry : entries) {
+            if (entry.receiver == receiver) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a resolved target. The epoch must be read before resolving, so that a target resolved against hooks or
+     * classes that have since changed is never cached
+     */
+    public synchronized void record(Entry entry, int resolvedEpoch) {
+        if (megamorphic || epoch != resolvedEpoch || resolvedEpoch != vm.getLinkEpoch()) {
+            return;
+        }
+        Entry[] current = entries;
+        if (current.length >= POLYMORPHIC_LIMIT) {
+            megamorphic = true;
+            entries = EMPTY;
+            return;
+        }
+        Entry[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = entry;
+        entries = updated;
+    }
+
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    private synchronized void reset() {
+        entries = EMPTY;
+        megamorphic = false;
+        epoch = vm.getLinkEpoch();
+    }
+
+    public static class Entry {
+        private final ClassNode receiver;
+        private final ClassNode owner;
+        private final MethodNode target;
+        private final HookedMethod hook;
+
+        public Entry(ClassNode receiver, ClassNode owner, MethodNode target, HookedMethod hook) {
+            this.receiver = receiver;
+            this.owner = owner;
+            this.target = target;
+            this.hook = hook;
+        }
+
+        public ClassNode getOwner() {
+            return owner;
+        }
+
+        public MethodNode getTarget() {
+            return target;
+        }
+
+        public HookedMethod getHook() {
+            return hook;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.internals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The monitor of a guest object, only created the first time something synchronizes on it.
+ * <p>
+ * A monitor starts out thin: entering it is a compare-and-swap of the owning thread, and nothing else is allocated.
+ * It inflates to a {@link ReentrantLock} the first time a second thread contends for it or its owner waits on it, and
+ * stays inflated from then on. A thread that finds the monitor thin-locked by someone else after inflation waits for
+ * that owner to leave before it takes the inflated lock, so the two are never held by different threads at once.
+ */
+public class ObjectMonitor implements Lock {
+    private static final AtomicReferenceFieldUpdater<ObjectMonitor, Thread> OWNER = AtomicReferenceFieldUpdater.newUpdater(ObjectMonitor.class, Thread.class, "owner");
+    private static final AtomicReferenceFieldUpdater<ObjectMonitor, ReentrantLock> INFLATED = AtomicReferenceFieldUpdater.newUpdater(ObjectMonitor.class, ReentrantLock.class, "inflated");
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /*
+     * The thin lock. Recursions is only touched by the owner
+     */
+    private volatile Thread owner;
+    private int recursions;
+
+    private volatile ReentrantLock inflated;
+    private volatile Condition condition;
+
+    @Override
+    public void lock() {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            recursions++;
+            return;
+        }
+        if (inflated == null) {
+            if (OWNER.compareAndSet(this, null, current)) {
+                // Inflation may have raced with us, in which case it waits for the thin lock to be released
+                if (inflated == null) {
+                    recursions = 1;
+                    return;
+                }
+                owner = null;
+            }
+            inflate();
+        }
+        lockInflated(current);
+    }
+
+    @Override
+    public void unlock() {
+        if (owner == Thread.currentThread()) {
+            if (--recursions == 0) {
+                owner = null;
+            }
+            return;
+        }
+        ReentrantLock lock = inflated;
+        if (lock == null) {
+            throw new IllegalMonitorStateException();
+        }
+        lock.unlock();
+    }
+
+    public boolean isHeldByCurrentThread() {
+        if (owner == Thread.currentThread()) {
+            return true;
+        }
+        ReentrantLock lock = inflated;
+        return lock != null && lock.isHeldByCurrentThread();
+    }
+
+    /*
+     * The condition backing wait and notify. The caller must hold the monitor, if it's thin-locked it's inflated first
+     */
+    public Condition getCondition() {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            ReentrantLock lock = inflate();
+            // Move our thin holds over to the inflated lock, anyone else is waiting for the thin lock to go away
+            for (int i = 0; i < recursions; i++) {
+                lock.lock();
+            }
+            recursions = 0;
+            owner = null;
+        }
+        Condition result = condition;
+        if (result == null) {
+            synchronized (this) {
+                result = condition;
+                if (result == null) {
+                    condition = result = inflate().newCondition();
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Condition newCondition() {
+        return getCondition();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        lock();
+    }
+
+    @Override
+    public boolean tryLock() {
+        Thread current = Thread.currentThread();
+        if (owner == current) {
+            recursions++;
+            return true;
+        }
+        if (inflated == null) {
+            if (OWNER.compareAndSet(this, null, current)) {
+                if (inflated == null) {
+                    recursions = 1;
+                    return true;
+                }
+                owner = null;
+            }
+            return false;
+        }
+        ReentrantLock lock = inflated;
+        if (!lock.tryLock()) {
+            return false;
+        }
+        if (owner != null) {
+            lock.unlock();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        do {
+            if (tryLock()) {
+                return true;
+            }
+            LockSupport.parkNanos(this, SPIN_NANOS);
+        } while (System.nanoTime() < deadline);
+        return false;
+    }
+
+    private ReentrantLock inflate() {
+        ReentrantLock lock = inflated;
+        if (lock == null) {
+            INFLATED.compareAndSet(this, null, new ReentrantLock());
+            lock = inflated;
+        }
+        return lock;
+    }
+
+    private void lockInflated(Thread current) {
+        ReentrantLock lock = inflated;
+        while (true) {
+            Thread thinOwner = owner;
+            if (thinOwner != null && thinOwner != current) {
+                LockSupport.parkNanos(this, SPIN_NANOS);
+                continue;
+            }
+            lock.lock();
+            if (owner == null) {
+                return;
+            }
+            // The thin owner is moving its holds over to the inflated lock, let it
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.internals;
+
+import org.objectweb.asm.util.Printer;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how often each pair of adjacent instructions is executed back to back. This is what {@link Superinstructions}
+ * is tuned against; enable it with {@link com.javadeobfuscator.javavm.VirtualMachine#PROFILE_OPCODE_PAIRS}
+ */
+public class OpcodePairProfiler {
+    private static final AtomicLongArray COUNTS = new AtomicLongArray(256 * 256);
+
+    public static void record(int first, int second) {
+        COUNTS.incrementAndGet(first << 8 | second);
+    }
+
+    public static long count(int first, int second) {
+        return COUNTS.get(first << 8 | second);
+    }
+
+    public static void reset() {
+        for (int i = 0; i < COUNTS.length(); i++) {
+            COUNTS.set(i, 0);
+        }
+    }
+
+    public static void dump(PrintStream out, int limit) {
+        List<Integer> pairs = new ArrayList<>();
+        for (int i = 0; i < COUNTS.length(); i++) {
+            if (COUNTS.get(i) > 0) {
+                pairs.add(i);
+            }
+        }
+        pairs.sort((a, b) -> Long.compare(COUNTS.get(b), COUNTS.get(a)));
+        for (int i = 0; i < pairs.size() && i < limit; i++) {
+            int pair = pairs.get(i);
+            out.println(Printer.OPCODES[pair >>> 8] + " " + Printer.OPCODES[pair & 0xFF] + " " + COUNTS.get(pair));
+        }
+    }
+}
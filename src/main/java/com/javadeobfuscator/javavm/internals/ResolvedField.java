@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.javadeobfuscator.javavm.internals;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.hooks.HookedFieldGetter;
+import com.javadeobfuscator.javavm.hooks.HookedFieldSetter;
+import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import com.javadeobfuscator.javavm.mirrors.JavaField;
+import org.apache.commons.lang3.tuple.Pair;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+
+import java.lang.reflect.Modifier;
+
+/**
+ * A field instruction's reference resolved to the class declaring the field and the hooks bound to it. Cached per pc
+ * in the {@link ConstMethod} until the VM's link epoch changes.
+ */
+public class ResolvedField {
+    private final int epoch;
+    private final JavaClass declaringClass;
+    private final FieldNode fieldNode;
+    private final int slot;
+    private final String key;
+    private final String desc;
+    private final HookedFieldGetter getter;
+    private final HookedFieldSetter setter;
+
+    private ResolvedField(int epoch, JavaClass declaringClass, FieldNode fieldNode, String name, String desc, HookedFieldGetter getter, HookedFieldSetter setter) {
+        this.epoch = epoch;
+        this.declaringClass = declaringClass;
+        this.fieldNode = fieldNode;
+        this.slot = Modifier.isStatic(fieldNode.access) ? -1 : declaringClass.getFieldLayout().slotOf(fieldNode);
+        this.key = declaringClass.getVM().getSymbolTable().fieldKey(name, desc);
+        this.desc = desc;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public static ResolvedField resolve(VirtualMachine vm, ConstMethod code, int pc) {
+        Object cached = code.resolvedAt(pc);
+        int epoch = vm.getLinkEpoch();
+        if (cached instanceof ResolvedField && ((ResolvedField) cached).epoch == epoch) {
+            return (ResolvedField) cached;
+        }
+
+        FieldInsnNode cast = (FieldInsnNode) code.insnAt(pc);
+        Pair<JavaClass, JavaField> targetField = JavaClass.forName(vm, cast.owner).findFieldNode(cast.name, cast.desc, true);
+        if (targetField == null) {
+            throw new ExecutionException("null target field for " + cast.owner + " " + cast.name + " " + cast.desc);
+        }
+        JavaClass declaringClass = targetField.getLeft();
+        String owner = declaringClass.getClassNode().name;
+        ResolvedField resolved = new ResolvedField(epoch, declaringClass, targetField.getRight().getFieldNode(), cast.name, cast.desc, vm.getHookedFieldGetter(owner, cast.name, cast.desc), vm.getHookedFieldSetter(owner, cast.name, cast.desc));
+        code.setResolved(pc, resolved);
+        return resolved;
+    }
+
+    public JavaClass getDeclaringClass() {
+        return declaringClass;
+    }
+
+    public FieldNode getFieldNode() {
+        return fieldNode;
+    }
+
+    /**
+     * The slot of an instance field in objects of the declaring class and its subclasses, -1 for static fields
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * The key the field is stored under, see {@link SymbolTable#fieldKey(String, String)}
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+
+    public HookedFieldGetter getGetter() {
+        return getter;
+    }
+
+    public HookedFieldSetter getSetter() {
+        return setter;
+    }
+}
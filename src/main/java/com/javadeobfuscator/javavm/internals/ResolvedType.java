@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.javadeobfuscator.javavm.internals;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import org.objectweb.asm.Type;
+
+/**
+ * A type instruction's descriptor parsed and resolved to its class. Cached per pc in the {@link ConstMethod} until the
+ * VM's link epoch changes.
+ */
+public class ResolvedType {
+    private final int epoch;
+    private final Type type;
+    private final JavaClass javaClass;
+
+    private ResolvedType(int epoch, Type type, JavaClass javaClass) {
+        this.epoch = epoch;
+        this.type = type;
+        this.javaClass = javaClass;
+    }
+
+    /**
+     * Returns the cached resolution for the instruction at pc, or null if it must be resolved again
+     */
+    public static ResolvedType lookup(VirtualMachine vm, ConstMethod code, int pc) {
+        Object cached = code.resolvedAt(pc);
+        if (cached instanceof ResolvedType && ((ResolvedType) cached).epoch == vm.getLinkEpoch()) {
+            return (ResolvedType) cached;
+        }
+        return null;
+    }
+
+    /**
+     * Caches a resolution. The epoch must be read before resolving
+     */
+    public static ResolvedType record(ConstMethod code, int pc, int epoch, Type type, JavaClass javaClass) {
+        ResolvedType resolved = new ResolvedType(epoch, type, javaClass);
+        code.setResolved(pc, resolved);
+        return resolved;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public JavaClass getJavaClass() {
+        return javaClass;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.javadeobfuscator.javavm.internals;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical host character arrays for the contents of the strings the VM creates itself, see
+ * {@link com.javadeobfuscator.javavm.VirtualMachine#getString}, so that those with the same contents share one backing
+ * array. Strings the guest constructs run String's own constructors, which copy into a new array, and aren't
+ * deduplicated. The arrays are never written to, a guest array backed by one copies it before its first write. Entries
+ * are weak and go away once no guest string uses their array.
+ */
+public class StringDedupTable {
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<char[]> collected = new ReferenceQueue<>();
+
+    public char[] deduplicate(String contents) {
+        expunge();
+        Probe probe = new Probe(contents);
+        Entry entry = entries.get(probe);
+        char[] result = entry == null ? null : entry.get();
+        if (result != null) {
+            return result;
+        }
+        result = contents.toCharArray();
+        Entry added = new Entry(result, probe.hash, collected);
+        while (true) {
+            Entry existing = entries.putIfAbsent(added, added);
+            if (existing == null) {
+                return result;
+            }
+            char[] other = existing.get();
+            if (other != null) {
+                return other;
+            }
+            // Collected but not expunged yet
+            entries.remove(existing, existing);
+        }
+    }
+
+    public int size() {
+        expunge();
+        return entries.size();
+    }
+
+    private void expunge() {
+        Object ref;
+        while ((ref = collected.poll()) != null) {
+            entries.remove(ref, ref);
+        }
+    }
+
+    /*
+     * Looks up an entry by contents without creating an array
+     */
+    private static final class Probe {
+        private final String contents;
+        private final int hash;
+
+        Probe(String contents) {
+            this.contents = contents;
+            this.hash = contents.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            char[] chars = ((Entry) obj).get();
+            if (chars == null || chars.length != contents.length()) {
+                return false;
+            }
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] != contents.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /*
+     * Equal to entries with the same contents while both arrays are alive, and always to itself so that a collected
+     * entry can still be removed
+     */
+    private static final class Entry extends WeakReference<char[]> {
+        private final int hash;
+
+        Entry(char[] chars, int hash, ReferenceQueue<char[]> queue) {
+            super(chars, queue);
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            char[] chars = get();
+            return chars != null && Arrays.equals(chars, ((Entry) obj).get());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.javadeobfuscator.javavm.internals;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.utils.ArrayConversionHelper;
+import com.javadeobfuscator.javavm.values.JavaArray;
+import com.javadeobfuscator.javavm.values.JavaObject;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The interned guest strings, string constants included. Strings are held weakly, an interned string nothing else
+ * refers to can be collected and is created again the next time it's interned.
+ * <p>
+ * Entries are keyed by contents, and guest strings backed by a host array are looked up without converting them.
+ */
+public class StringTable {
+    private final VirtualMachine vm;
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<JavaObject> collected = new ReferenceQueue<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public StringTable(VirtualMachine vm) {
+        this.vm = vm;
+    }
+
+    /*
+     * The interned string with the given contents, created if there isn't one
+     */
+    public JavaWrapper intern(String contents) {
+        JavaObject found = lookup(new Probe(contents));
+        if (found != null) {
+            return JavaWrapper.wrap(found);
+        }
+        JavaWrapper created = vm.getString(contents);
+        char[] chars = (char[]) created.asObject().getField("value", "[C").asArray().readHostArray();
+        return JavaWrapper.wrap(add(created.asObject(), chars));
+    }
+
+    /*
+     * Like String.intern, the string itself is interned if there isn't one with its contents yet
+     */
+    public JavaWrapper intern(JavaWrapper string) {
+        JavaArray value = string.asObject().getField("value", "[C").asArray();
+        Object host = value.readHostArray();
+        char[] chars = host instanceof char[] ? (char[]) host : ArrayConversionHelper.convertCharArray(value);
+        JavaObject found = lookup(new Probe(chars));
+        if (found != null) {
+            return JavaWrapper.wrap(found);
+        }
+        // Keep our own copy, unless nobody writes to the guest's array anymore
+        return JavaWrapper.wrap(add(string.asObject(), chars == host && value.isShared() ? chars : chars.clone()));
+    }
+
+    public int size() {
+        expunge();
+        return entries.size();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public double getHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    private JavaObject lookup(Probe probe) {
+        expunge();
+        lookups.increment();
+        Entry entry = entries.get(probe);
+        JavaObject result = entry == null ? null : entry.get();
+        if (result != null) {
+            hits.increment();
+        }
+        return result;
+    }
+
+    private JavaObject add(JavaObject string, char[] chars) {
+        Entry added = new Entry(string, chars, collected);
+        while (true) {
+            Entry existing = entries.putIfAbsent(added, added);
+            if (existing == null) {
+                return string;
+            }
+            JavaObject other = existing.get();
+            if (other != null) {
+                return other;
+            }
+            // Collected but not expunged yet
+            entries.remove(existing, existing);
+        }
+    }
+
+    private void expunge() {
+        Object ref;
+        while ((ref = collected.poll()) != null) {
+            entries.remove(ref, ref);
+        }
+    }
+
+    private static int hash(char[] chars) {
+        int hash = 0;
+        for (char c : chars) {
+            hash = 31 * hash + c;
+        }
+        return hash;
+    }
+
+    /*
+     * Looks up an entry by contents, given either as a host string or as characters
+     */
+    private static final class Probe {
+        private final String string;
+        private final char[] chars;
+        private final int hash;
+
+        Probe(String string) {
+            this.string = string;
+            this.chars = null;
+            this.hash = string.hashCode();
+        }
+
+        Probe(char[] chars) {
+            this.string = null;
+            this.chars = chars;
+            this.hash = hash(chars);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            char[] other = ((Entry) obj).chars;
+            if (chars != null) {
+                return Arrays.equals(chars, other);
+            }
+            if (other.length != string.length()) {
+                return false;
+            }
+            for (int i = 0; i < other.length; i++) {
+                if (other[i] != string.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /*
+     * Equal to entries with the same contents while both strings are alive, and always to itself so that a collected
+     * entry can still be removed
+     */
+    private static final class Entry extends WeakReference<JavaObject> {
+        private final char[] chars;
+        private final int hash;
+
+        Entry(JavaObject string, char[] chars, ReferenceQueue<JavaObject> queue) {
+            super(string, queue);
+            this.chars = chars;
+            this.hash = hash(chars);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            return get() != null && ((Entry) obj).get() != null && Arrays.equals(chars, ((Entry) obj).chars);
+        }
+    }
+}
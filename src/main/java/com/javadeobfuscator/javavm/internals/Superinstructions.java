@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.internals;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+
+import java.util.Arrays;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Fuses common instruction sequences into single handlers. The sequences were picked from {@link OpcodePairProfiler}
+ * runs over string decryption routines, which are mostly local loads feeding integer math, array loads and compares.
+ * <p>
+ * A superinstruction only replaces the opcode of the first instruction in the sequence. The others keep their own
+ * opcodes, so jumping into the middle of a sequence or bailing out of the fast path just runs the original code.
+ */
+public class Superinstructions {
+    /*
+     * ILOAD; ILOAD; IADD/ISUB/IMUL/ISHL/ISHR/IUSHR/IAND/IOR/IXOR
+     */
+    public static final int ILOAD_ILOAD_IMATH = 256;
+    /*
+     * ALOAD; ILOAD; IALOAD/BALOAD/CALOAD/SALOAD
+     */
+    public static final int ALOAD_ILOAD_XALOAD = 257;
+    /*
+     * ALOAD; GETFIELD
+     */
+    public static final int ALOAD_GETFIELD = 258;
+    /*
+     * ICONST/BIPUSH/SIPUSH; IF_ICMPxx
+     */
+    public static final int ICONST_IF_ICMP = 259;
+    /*
+     * ILOAD; ILOAD; IF_ICMPxx
+     */
+    public static final int ILOAD_ILOAD_IF_ICMP = 260;
+    /*
+     * ILOAD; ICONST/BIPUSH/SIPUSH; IADD/ISUB/IMUL/ISHL/ISHR/IUSHR/IAND/IOR/IXOR
+     */
+    public static final int ILOAD_ICONST_IMATH = 261;
+
+    public static final int COUNT = 6;
+
+    public static int[] fuse(AbstractInsnNode[] code, int[] opcodes) {
+        int[] fused = Arrays.copyOf(opcodes, opcodes.length);
+        for (int pc = 0; pc < opcodes.length; pc++) {
+            int first = opcodes[pc];
+            int second = adjacent(code, opcodes, pc, 1);
+            int third = adjacent(code, opcodes, pc, 2);
+            if (first == ILOAD && second == ILOAD && isIntegerMath(third)) {
+                fused[pc] = ILOAD_ILOAD_IMATH;
+            } else if (first == ILOAD && isIntConstant(second) && isIntegerMath(third)) {
+                fused[pc] = ILOAD_ICONST_IMATH;
+            } else if (first == ILOAD && second == ILOAD && third >= IF_ICMPEQ && third <= IF_ICMPLE) {
+                fused[pc] = ILOAD_ILOAD_IF_ICMP;
+            } else if (first == ALOAD && second == ILOAD && (third == IALOAD || (third >= BALOAD && third <= SALOAD))) {
+                fused[pc] = ALOAD_ILOAD_XALOAD;
+            } else if (first == ALOAD && second == GETFIELD) {
+                fused[pc] = ALOAD_GETFIELD;
+            } else if (isIntConstant(first) && second >= IF_ICMPEQ && second <= IF_ICMPLE) {
+                fused[pc] = ICONST_IF_ICMP;
+            }
+        }
+        return fused;
+    }
+
+    /*
+     * How many instructions the handler for opcode ran, given that it continued at next. A superinstruction that fell
+     * back to the original code only ran the first instruction, which always continues at pc + 1. A taken branch
+     * never lands inside the sequence, as its target would have split it with a label
+     */
+    public static int covered(int opcode, int pc, int next) {
+        if (opcode < 256 || next == pc + 1) {
+            return 1;
+        }
+        return opcode == ALOAD_GETFIELD || opcode == ICONST_IF_ICMP ? 2 : 3;
+    }
+
+    /*
+     * Returns the opcode at pc + offset if nothing sits between it and pc. Labels mark branch targets, try/catch
+     * boundaries and line changes, none of which a superinstruction may span
+     */
+    private static int adjacent(AbstractInsnNode[] code, int[] opcodes, int pc, int offset) {
+        if (pc + offset >= opcodes.length) {
+            return -1;
+        }
+        for (int i = 0; i < offset; i++) {
+            if (code[pc + i].getNext() != code[pc + i + 1]) {
+                return -1;
+            }
+        }
+        return opcodes[pc + offset];
+    }
+
+    private static boolean isIntegerMath(int opcode) {
+        switch (opcode) {
+            case IADD:
+            case ISUB:
+            case IMUL:
+            case ISHL:
+            case ISHR:
+            case IUSHR:
+            case IAND:
+            case IOR:
+            case IXOR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isIntConstant(int opcode) {
+        return (opcode >= ICONST_M1 && opcode <= ICONST_5) || opcode == BIPUSH || opcode == SIPUSH;
+    }
+}
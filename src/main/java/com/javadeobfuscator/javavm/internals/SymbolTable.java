@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.javadeobfuscator.javavm.internals;
+
+import org.objectweb.asm.Type;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Canonical, parsed forms of the names and descriptors found in class files. Each is parsed once, and looking one up
+ * again returns the same object, so symbols can be compared by identity. Every VM has its own table, which goes away
+ * with it.
+ * <p>
+ * The arrays and types handed out are shared and must not be modified.
+ */
+public class SymbolTable {
+    private final Map<String, MethodSymbol> methods = new ConcurrentHashMap<>();
+    private final Map<String, TypeSymbol> types = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> fieldKeys = new ConcurrentHashMap<>();
+
+    public MethodSymbol method(String descriptor) {
+        MethodSymbol result = methods.get(descriptor);
+        if (result == null) {
+            result = methods.computeIfAbsent(descriptor, MethodSymbol::new);
+        }
+        return result;
+    }
+
+    /*
+     * The type for a name, parsed by the given function the first time. The parser's result may only depend on the name
+     */
+    public TypeSymbol type(String name, Function<String, Type> parser) {
+        TypeSymbol result = types.get(name);
+        if (result == null) {
+            result = types.computeIfAbsent(name, key -> new TypeSymbol(parser.apply(key)));
+        }
+        return result;
+    }
+
+    /*
+     * The key a field is stored under, the name and descriptor joined by a dot
+     */
+    public String fieldKey(String name, String descriptor) {
+        Map<String, String> byDescriptor = fieldKeys.get(name);
+        if (byDescriptor == null) {
+            byDescriptor = fieldKeys.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+        }
+        String result = byDescriptor.get(descriptor);
+        if (result == null) {
+            result = byDescriptor.computeIfAbsent(descriptor, key -> name + "." + key);
+        }
+        return result;
+    }
+
+    public int size() {
+        int fieldKeyCount = 0;
+        for (Map<String, String> byDescriptor : fieldKeys.values()) {
+            fieldKeyCount += byDescriptor.size();
+        }
+        return methods.size() + types.size() + fieldKeyCount;
+    }
+
+    public static final class TypeSymbol {
+        private final Type type;
+        private final int dimensions;
+        private final Type componentType;
+        private final Type elementType;
+
+        private TypeSymbol(Type type) {
+            this.type = type;
+            if (type.getSort() == Type.ARRAY) {
+                this.dimensions = type.getDimensions();
+                this.componentType = Type.getType(type.getDescriptor().substring(1));
+                this.elementType = type.getElementType();
+            } else {
+                this.dimensions = 0;
+                this.componentType = null;
+                this.elementType = type;
+            }
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /*
+         * 0 if the type isn't an array
+         */
+        public int getDimensions() {
+            return dimensions;
+        }
+
+        /*
+         * The type with one dimension less, null if the type isn't an array
+         */
+        public Type getComponentType() {
+            return componentType;
+        }
+
+        /*
+         * The type with every dimension removed, the type itself if it isn't an array
+         */
+        public Type getElementType() {
+            return elementType;
+        }
+    }
+
+    public static final class MethodSymbol {
+        private final String descriptor;
+        private final Type[] argumentTypes;
+        private final Type returnType;
+        private final int argumentSlots;
+
+        private MethodSymbol(String descriptor) {
+            this.descriptor = descriptor;
+            this.argumentTypes = Type.getArgumentTypes(descriptor);
+            this.returnType = Type.getReturnType(descriptor);
+            int argumentSlots = 0;
+            for (Type argumentType : argumentTypes) {
+                argumentSlots += argumentType.getSize();
+            }
+            this.argumentSlots = argumentSlots;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        public Type[] getArgumentTypes() {
+            return argumentTypes;
+        }
+
+        public int getArgumentCount() {
+            return argumentTypes.length;
+        }
+
+        /*
+         * Not counting the receiver
+         */
+        public int getArgumentSlots() {
+            return argumentSlots;
+        }
+
+        public Type getReturnType() {
+            return returnType;
+        }
+
+        public int getReturnSort() {
+            return returnType.getSort();
+        }
+
+        public boolean returnsValue() {
+            return returnType.getSort() != Type.VOID;
+        }
+    }
+}
@@ -35,6 +35,7 @@ public class VMSymbols {
     public static final String java_lang_ArrayStoreException = "java/lang/ArrayStoreException";
     public static final String java_lang_ClassNotFoundException = "java/lang/ClassNotFoundException";
     public static final String java_lang_NoClassDefFoundError = "java/lang/NoClassDefFoundError";
+    public static final String java_lang_ClassCircularityError = "java/lang/ClassCircularityError";
     public static final String java_lang_IllegalArgumentException = "java/lang/IllegalArgumentException";
     public static final String java_lang_OutOfMemoryError = "java/lang/OutOfMemoryError";
     public static final String java_util_concurrent_ConcurrentHashMap = "java/util/concurrent/ConcurrentHashMap";
@@ -52,12 +53,13 @@ public class VMSymbols {
     public static final String java_lang_ClassLoader = "java/lang/ClassLoader";
     public static final String java_lang_ClassLoader_parallelLockMap_name = "parallelLockMap";
     public static final String java_lang_ClassLoader_parallelLockMap_sig = java_util_concurrent_ConcurrentHashMap_sig;
-    @Deprecated
     public static final String METADATA_KLASS = "metadata/klass";
-    @Deprecated
     public static final String METADATA_FIELD = "metadata/field";
-    @Deprecated
     public static final String METADATA_LOADER_DATA = "metadata/loaderdata";
+    public static final String METADATA_OOP = "oop";
+    public static final String METADATA_BACKTRACE = "backtrace";
+    public static final String METADATA_VMTARGET = "vmtarget";
+    public static final String METADATA_VMINDEX = "vmindex";
     public static final String java_lang_Throwable = "java/lang/Throwable";
 
     public enum VMIntrinsics {
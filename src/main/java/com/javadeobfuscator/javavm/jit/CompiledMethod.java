@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.jit;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * A guest method compiled to a host class. Compiled code can't deoptimize halfway through, so it's only entered when
+ * every argument is known and every array argument is unboxed. Unboxed arrays only hold known values, compiled code
+ * only stores known values, and the arrays it creates start out unboxed, so unknowns can't show up anywhere else.
+ */
+public class CompiledMethod {
+    private final VirtualMachine vm;
+    private final Method entry;
+    private final Type[] argumentTypes;
+    private final Type returnType;
+
+    CompiledMethod(VirtualMachine vm, Method entry, Type[] argumentTypes, Type returnType) {
+        this.vm = vm;
+        this.entry = entry;
+        this.argumentTypes = argumentTypes;
+        this.returnType = returnType;
+    }
+
+    public boolean canEnter(JavaWrapper[] params) {
+        if (params == null || params.length != argumentTypes.length) {
+            return false;
+        }
+        for (JavaWrapper param : params) {
+            if (param == null || param.is(JavaValueType.UNKNOWN)) {
+                return false;
+            }
+            if (param.is(JavaValueType.ARRAY) && !param.is(JavaValueType.NULL) && !param.asArray().isUnboxed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public JavaWrapper invoke(JavaWrapper[] params) {
+        Object[] args = new Object[argumentTypes.length];
+        for (int i = 0; i < argumentTypes.length; i++) {
+            switch (argumentTypes[i].getSort()) {
+                case Type.BOOLEAN:
+                case Type.BYTE:
+                case Type.CHAR:
+                case Type.SHORT:
+                case Type.INT:
+                    args[i] = params[i].asInt();
+                    break;
+                case Type.LONG:
+                    args[i] = params[i].asLong();
+                    break;
+                case Type.FLOAT:
+                    args[i] = params[i].asFloat();
+                    break;
+                case Type.DOUBLE:
+                    args[i] = params[i].asDouble();
+                    break;
+                default:
+                    args[i] = params[i];
+                    break;
+            }
+        }
+
+        Object result;
+        try {
+            result = entry.invoke(null, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ArithmeticException) {
+                throw vm.newThrowable(VMSymbols.java_lang_ArithmeticException, "/ by zero");
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ExecutionException(cause);
+        } catch (IllegalAccessException e) {
+            throw new ExecutionException(e);
+        }
+
+        switch (returnType.getSort()) {
+            case Type.VOID:
+                return null;
+            case Type.BOOLEAN:
+            case Type.INT:
+                return vm.newInt((Integer) result);
+            case Type.BYTE:
+                return vm.newByte((byte) (int) (Integer) result);
+            case Type.CHAR:
+                return vm.newChar((char) (int) (Integer) result);
+            case Type.SHORT:
+                return vm.newShort((short) (int) (Integer) result);
+            case Type.LONG:
+                return vm.newLong((Long) result);
+            case Type.FLOAT:
+                return vm.newFloat((Float) result);
+            case Type.DOUBLE:
+                return vm.newDouble((Double) result);
+            default:
+                return (JavaWrapper) result;
+        }
+    }
+}
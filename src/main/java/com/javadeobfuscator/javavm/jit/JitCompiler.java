@@ -0,0 +1,330 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.jit;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compiles static guest methods that only do primitive arithmetic, control flow and primitive array access into host
+ * classes. Anything else (calls, fields, objects, exception handlers, monitors) is left to the interpreter.
+ * <p>
+ * Every VM has one compiler, and every class it compiles is defined in the same class loader, so they can be unloaded
+ * together once the VM is gone.
+ */
+public class JitCompiler {
+    private static final String RUNTIME = Type.getInternalName(JitRuntime.class);
+    private static final String WRAPPER_DESC = Type.getDescriptor(JavaWrapper.class);
+    private static final String VM_DESC = Type.getDescriptor(VirtualMachine.class);
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final VirtualMachine vm;
+    private final JitClassLoader loader = new JitClassLoader();
+
+    public JitCompiler(VirtualMachine vm) {
+        this.vm = vm;
+    }
+
+    public static boolean isCompilable(MethodNode method) {
+        if ((method.access & ACC_STATIC) == 0 || (method.access & (ACC_NATIVE | ACC_ABSTRACT | ACC_SYNCHRONIZED)) != 0) {
+            return false;
+        }
+        if (method.instructions.size() == 0 || (method.tryCatchBlocks != null && !method.tryCatchBlocks.isEmpty())) {
+            return false;
+        }
+        for (Type type : Type.getArgumentTypes(method.desc)) {
+            if (!isSupportedType(type)) {
+                return false;
+            }
+        }
+        Type returnType = Type.getReturnType(method.desc);
+        if (returnType.getSort() != Type.VOID && !isSupportedType(returnType)) {
+            return false;
+        }
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (!isSupported(insn)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the compiled form of the method, or null if it can't be compiled
+     */
+    public CompiledMethod compile(ClassNode owner, MethodNode method) {
+        if (!isCompilable(method)) {
+            return null;
+        }
+        String name = "com/javadeobfuscator/javavm/jit/Compiled$" + COUNTER.incrementAndGet();
+        try {
+            byte[] bytes = generate(name, owner, method);
+            Class<?> clazz = loader.define(name.replace('/', '.'), bytes);
+            clazz.getField("vm").set(null, vm);
+            Method entry = null;
+            for (Method candidate : clazz.getDeclaredMethods()) {
+                if (candidate.getName().equals("run")) {
+                    entry = candidate;
+                }
+            }
+            return new CompiledMethod(vm, entry, Type.getArgumentTypes(method.desc), Type.getReturnType(method.desc));
+        } catch (Exception | LinkageError t) {
+            // verification failures and oversized methods just stay interpreted
+            if (VirtualMachine.DEBUG) {
+                System.out.println("Failed to compile " + StringEscapeUtils.escapeJava(owner.name) + " " + StringEscapeUtils.escapeJava(method.name + method.desc) + ": " + t);
+            }
+            return null;
+        }
+    }
+
+    private static byte[] generate(String name, ClassNode owner, MethodNode method) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, "java/lang/Object", null);
+        writer.visitSource(owner.sourceFile, null);
+        writer.visitField(ACC_PUBLIC | ACC_STATIC, "vm", VM_DESC, null, null).visitEnd();
+
+        MethodVisitor mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", hostDescriptor(method.desc), null, null);
+        mv.visitCode();
+        Map<LabelNode, Label> labels = new IdentityHashMap<>();
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            switch (insn.getType()) {
+                case AbstractInsnNode.LABEL:
+                    mv.visitLabel(label(labels, (LabelNode) insn));
+                    break;
+                case AbstractInsnNode.LINE:
+                    mv.visitLineNumber(((LineNumberNode) insn).line, label(labels, ((LineNumberNode) insn).start));
+                    break;
+                case AbstractInsnNode.FRAME:
+                    break;
+                case AbstractInsnNode.INSN:
+                    visitInsn(mv, name, insn.getOpcode());
+                    break;
+                case AbstractInsnNode.INT_INSN: {
+                    IntInsnNode cast = (IntInsnNode) insn;
+                    if (cast.getOpcode() == NEWARRAY) {
+                        mv.visitIntInsn(BIPUSH, cast.operand);
+                        mv.visitFieldInsn(GETSTATIC, name, "vm", VM_DESC);
+                        mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "newarray", "(II" + VM_DESC + ")" + WRAPPER_DESC, false);
+                    } else {
+                        mv.visitIntInsn(cast.getOpcode(), cast.operand);
+                    }
+                    break;
+                }
+                case AbstractInsnNode.VAR_INSN:
+                    mv.visitVarInsn(insn.getOpcode(), ((VarInsnNode) insn).var);
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    mv.visitIincInsn(((IincInsnNode) insn).var, ((IincInsnNode) insn).incr);
+                    break;
+                case AbstractInsnNode.JUMP_INSN:
+                    mv.visitJumpInsn(insn.getOpcode(), label(labels, ((JumpInsnNode) insn).label));
+                    break;
+                case AbstractInsnNode.LDC_INSN:
+                    mv.visitLdcInsn(((LdcInsnNode) insn).cst);
+                    break;
+                case AbstractInsnNode.TABLESWITCH_INSN: {
+                    TableSwitchInsnNode cast = (TableSwitchInsnNode) insn;
+                    Label[] targets = new Label[cast.labels.size()];
+                    for (int i = 0; i < targets.length; i++) {
+                        targets[i] = label(labels, cast.labels.get(i));
+                    }
+                    mv.visitTableSwitchInsn(cast.min, cast.max, label(labels, cast.dflt), targets);
+                    break;
+                }
+                case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+                    LookupSwitchInsnNode cast = (LookupSwitchInsnNode) insn;
+                    int[] keys = new int[cast.keys.size()];
+                    Label[] targets = new Label[cast.labels.size()];
+                    for (int i = 0; i < targets.length; i++) {
+                        keys[i] = cast.keys.get(i);
+                        targets[i] = label(labels, cast.labels.get(i));
+                    }
+                    mv.visitLookupSwitchInsn(label(labels, cast.dflt), keys, targets);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unsupported instruction " + insn);
+            }
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void visitInsn(MethodVisitor mv, String name, int opcode) {
+        String helper;
+        String desc;
+        switch (opcode) {
+            case IALOAD:
+                helper = "iaload";
+                desc = "(" + WRAPPER_DESC + "I" + VM_DESC + ")I";
+                break;
+            case LALOAD:
+                helper = "laload";
+                desc = "(" + WRAPPER_DESC + "I" + VM_DESC + ")J";
+                break;
+            case FALOAD:
+                helper = "faload";
+                desc = "(" + WRAPPER_DESC + "I" + VM_DESC + ")F";
+                break;
+            case DALOAD:
+                helper = "daload";
+                desc = "(" + WRAPPER_DESC + "I" + VM_DESC + ")D";
+                break;
+            case BALOAD:
+                helper = "baload";
+                desc = "(" + WRAPPER_DESC + "I" + VM_DESC + ")I";
+                break;
+            case CALOAD:
+                helper = "caload";
+                desc = "(" + WRAPPER_DESC + "I" + VM_DESC + ")I";
+                break;
+            case SALOAD:
+                helper = "saload";
+                desc = "(" + WRAPPER_DESC + "I" + VM_DESC + ")I";
+                break;
+            case IASTORE:
+                helper = "iastore";
+                desc = "(" + WRAPPER_DESC + "II" + VM_DESC + ")V";
+                break;
+            case LASTORE:
+                helper = "lastore";
+                desc = "(" + WRAPPER_DESC + "IJ" + VM_DESC + ")V";
+                break;
+            case FASTORE:
+                helper = "fastore";
+                desc = "(" + WRAPPER_DESC + "IF" + VM_DESC + ")V";
+                break;
+            case DASTORE:
+                helper = "dastore";
+                desc = "(" + WRAPPER_DESC + "ID" + VM_DESC + ")V";
+                break;
+            case BASTORE:
+                helper = "bastore";
+                desc = "(" + WRAPPER_DESC + "II" + VM_DESC + ")V";
+                break;
+            case CASTORE:
+                helper = "castore";
+                desc = "(" + WRAPPER_DESC + "II" + VM_DESC + ")V";
+                break;
+            case SASTORE:
+                helper = "sastore";
+                desc = "(" + WRAPPER_DESC + "II" + VM_DESC + ")V";
+                break;
+            case ARRAYLENGTH:
+                helper = "arraylength";
+                desc = "(" + WRAPPER_DESC + VM_DESC + ")I";
+                break;
+            default:
+                mv.visitInsn(opcode);
+                return;
+        }
+        mv.visitFieldInsn(GETSTATIC, name, "vm", VM_DESC);
+        mv.visitMethodInsn(INVOKESTATIC, RUNTIME, helper, desc, false);
+    }
+
+    private static Label label(Map<LabelNode, Label> labels, LabelNode node) {
+        return labels.computeIfAbsent(node, k -> new Label());
+    }
+
+    /*
+     * Subword types are plain ints on the operand stack, and guest arrays are JavaWrappers
+     */
+    private static String hostDescriptor(String desc) {
+        StringBuilder builder = new StringBuilder("(");
+        for (Type type : Type.getArgumentTypes(desc)) {
+            builder.append(hostType(type).getDescriptor());
+        }
+        return builder.append(")").append(hostType(Type.getReturnType(desc)).getDescriptor()).toString();
+    }
+
+    private static Type hostType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.BYTE:
+            case Type.CHAR:
+            case Type.SHORT:
+                return Type.INT_TYPE;
+            case Type.ARRAY:
+                return Type.getType(WRAPPER_DESC);
+            default:
+                return type;
+        }
+    }
+
+    private static boolean isSupportedType(Type type) {
+        if (type.getSort() == Type.ARRAY) {
+            return type.getDimensions() == 1 && type.getElementType().getSort() <= Type.DOUBLE;
+        }
+        return type.getSort() >= Type.BOOLEAN && type.getSort() <= Type.DOUBLE;
+    }
+
+    private static boolean isSupported(AbstractInsnNode insn) {
+        int opcode = insn.getOpcode();
+        if (opcode == -1) {
+            return true;
+        }
+        if (opcode == LDC) {
+            Object cst = ((LdcInsnNode) insn).cst;
+            return cst instanceof Integer || cst instanceof Long || cst instanceof Float || cst instanceof Double;
+        }
+        return (opcode >= NOP && opcode <= DCONST_1 && opcode != ACONST_NULL)
+                || opcode == BIPUSH || opcode == SIPUSH
+                || (opcode >= ILOAD && opcode <= ALOAD)
+                || (opcode >= IALOAD && opcode <= SALOAD && opcode != AALOAD)
+                || (opcode >= ISTORE && opcode <= ASTORE)
+                || (opcode >= IASTORE && opcode <= SASTORE && opcode != AASTORE)
+                || (opcode >= POP && opcode <= SWAP)
+                || (opcode >= IADD && opcode <= LXOR)
+                || (opcode >= IINC && opcode <= IF_ICMPLE)
+                || opcode == GOTO || opcode == TABLESWITCH || opcode == LOOKUPSWITCH
+                || (opcode >= IRETURN && opcode <= RETURN)
+                || opcode == NEWARRAY || opcode == ARRAYLENGTH;
+    }
+
+    private static class JitClassLoader extends ClassLoader {
+        JitClassLoader() {
+            super(JitCompiler.class.getClassLoader());
+        }
+
+        synchronized Class<?> define(String name, byte[] bytes) throws ClassNotFoundException {
+            defineClass(name, bytes, 0, bytes.length);
+            // initializing forces verification now rather than on the first call
+            return Class.forName(name, true, this);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm.jit;
+
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
+import com.javadeobfuscator.javavm.utils.ArrayHelper;
+import com.javadeobfuscator.javavm.values.JavaArray;
+import com.javadeobfuscator.javavm.values.JavaValueType;
+import com.javadeobfuscator.javavm.values.JavaWrapper;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Array operations for compiled code. Guest arrays stay in the VM's value model, so every access goes through here.
+ * The owning VM is always passed last because the generated code loads it after the operands.
+ * <p>
+ * Every array compiled code sees is unboxed, see {@link CompiledMethod#canEnter}, so loads never find an unknown.
+ */
+public class JitRuntime {
+    public static int iaload(JavaWrapper array, int index, VirtualMachine vm) {
+        return checkedArray(array, index, vm).getInt(index);
+    }
+
+    public static long laload(JavaWrapper array, int index, VirtualMachine vm) {
+        return checkedArray(array, index, vm).getLong(index);
+    }
+
+    public static float faload(JavaWrapper array, int index, VirtualMachine vm) {
+        return checkedArray(array, index, vm).getFloat(index);
+    }
+
+    public static double daload(JavaWrapper array, int index, VirtualMachine vm) {
+        return checkedArray(array, index, vm).getDouble(index);
+    }
+
+    public static int baload(JavaWrapper array, int index, VirtualMachine vm) {
+        return checkedArray(array, index, vm).getInt(index);
+    }
+
+    public static int caload(JavaWrapper array, int index, VirtualMachine vm) {
+        return checkedArray(array, index, vm).getInt(index);
+    }
+
+    public static int saload(JavaWrapper array, int index, VirtualMachine vm) {
+        return checkedArray(array, index, vm).getInt(index);
+    }
+
+    public static void iastore(JavaWrapper array, int index, int value, VirtualMachine vm) {
+        checkedArray(array, index, vm).setInt(index, value);
+    }
+
+    public static void lastore(JavaWrapper array, int index, long value, VirtualMachine vm) {
+        checkedArray(array, index, vm).setLong(index, value);
+    }
+
+    public static void fastore(JavaWrapper array, int index, float value, VirtualMachine vm) {
+        checkedArray(array, index, vm).setFloat(index, value);
+    }
+
+    public static void dastore(JavaWrapper array, int index, double value, VirtualMachine vm) {
+        checkedArray(array, index, vm).setDouble(index, value);
+    }
+
+    public static void bastore(JavaWrapper array, int index, int value, VirtualMachine vm) {
+        // Narrows to a boolean for boolean arrays
+        checkedArray(array, index, vm).setInt(index, value);
+    }
+
+    public static void castore(JavaWrapper array, int index, int value, VirtualMachine vm) {
+        checkedArray(array, index, vm).setInt(index, value);
+    }
+
+    public static void sastore(JavaWrapper array, int index, int value, VirtualMachine vm) {
+        checkedArray(array, index, vm).setInt(index, value);
+    }
+
+    public static int arraylength(JavaWrapper array, VirtualMachine vm) {
+        if (array.is(JavaValueType.NULL)) {
+            throw vm.newThrowable(VMSymbols.java_lang_NullPointerException);
+        }
+        return array.asArray().length();
+    }
+
+    public static JavaWrapper newarray(int length, int atype, VirtualMachine vm) {
+        if (length < 0) {
+            throw vm.newThrowable("java/lang/NegativeArraySizeException", String.valueOf(length));
+        }
+        return ArrayHelper.newInstance(vm, elementType(atype), length);
+    }
+
+    private static JavaArray checkedArray(JavaWrapper array, int index, VirtualMachine vm) {
+        if (array.is(JavaValueType.NULL)) {
+            throw vm.newThrowable(VMSymbols.java_lang_NullPointerException);
+        }
+        JavaArray javaArray = array.asArray();
+        if (index < 0 || index >= javaArray.length()) {
+            throw vm.newThrowable(VMSymbols.java_lang_ArrayIndexOutOfBoundsException, String.valueOf(index));
+        }
+        return javaArray;
+    }
+
+    private static Type elementType(int atype) {
+        switch (atype) {
+            case T_BOOLEAN:
+                return Type.BOOLEAN_TYPE;
+            case T_CHAR:
+                return Type.CHAR_TYPE;
+            case T_FLOAT:
+                return Type.FLOAT_TYPE;
+            case T_DOUBLE:
+                return Type.DOUBLE_TYPE;
+            case T_BYTE:
+                return Type.BYTE_TYPE;
+            case T_SHORT:
+                return Type.SHORT_TYPE;
+            case T_INT:
+                return Type.INT_TYPE;
+            case T_LONG:
+                return Type.LONG_TYPE;
+            default:
+                throw new ExecutionException("Unknown array type " + atype);
+        }
+    }
+}
@@ -16,11 +16,10 @@
 
 package com.javadeobfuscator.javavm.mirrors;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.internals.FieldDescriptor;
+import com.javadeobfuscator.javavm.internals.FieldLayout;
 import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.utils.ASMHelper;
 import com.javadeobfuscator.javavm.utils.PrimitiveUtils;
@@ -69,9 +68,7 @@ public class JavaClass {
     private volatile Thread initalizationThread = null;
 
     // unsafe operations
-    private final BiMap<Long, FieldNode> fieldOffsets = HashBiMap.create();
-    private final BiMap<Long, FieldNode> objectFieldOffsets = HashBiMap.create();
-    private final long nextSlot;
+    private final FieldLayout fieldLayout;
 
     // cache
     private final Map<String, FieldNode> fieldCache = new HashMap<>();
@@ -86,28 +83,19 @@ public class JavaClass {
         this._type = descriptor;
         this.componentType = null;
 
-        this._vm.cacheClass(this);
-
-        long nextSlot = 0;
+        FieldLayout fieldLayout = FieldLayout.EMPTY;
         if (getSuperclass() != null) {
-            objectFieldOffsets.putAll(getSuperclass().objectFieldOffsets);
-            nextSlot = getSuperclass().nextSlot;
+            fieldLayout = getSuperclass().fieldLayout;
         }
 
+        List<FieldNode> instanceFields = new ArrayList<>();
         for (FieldNode fieldNode : classNode.fields) {
             if (!Modifier.isStatic(fieldNode.access)) {
-                objectFieldOffsets.put(nextSlot++, fieldNode);
+                instanceFields.add(fieldNode);
             }
         }
 
-        this.nextSlot = nextSlot;
-
-        fieldOffsets.putAll(objectFieldOffsets);
-        for (FieldNode fieldNode : classNode.fields) {
-            if (Modifier.isStatic(fieldNode.access)) {
-                fieldOffsets.put(nextSlot++, fieldNode);
-            }
-        }
+        this.fieldLayout = fieldLayout.extend(instanceFields);
 
         for (FieldNode fieldNode : classNode.fields) {
             fieldCache.put(fieldNode.name + "." + fieldNode.desc, fieldNode);
@@ -116,6 +104,9 @@ public class JavaClass {
         for (MethodNode methodNode : classNode.methods) {
             methodCache.put(methodNode.name + "." + methodNode.desc, methodNode);
         }
+
+        // Lookups don't lock, so only publish the class once it's complete
+        this._vm.cacheClass(this);
     }
 
 
@@ -149,20 +140,11 @@ public class JavaClass {
         }
     }
 
-    public FieldNode getFieldByOffset(long offset) {
-        return fieldOffsets.get(offset);
-    }
-
-    public long getOffsetByField(FieldNode field) {
-        return fieldOffsets.inverse().get(field);
-    }
-
-    public BiMap<Long, FieldNode> getFieldOffsets() {
-        return fieldOffsets;
-    }
-
-    public long getNextSlot() {
-        return nextSlot;
+    /*
+     * The slots of this class's instance fields, which are also their offsets
+     */
+    public FieldLayout getFieldLayout() {
+        return fieldLayout;
     }
 
     private JavaClass(VirtualMachine vm, JavaClass elementType, Type arrayDescriptor) {
@@ -179,8 +161,8 @@ public class JavaClass {
             this._name = arrayDescriptor.getDescriptor();
         }
 
+        fieldLayout = FieldLayout.EMPTY;
         this._vm.cacheClass(this);
-        nextSlot = -1;
     }
 
     public JavaClass(VirtualMachine vm, Type primitiveType, String primitiveName) {
@@ -192,14 +174,18 @@ public class JavaClass {
         this._type = primitiveType;
         this._name = primitiveName;
         this.componentType = null;
-        nextSlot = -1;
+        fieldLayout = FieldLayout.EMPTY;
     }
 
-    public synchronized static JavaClass forName(VirtualMachine vm, String name) {
+    public static JavaClass forName(VirtualMachine vm, String name) {
         return forName(vm, TypeHelper.parseType(vm, name));
     }
 
-    public synchronized static JavaClass forName(VirtualMachine vm, Type descriptor) {
+    /*
+     * Loaded classes are found without locking. Creating one locks only its own name, so threads and VMs loading
+     * different classes don't wait on each other
+     */
+    public static JavaClass forName(VirtualMachine vm, Type descriptor) {
         if (descriptor.getSort() == Type.OBJECT || descriptor.getSort() == Type.ARRAY) {
             String strdesc = descriptor.getDescriptor();
             if (!strdesc.endsWith(";") && !strdesc.startsWith("[")) {
@@ -210,19 +196,60 @@ public class JavaClass {
                 return lookup;
             }
             if (descriptor.getSort() == Type.OBJECT) {
-                ClassNode classNode = vm.lookupClass(descriptor.getInternalName());
-                if (classNode == null) {
-                    return null;
+                checkCircularity(vm, descriptor.getInternalName());
+            }
+            Object resolutionLock = vm.getClassResolutionLock(strdesc);
+            try {
+                synchronized (resolutionLock) {
+                    lookup = vm.forName(strdesc);
+                    if (lookup != null) {
+                        return lookup;
+                    }
+                    // The lock is reentrant, so a class in its own superclass chain would be created over and over
+                    if (!vm.beginClassCreation(strdesc)) {
+                        throw vm.newThrowable(VMSymbols.java_lang_ClassCircularityError, descriptor.getInternalName());
+                    }
+                    try {
+                        if (descriptor.getSort() == Type.OBJECT) {
+                            ClassNode classNode = vm.lookupClass(descriptor.getInternalName());
+                            if (classNode == null) {
+                                return null;
+                            }
+                            return new JavaClass(vm, classNode, descriptor);
+                        } else {
+                            return new JavaClass(vm, forName(vm, Type.getType(descriptor.getDescriptor().substring(1))), descriptor);
+                        }
+                    } finally {
+                        vm.endClassCreation(strdesc);
+                    }
                 }
-                return new JavaClass(vm, classNode, descriptor);
-            } else {
-                return new JavaClass(vm, forName(vm, Type.getType(descriptor.getDescriptor().substring(1))), descriptor);
+            } finally {
+                vm.releaseClassResolutionLock(strdesc, resolutionLock);
             }
         } else {
             return JavaClass.getPrimitiveClass(vm, descriptor.getClassName());
         }
     }
 
+    /*
+     * A class is created under its lock and creates its superclass from there, so two threads entering a cycle from
+     * different classes would wait on each other. Walk the superclass chain up to the first loaded class first
+     */
+    private static void checkCircularity(VirtualMachine vm, String internalName) {
+        Set<String> visited = new HashSet<>();
+        String name = internalName;
+        while (name != null && vm.forName("L" + name + ";") == null) {
+            if (!visited.add(name)) {
+                throw vm.newThrowable(VMSymbols.java_lang_ClassCircularityError, internalName);
+            }
+            ClassNode classNode = vm.lookupClass(name);
+            if (classNode == null) {
+                return;
+            }
+            name = classNode.superName;
+        }
+    }
+
     public static JavaClass getJavaClass(VirtualMachine virtualMachine, Class<?> clazz) {
         Type type = Type.getType(clazz);
         if (clazz.isPrimitive()) {
@@ -64,13 +64,13 @@ public class java_io_FileOutputStream {
                     }
                 }
                 try {
-                    new FileOutputStream(FileDescriptor.out).write(ArrayConversionHelper.convertByteArray((JavaArray) args[0].get()), args[1].asInt(), args[2].asInt());
+                    new FileOutputStream(FileDescriptor.out).write(ArrayConversionHelper.viewByteArray((JavaArray) args[0].get()), args[1].asInt(), args[2].asInt());
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             } else if (handle == 2) {
                 try {
-                    new FileOutputStream(FileDescriptor.err).write(ArrayConversionHelper.convertByteArray((JavaArray) args[0].get()), args[1].asInt(), args[2].asInt());
+                    new FileOutputStream(FileDescriptor.err).write(ArrayConversionHelper.viewByteArray((JavaArray) args[0].get()), args[1].asInt(), args[2].asInt());
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -50,13 +50,7 @@ public class java_lang_Object {
             }
 
             if (inst.is(JavaValueType.ARRAY)) {
-                JavaArray old = inst.asArray();
-                JavaArray array = new JavaArray(inst.getJavaClass(), new JavaWrapper[old.length()]);
-                for (int i = 0; i < old.length(); i++) {
-                    array.set(i, old.get(i));
-                }
-
-                return JavaWrapper.wrap(array);
+                return JavaWrapper.wrap(inst.asArray().copy());
             } else {
                 throw new ExecutionException("Unexpected");
             }
@@ -91,9 +85,9 @@ public class java_lang_Object {
             JavaUninitialized uninitialized = (JavaUninitialized) arg0;
             if (vm.getSystemDictionary().getJavaLangThread().isAssignableFrom(uninitialized.getJavaClass())) {
                 ThreadOop threadOop = new ThreadOop(inst);
-                uninitialized.initializedValue().setMetadata("oop", threadOop);
+                uninitialized.initializedValue().setMetadata(VMSymbols.METADATA_OOP, threadOop);
             }
-            inst.set(uninitialized.initializedValue());
+            inst.initialize(uninitialized.initializedValue());
         }));
     }
 }
@@ -20,6 +20,7 @@ import com.javadeobfuscator.javavm.Cause;
 import com.javadeobfuscator.javavm.Effect;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.hooks.HookGenerator;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.utils.ASMHelper;
 import com.javadeobfuscator.javavm.values.JavaArray;
 import com.javadeobfuscator.javavm.values.JavaValueType;
@@ -56,18 +57,18 @@ public class java_lang_System {
             return vm.newLong(System.nanoTime());
         }));
         vm.hook(HookGenerator.generateUnknownHandlingVoidHook(vm, THIS, "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V", true, Cause.NONE, Effect.NONE, (ctx, inst, args) -> {
+            if (args[0].is(JavaValueType.NULL) || args[2].is(JavaValueType.NULL)) {
+                throw vm.newThrowable(VMSymbols.java_lang_NullPointerException);
+            }
             JavaArray src = ((JavaArray) args[0].get());
             JavaArray dst = ((JavaArray) args[2].get());
             int srcStart = args[1].asInt();
             int dstStart = args[3].asInt();
             int amnt = args[4].asInt();
-            JavaWrapper[] tmp = new JavaWrapper[amnt];
-            for (int count = 0, i = srcStart; count < amnt; count++, i++) {
-                tmp[count] = src.get(i);
-            }
-            for (int count = 0, j = dstStart; count < amnt; count++, j++) {
-                dst.set(j, tmp[count]);
+            if (amnt < 0 || srcStart < 0 || dstStart < 0 || srcStart > src.length() - amnt || dstStart > dst.length() - amnt) {
+                throw vm.newThrowable(VMSymbols.java_lang_ArrayIndexOutOfBoundsException);
             }
+            JavaArray.copy(src, srcStart, dst, dstStart, amnt);
         }));
         vm.hook(HookGenerator.generateUnknownHandlingHook(vm, THIS, "identityHashCode", "(Ljava/lang/Object;)I", true, Cause.NONE, Effect.NONE, (ctx, inst, args) -> {
             return vm.newInt(args[0].is(JavaValueType.NULL) ? 0 : args[0].asObject().getHashCode());
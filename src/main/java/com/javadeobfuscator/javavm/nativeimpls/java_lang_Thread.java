@@ -28,7 +28,7 @@ public class java_lang_Thread {
     private static final String THIS = "java/lang/Thread";
 
     public static ThreadOop getThreadOop(JavaWrapper thread) {
-        return thread.get().getMetadata("oop");
+        return thread.get().getMetadata(VMSymbols.METADATA_OOP);
     }
 
     public static void registerNatives(VirtualMachine vm) {
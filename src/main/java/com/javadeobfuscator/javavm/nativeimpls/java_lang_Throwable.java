@@ -18,6 +18,7 @@ package com.javadeobfuscator.javavm.nativeimpls;
 
 import com.javadeobfuscator.javavm.*;
 import com.javadeobfuscator.javavm.hooks.*;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.mirrors.*;
 import com.javadeobfuscator.javavm.values.*;
 import org.objectweb.asm.tree.*;
@@ -33,7 +34,7 @@ import java.util.*;
  */
 public class java_lang_Throwable {
     private static final String THIS = "java/lang/Throwable";
-    public static final String METADATA_BACKTRACE = "backtrace";
+    public static final String METADATA_BACKTRACE = VMSymbols.METADATA_BACKTRACE;
 
     public static void registerNatives(VirtualMachine vm) {
         vm.hook(HookGenerator.generateUnknownHandlingHook(vm, THIS, "fillInStackTrace", "(I)Ljava/lang/Throwable;", false, Cause.NONE, Effect.NONE, (ctx, inst, args) -> {
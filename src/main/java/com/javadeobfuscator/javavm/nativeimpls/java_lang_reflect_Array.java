@@ -21,8 +21,7 @@ import com.javadeobfuscator.javavm.Effect;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.hooks.HookGenerator;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
-import com.javadeobfuscator.javavm.values.JavaWrapper;
-import org.objectweb.asm.Type;
+import com.javadeobfuscator.javavm.utils.ArrayHelper;
 
 public class java_lang_reflect_Array {
     private static final String THIS = "java/lang/reflect/Array";
@@ -30,7 +29,10 @@ public class java_lang_reflect_Array {
     public static void registerNatives(VirtualMachine vm) {
         vm.hook(HookGenerator.generateUnknownHandlingHook(vm, THIS, "newArray", "(Ljava/lang/Class;I)Ljava/lang/Object;", true, Cause.ALL, Effect.NONE, (ctx, inst, args) -> {
             JavaClass type = java_lang_Class.getJavaClass(args[0]);
-            return JavaWrapper.createArray(JavaClass.forName(vm, Type.getType("[" + type.internalGetType().getDescriptor())), new JavaWrapper[args[1].asInt()]);
+            if (args[1].asInt() < 0) {
+                throw vm.newThrowable("java/lang/NegativeArraySizeException", String.valueOf(args[1].asInt()));
+            }
+            return ArrayHelper.newInstance(vm, type.internalGetType(), args[1].asInt());
         }));
     }
 }
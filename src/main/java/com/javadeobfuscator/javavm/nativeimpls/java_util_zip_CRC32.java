@@ -38,7 +38,7 @@ public class java_util_zip_CRC32 {
         vm.hook(HookGenerator.generateUnknownHandlingHook(vm, THIS, "updateBytes", "(I[BII)I", true, Cause.ALL, Effect.NONE, (ctx, inst, args) -> {
             CRC32 crc32 = new CRC32();
             crc32.reset(args[0].asInt());
-            crc32.update(ArrayConversionHelper.convertByteArray((JavaArray) args[1].get()), args[2].asInt(), args[3].asInt());
+            crc32.update(ArrayConversionHelper.viewByteArray((JavaArray) args[1].get()), args[2].asInt(), args[3].asInt());
             return JavaWrapper.createInteger(vm, (int) (crc32.getValue() & 0xffffffffL));
         }));
     }
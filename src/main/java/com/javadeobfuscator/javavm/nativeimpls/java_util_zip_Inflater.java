@@ -84,7 +84,7 @@ public class java_util_zip_Inflater {
         vm.hook(HookGenerator.generateUnknownHandlingVoidHook(vm, THIS, "setDictionary", "(J[BII)V", true, Cause.NONE, Effect.NONE, (ctx, inst, args) -> {
             Inflater inflater = natives.get(args[0].asLong());
 
-            byte[] origDictionary = ArrayConversionHelper.convertByteArray((JavaArray) args[1].get());
+            byte[] origDictionary = ArrayConversionHelper.viewByteArray((JavaArray) args[1].get());
             byte[] actualDictionary = Arrays.copyOfRange(origDictionary, args[2].asInt(), args[2].asInt() + args[3].asInt());
 
             int result = inflater.setDictionary(actualDictionary, args[3].asInt());
@@ -109,8 +109,11 @@ public class java_util_zip_Inflater {
             int thisOff = ((JavaObject) inst.get()).getField("off", "I").asInt();
             int thisLen = ((JavaObject) inst.get()).getField("len", "I").asInt();
 
-            byte[] in_buf = ArrayConversionHelper.convertByteArray(thisBuf);
-            byte[] out_buf = ArrayConversionHelper.convertByteArray((JavaArray) args[1].get());
+            JavaArray outArray = (JavaArray) args[1].get();
+            byte[] in_buf = ArrayConversionHelper.viewByteArray(thisBuf);
+            // Inflate straight into the caller's array when it's unboxed
+            boolean inPlace = outArray.hostArray() instanceof byte[];
+            byte[] out_buf = inPlace ? (byte[]) outArray.hostArray() : ArrayConversionHelper.convertByteArray(outArray);
 
             inflater.next_in = in_buf;
             inflater.next_out = out_buf;
@@ -120,7 +123,12 @@ public class java_util_zip_Inflater {
             inflater.next_out_index = args[2].asInt();
 
             int ret = inflater.inflate(JZlib.Z_PARTIAL_FLUSH);
-            args[1].set(ArrayConversionHelper.convertByteArray(vm, out_buf).get());
+            if (!inPlace) {
+                // Write back into the caller's array rather than swapping it out, other references to it must see the bytes
+                for (int i = args[2].asInt(); i < inflater.next_out_index; i++) {
+                    outArray.set(i, vm.newByte(out_buf[i]));
+                }
+            }
 
             switch (ret) {
                 case Z_STREAM_END: {
@@ -22,6 +22,7 @@ import com.javadeobfuscator.javavm.MethodExecution;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.hooks.HookGenerator;
+import com.javadeobfuscator.javavm.internals.FieldLayout;
 import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.ArrayConversionHelper;
@@ -57,29 +58,42 @@ public class sun_misc_Unsafe {
             // If the field is static (which means the base is an instanceof java/lang/Class)
             // or the field belongs to an instance of java/lang/Class
             // we need to determine the special offset
-            long offset = args[0].asObject().getField("clazz", "Ljava/lang/Class;").asObject().getOffsetByField(fieldNode);
-            return context.getVM().newLong(offset);
+            JavaObject mirror = args[0].asObject().getField("clazz", "Ljava/lang/Class;").asObject();
+            return context.getVM().newLong(offsetOf(mirror.getLayout(), fieldNode));
         }
-//        System.out.println("Offset of field " + owner.getClassNode().name + " " + fieldNode.name + fieldNode.desc + " is " + owner.getOffsetByField(fieldNode));
-        return context.getVM().newLong(owner.getOffsetByField(fieldNode));
+        return context.getVM().newLong(offsetOf(owner.getFieldLayout(), fieldNode));
+    }
+
+    private static long offsetOf(FieldLayout layout, FieldNode fieldNode) {
+        int slot = layout.slotOf(fieldNode);
+        if (slot < 0) {
+            throw new ExecutionException("No slot for " + fieldNode.name + " " + fieldNode.desc);
+        }
+        return slot;
+    }
+
+    /*
+     * Offsets are slots, including the statics of a class stored in its java/lang/Class. If desc isn't null, the field
+     * in the slot must be of that type
+     */
+    private static int slotOf(JavaObject target, long offset, String desc) {
+        if (offset < 0 || offset >= target.getLayout().size()) {
+            throw new ExecutionException("No field at offset " + offset + " in " + target.getJavaClass().getClassNode().name);
+        }
+        int slot = (int) offset;
+        FieldNode targetField = target.getLayout().fieldAt(slot);
+        if (desc != null && !targetField.desc.equals(desc)) {
+            throw new ExecutionException("weird, field type wasn't " + desc + ": " + target.getJavaClass().getClassNode().name + " " + targetField.name + targetField.desc);
+        }
+        return slot;
     }
 
     private static JavaWrapper doGetObject(MethodExecution context, JavaWrapper inst, JavaWrapper[] args, boolean isVolatile) {
         long objectFieldOffset = args[1].asLong();
         if (!args[0].is(ARRAY)) {
             JavaObject target = args[0].asObject();
-            FieldNode targetField;
-            JavaClass clazz = target.getJavaClass();
-            if (clazz == context.getVM().getSystemDictionary().getJavaLangClass()) {
-                targetField = target.getFieldByOffset(objectFieldOffset);
-                if (Modifier.isStatic(targetField.access)) {
-                    clazz = java_lang_Class.getJavaClass(target);
-                }
-            } else {
-                targetField = clazz.getFieldByOffset(objectFieldOffset);
-            }
-//            System.out.println("Getting object " + target + " " + clazz.getClassNode().name + " " + targetField.name + " " + targetField.desc);
-            return target.getField(targetField.name, targetField.desc);
+            int slot = slotOf(target, objectFieldOffset, null);
+            return target.getFieldBySlot(slot);
         } else if (args[0].is(ARRAY)) {
             JavaArray arr = (JavaArray) args[0].get();
             return arr.get((int) ((objectFieldOffset - 16) / 4));
@@ -91,17 +105,8 @@ public class sun_misc_Unsafe {
         long objectFieldOffset = args[1].asLong();
         if (!args[0].is(ARRAY)) {
             JavaObject target = args[0].asObject();
-            FieldNode targetField;
-            JavaClass clazz = target.getJavaClass();
-            if (clazz == context.getVM().getSystemDictionary().getJavaLangClass()) {
-                targetField = target.getFieldByOffset(objectFieldOffset);
-                if (Modifier.isStatic(targetField.access)) {
-                    clazz = java_lang_Class.getJavaClass(target);
-                }
-            } else {
-                targetField = clazz.getFieldByOffset(objectFieldOffset);
-            }
-            target.setField(targetField.name, targetField.desc, args[2]);
+            int slot = slotOf(target, objectFieldOffset, null);
+            target.setFieldBySlot(slot, args[2]);
             return;
         } else if (args[0].is(ARRAY)) {
             JavaArray arr = (JavaArray) args[0].get();
@@ -114,59 +119,22 @@ public class sun_misc_Unsafe {
     private static JavaWrapper doGetInt(MethodExecution context, JavaWrapper inst, JavaWrapper[] args, boolean isVolatile) {
         long objectFieldOffset = args[1].asLong();
         JavaObject target = args[0].asObject();
-        FieldNode targetField;
-        JavaClass clazz = target.getJavaClass();
-        if (clazz == context.getVM().getSystemDictionary().getJavaLangClass()) {
-            targetField = target.getFieldByOffset(objectFieldOffset);
-            if (Modifier.isStatic(targetField.access)) {
-                clazz = java_lang_Class.getJavaClass(target);
-            }
-        } else {
-            targetField = clazz.getFieldByOffset(objectFieldOffset);
-        }
-//        System.out.println("Getting int " + target + " " + clazz.getClassNode().name + " " + targetField.name + " " + targetField.desc);
-        if (!targetField.desc.equals("I")) {
-            throw new ExecutionException("weird, field type wasn't int: " + clazz.getClassNode().name + " " + targetField.name + targetField.desc);
-        }
-        return target.getField(targetField.name, targetField.desc);
+        int slot = slotOf(target, objectFieldOffset, "I");
+        return target.getFieldBySlot(slot);
     }
 
     private static void doSetInt(MethodExecution context, JavaWrapper inst, JavaWrapper[] args, boolean isVolatile) {
         long objectFieldOffset = args[1].asLong();
         JavaObject target = args[0].asObject();
-        FieldNode targetField;
-        JavaClass clazz = target.getJavaClass();
-        if (clazz == context.getVM().getSystemDictionary().getJavaLangClass()) {
-            targetField = target.getFieldByOffset(objectFieldOffset);
-            if (Modifier.isStatic(targetField.access)) {
-                clazz = java_lang_Class.getJavaClass(target);
-            }
-        } else {
-            targetField = clazz.getFieldByOffset(objectFieldOffset);
-        }
-        if (!targetField.desc.equals("I")) {
-            throw new ExecutionException("weird, field type wasn't int: " + clazz.getClassNode().name + " " + targetField.name + targetField.desc);
-        }
-        target.setField(targetField.name, targetField.desc, args[2]);
+        int slot = slotOf(target, objectFieldOffset, "I");
+        target.setFieldBySlot(slot, args[2]);
     }
 
     private static void doSetBoolean(MethodExecution context, JavaWrapper inst, JavaWrapper[] args, boolean isVolatile) {
         long objectFieldOffset = args[1].asLong();
         JavaObject target = args[0].asObject();
-        FieldNode targetField;
-        JavaClass clazz = target.getJavaClass();
-        if (clazz == context.getVM().getSystemDictionary().getJavaLangClass()) {
-            targetField = target.getFieldByOffset(objectFieldOffset);
-            if (Modifier.isStatic(targetField.access)) {
-                clazz = java_lang_Class.getJavaClass(target);
-            }
-        } else {
-            targetField = clazz.getFieldByOffset(objectFieldOffset);
-        }
-        if (!targetField.desc.equals("Z")) {
-            throw new ExecutionException("weird, field type wasn't boolean: " + clazz.getClassNode().name + " " + targetField.name + targetField.desc);
-        }
-        target.setField(targetField.name, targetField.desc, args[2]);
+        int slot = slotOf(target, objectFieldOffset, "Z");
+        target.setFieldBySlot(slot, args[2]);
     }
 
     public static void registerNatives(VirtualMachine vm) {
@@ -215,7 +183,7 @@ public class sun_misc_Unsafe {
                 JavaArray arr = (JavaArray) args[0].get();
                 int index = (int) ((objectFieldOffset - 16) / 4);
                 JavaWrapper actual = arr.get(index);
-                if ((actual.is(NULL) ? 0 : actual.asObject().getHashCode()) != (expected.is(NULL) ? 0 : expected.asObject().getHashCode())) {
+                if (actual.is(NULL) ? !expected.is(NULL) : actual.get() != expected.get()) {
                     return vm.FALSE;
                 } else {
                     arr.set(index, args[3]);
@@ -223,22 +191,12 @@ public class sun_misc_Unsafe {
                 }
             }
             JavaObject target = args[0].asObject();
-            FieldNode targetField;
-            JavaClass clazz = target.getJavaClass();
-            if (clazz == vm.getSystemDictionary().getJavaLangClass()) {
-                targetField = target.getFieldByOffset(objectFieldOffset);
-                if (Modifier.isStatic(targetField.access)) {
-                    clazz = java_lang_Class.getJavaClass(target);
-                }
-            } else {
-                targetField = clazz.getFieldByOffset(objectFieldOffset);
-            }
-            JavaWrapper actual = target.getField(targetField.name, targetField.desc);
+            int slot = slotOf(target, objectFieldOffset, null);
+            JavaWrapper actual = target.getFieldBySlot(slot);
             if (actual != expected) {
-//                System.out.println("CAS failed: " + expected + " " + actual + " " + targetField.name + " " + targetField.desc + " " + target + " " + clazz.getClassNode().name);
                 return vm.FALSE;
             } else {
-                target.setField(targetField.name, targetField.desc, args[3]);
+                target.setFieldBySlot(slot, args[3]);
                 return vm.TRUE;
             }
         }));
@@ -246,25 +204,12 @@ public class sun_misc_Unsafe {
             int expected = args[2].asInt();
             long objectFieldOffset = args[1].asLong();
             JavaObject target = args[0].asObject();
-            FieldNode targetField;
-            JavaClass clazz = target.getJavaClass();
-            if (clazz == vm.getSystemDictionary().getJavaLangClass()) {
-                targetField = target.getFieldByOffset(objectFieldOffset);
-                if (Modifier.isStatic(targetField.access)) {
-                    clazz = java_lang_Class.getJavaClass(target);
-                }
-            } else {
-                targetField = clazz.getFieldByOffset(objectFieldOffset);
-            }
-            if (!targetField.desc.equals("I")) {
-                throw new ExecutionException("weird, field type wasn't int: " + clazz.getClassNode().name + " " + targetField.name + targetField.desc);
-            }
-
-            int actual = target.getField(targetField.name, targetField.desc).asInt();
+            int slot = slotOf(target, objectFieldOffset, "I");
+            int actual = target.getFieldBySlot(slot).asInt();
             if (actual != expected) {
                 return vm.FALSE;
             } else {
-                target.setField(targetField.name, targetField.desc, args[3]);
+                target.setFieldBySlot(slot, args[3]);
                 return vm.TRUE;
             }
         }));
@@ -272,25 +217,12 @@ public class sun_misc_Unsafe {
             long expected = args[2].asLong();
             long objectFieldOffset = args[1].asLong();
             JavaObject target = args[0].asObject();
-            FieldNode targetField;
-            JavaClass clazz = target.getJavaClass();
-            if (clazz == vm.getSystemDictionary().getJavaLangClass()) {
-                targetField = target.getFieldByOffset(objectFieldOffset);
-                if (Modifier.isStatic(targetField.access)) {
-                    clazz = java_lang_Class.getJavaClass(target);
-                }
-            } else {
-                targetField = clazz.getFieldByOffset(objectFieldOffset);
-            }
-            if (!targetField.desc.equals("J")) {
-                throw new ExecutionException("weird, field type wasn't long: " + clazz.getClassNode().name + " " + targetField.name + targetField.desc);
-            }
-
-            long actual = target.getField(targetField.name, targetField.desc).asLong();
+            int slot = slotOf(target, objectFieldOffset, "J");
+            long actual = target.getFieldBySlot(slot).asLong();
             if (actual != expected) {
                 return vm.FALSE;
             } else {
-                target.setField(targetField.name, targetField.desc, args[3]);
+                target.setFieldBySlot(slot, args[3]);
                 return vm.TRUE;
             }
         }));
@@ -22,6 +22,7 @@ import com.javadeobfuscator.javavm.Effect;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.hooks.HookGenerator;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 
@@ -29,11 +30,11 @@ public class sun_reflect_ConstantPool {
     private static final String THIS = "sun/reflect/ConstantPool";
 
     public static JavaClass getJavaClass(JavaWrapper constantPool) {
-        return constantPool.getMetadata("oop");
+        return constantPool.getMetadata(VMSymbols.METADATA_OOP);
     }
 
     public static void setJavaClass(JavaWrapper constantPool, JavaClass javaClass) {
-        constantPool.setMetadata("oop", javaClass);
+        constantPool.setMetadata(VMSymbols.METADATA_OOP, javaClass);
     }
 
     public static void registerNatives(VirtualMachine vm) {
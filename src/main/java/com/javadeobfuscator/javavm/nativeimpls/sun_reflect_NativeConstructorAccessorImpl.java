@@ -41,7 +41,7 @@ public class sun_reflect_NativeConstructorAccessorImpl {
             JavaClass declaringClass = java_lang_Class.getJavaClass(constructor.getField("clazz", "Ljava/lang/Class;"));
             MethodNode constructorNode = declaringClass.getClassNode().methods.get(constructor.getField("slot", "I").asInt());
 
-            Type[] types = Type.getArgumentTypes(constructorNode.desc);
+            Type[] types = vm.getSymbolTable().method(constructorNode.desc).getArgumentTypes();
             JavaWrapper[] ctorargs = new JavaWrapper[types.length];
 
             if (!arg1.is(JavaValueType.NULL)) {
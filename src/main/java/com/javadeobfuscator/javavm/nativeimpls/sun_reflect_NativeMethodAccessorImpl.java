@@ -43,7 +43,7 @@ public class sun_reflect_NativeMethodAccessorImpl {
             ClassNode classNode = clazz.getClassNode();
             MethodNode methodNode = clazz.getClassNode().methods.get(method.getField("slot", "I").asInt());
 
-            Type[] types = Type.getArgumentTypes(methodNode.desc);
+            Type[] types = vm.getSymbolTable().method(methodNode.desc).getArgumentTypes();
             JavaWrapper[] ctorargs = new JavaWrapper[types.length];
 
             if (!args[2].is(JavaValueType.NULL)) {
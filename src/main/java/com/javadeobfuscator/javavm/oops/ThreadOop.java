@@ -24,11 +24,11 @@ import com.javadeobfuscator.javavm.values.JavaWrapper;
 
 import java.lang.reflect.Method;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ThreadOop extends Oop {
-    private static final Map<Thread, ThreadOop> THREAD_TO_OOP_MAP = new HashMap<>();
+    private static final Map<Thread, ThreadOop> THREAD_TO_OOP_MAP = new ConcurrentHashMap<>();
 
     private final boolean isMainThread;
     private final Thread backingThread;
@@ -58,6 +58,21 @@ public class ThreadOop extends Oop {
         return forThread(Thread.currentThread()) == null ? new ThreadOop(null, true) : forThread(Thread.currentThread());
     }
 
+    /*
+     * Makes the given host thread act as this guest thread, returning what it was bound to before
+     */
+    public ThreadOop bind(Thread thread) {
+        return THREAD_TO_OOP_MAP.put(thread, this);
+    }
+
+    public static void unbind(Thread thread, ThreadOop previous) {
+        if (previous != null) {
+            THREAD_TO_OOP_MAP.put(thread, previous);
+        } else {
+            THREAD_TO_OOP_MAP.remove(thread);
+        }
+    }
+
     public JavaWrapper getThread() {
         return this.thread;
     }
@@ -143,10 +158,10 @@ public class ThreadOop extends Oop {
                      * {@code notifyAll} on {@code Thread} instances.
                  */
                 try {
-                    thread.get().getLock().lock();
+                    vm.enterMonitor(thread.get().getLock());
                     vm.execute(vm.getSystemDictionary().getJavaLangObject().getClassNode(), ASMHelper.findMethod(vm.getSystemDictionary().getJavaLangObject().getClassNode(), "notifyAll", "()V"), thread, Collections.emptyList(), new ExecutionOptions());
                 } finally {
-                    thread.get().getLock().unlock();
+                    vm.exitMonitor(thread.get().getLock());
                 }
             }
         }
@@ -23,6 +23,10 @@ import com.javadeobfuscator.javavm.values.JavaArray;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
 
+/**
+ * Converts between host and guest arrays. Both directions copy, so neither side sees the other's writes afterwards. Use
+ * {@link JavaArray#hostArray()} to work on a guest array's elements in place.
+ */
 public class ArrayConversionHelper {
     public static JavaWrapper convert(VirtualMachine vm, Object array) {
         if (array == null) {
@@ -55,88 +59,56 @@ public class ArrayConversionHelper {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = vm.newBoolean(array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[Z"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[Z"), array.clone()));
     }
 
     public static JavaWrapper convertByteArray(VirtualMachine vm, byte[] array) {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = vm.newByte(array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[B"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[B"), array.clone()));
     }
 
     public static JavaWrapper convertCharArray(VirtualMachine vm, char[] array) {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = vm.newChar(array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[C"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[C"), array.clone()));
     }
 
     public static JavaWrapper convertShortArray(VirtualMachine vm, short[] array) {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = vm.newShort(array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[S"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[S"), array.clone()));
     }
 
     public static JavaWrapper convertIntArray(VirtualMachine vm, int[] array) {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = JavaWrapper.createInteger(vm, array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[I"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[I"), array.clone()));
     }
 
     public static JavaWrapper convertLongArray(VirtualMachine vm, long[] array) {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = vm.newLong(array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[J"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[J"), array.clone()));
     }
 
     public static JavaWrapper convertFloatArray(VirtualMachine vm, float[] array) {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = JavaWrapper.createFloat(vm, array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[F"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[F"), array.clone()));
     }
 
     public static JavaWrapper convertDoubleArray(VirtualMachine vm, double[] array) {
         if (array == null) {
             return vm.getNull();
         }
-        JavaWrapper[] resultingArray = new JavaWrapper[array.length];
-        for (int i = 0; i < array.length; i++) {
-            resultingArray[i] = JavaWrapper.createDouble(vm, array[i]);
-        }
-        return JavaWrapper.createArray(JavaClass.forName(vm, "[D"), resultingArray);
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[D"), array.clone()));
     }
 
     public static JavaWrapper convertObjectArray(VirtualMachine vm, Object[] array) {
@@ -150,7 +122,20 @@ public class ArrayConversionHelper {
         return JavaWrapper.createArray(JavaClass.forName(vm, Type.getType(array.getClass())), resultingArray);
     }
 
+    /*
+     * The elements of a byte array, without copying them while they're unboxed. Only for reading, writes may or may not
+     * reach the guest array
+     */
+    public static byte[] viewByteArray(JavaArray array) {
+        Object host = array.readHostArray();
+        return host instanceof byte[] ? (byte[]) host : convertByteArray(array);
+    }
+
     public static byte[] convertByteArray(JavaArray array) {
+        Object host = array.readHostArray();
+        if (host instanceof byte[]) {
+            return ((byte[]) host).clone();
+        }
         byte[] resultingArray = new byte[array.length()];
         for (int i = 0; i < array.length(); i++) {
             resultingArray[i] = array.get(i).asByte();
@@ -159,6 +144,10 @@ public class ArrayConversionHelper {
     }
 
     public static char[] convertCharArray(JavaArray array) {
+        Object host = array.readHostArray();
+        if (host instanceof char[]) {
+            return ((char[]) host).clone();
+        }
         char[] resultingArray = new char[array.length()];
         for (int i = 0; i < array.length(); i++) {
             resultingArray[i] = array.get(i).asChar();
@@ -167,6 +156,10 @@ public class ArrayConversionHelper {
     }
 
     public static int[] convertIntArray(JavaArray array) {
+        Object host = array.readHostArray();
+        if (host instanceof int[]) {
+            return ((int[]) host).clone();
+        }
         int[] resultingArray = new int[array.length()];
         for (int i = 0; i < array.length(); i++) {
             resultingArray[i] = array.get(i).asInt();
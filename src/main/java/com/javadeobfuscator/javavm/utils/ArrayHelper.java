@@ -41,6 +41,7 @@ package com.javadeobfuscator.javavm.utils;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import com.javadeobfuscator.javavm.values.JavaArray;
 import com.javadeobfuscator.javavm.values.JavaWrapper;
 import org.objectweb.asm.Type;
 
@@ -82,25 +83,24 @@ import org.objectweb.asm.Type;
  */
 public final class ArrayHelper {
 
-    // todo just create it
     public static JavaWrapper newInstance(VirtualMachine vm, Type type, int length) {
         switch (type.getSort()) {
             case Type.BOOLEAN:
-                return ArrayConversionHelper.convertBooleanArray(vm, new boolean[length]);
+                return newPrimitiveArray(vm, type, new boolean[length]);
             case Type.BYTE:
-                return ArrayConversionHelper.convertByteArray(vm, new byte[length]);
+                return newPrimitiveArray(vm, type, new byte[length]);
             case Type.CHAR:
-                return ArrayConversionHelper.convertCharArray(vm, new char[length]);
+                return newPrimitiveArray(vm, type, new char[length]);
             case Type.SHORT:
-                return ArrayConversionHelper.convertShortArray(vm, new short[length]);
+                return newPrimitiveArray(vm, type, new short[length]);
             case Type.INT:
-                return ArrayConversionHelper.convertIntArray(vm, new int[length]);
+                return newPrimitiveArray(vm, type, new int[length]);
             case Type.LONG:
-                return ArrayConversionHelper.convertLongArray(vm, new long[length]);
+                return newPrimitiveArray(vm, type, new long[length]);
             case Type.FLOAT:
-                return ArrayConversionHelper.convertFloatArray(vm, new float[length]);
+                return newPrimitiveArray(vm, type, new float[length]);
             case Type.DOUBLE:
-                return ArrayConversionHelper.convertDoubleArray(vm, new double[length]);
+                return newPrimitiveArray(vm, type, new double[length]);
             case Type.OBJECT:
             case Type.ARRAY:
                 return JavaWrapper.createArray(JavaClass.forName(vm, "[" + type.getDescriptor()), new JavaWrapper[length]);
@@ -109,12 +109,17 @@ public final class ArrayHelper {
         throw new ExecutionException("Unexpected " + type);
     }
 
+    private static JavaWrapper newPrimitiveArray(VirtualMachine vm, Type type, Object hostArray) {
+        return JavaWrapper.wrap(new JavaArray(JavaClass.forName(vm, "[" + type.getDescriptor()), hostArray));
+    }
+
     private static JavaWrapper createMultiArray(VirtualMachine vm, Type type, int[] dimensions, int index) {
-        JavaWrapper retval = newInstance(vm, Type.getType(type.getDescriptor().substring(1)), dimensions[index]);
+        Type componentType = TypeHelper.getSymbol(vm, type.getDescriptor()).getComponentType();
+        JavaWrapper retval = newInstance(vm, componentType, dimensions[index]);
         if (index == dimensions.length - 1)
             return retval;
         for (int i = 0; i < dimensions[index]; i++) {
-            retval.asArray().set(i, createMultiArray(vm, Type.getType(type.getDescriptor().substring(1)), dimensions, index + 1));
+            retval.asArray().set(i, createMultiArray(vm, componentType, dimensions, index + 1));
         }
         return retval;
     }
@@ -122,6 +127,8 @@ public final class ArrayHelper {
     public static JavaWrapper newInstance(VirtualMachine vm, Type componentType, int[] dimensions) {
         if (dimensions.length <= 0)
             throw new IllegalArgumentException("Empty dimensions array.");
+        if (dimensions.length > TypeHelper.getSymbol(vm, componentType.getDescriptor()).getDimensions())
+            throw new IllegalArgumentException("More dimensions than " + componentType.getDescriptor());
         return createMultiArray(vm, componentType, dimensions, 0);
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.javadeobfuscator.javavm.utils;
 
 import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.internals.SymbolTable;
 import org.objectweb.asm.Type;
 
 import java.util.HashSet;
@@ -64,12 +65,27 @@ public class TypeHelper {
                 return null;
             }
         }
-        Type type = getTypeByInternalName(virtualMachine, name);
-        if (type == null) {
+        return getSymbol(virtualMachine, name).getType();
+    }
+
+    /*
+     * The interned form of a type name or descriptor that isn't a primitive name, see parseType
+     */
+    public static SymbolTable.TypeSymbol getSymbol(VirtualMachine virtualMachine, String name) {
+        return virtualMachine.getSymbolTable().type(name, TypeHelper::parseNonPrimitiveType);
+    }
+
+    private static Type parseNonPrimitiveType(String name) {
+        if (name.charAt(0) == '[') {
             return getTypeByDescriptor(name);
-        } else {
-            return type;
         }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '[' || c == ';' || c == '.') {
+                return getTypeByDescriptor(name);
+            }
+        }
+        return Type.getObjectType(name);
     }
 
     public static String getInternalName(Type type) {
@@ -20,21 +20,16 @@ import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
-import java.util.EnumSet;
-
 public class JavaAddress extends JavaValue {
-    private static final EnumSet<JavaValueType> TYPES = EnumSet.of(JavaValueType.ADDRESS);
+    private static final int TYPES = JavaValueType.ADDRESS.mask();
     private final AbstractInsnNode value;
 
 
     public JavaAddress(AbstractInsnNode value) {
+        super(TYPES);
         this.value = value;
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return TYPES.contains(type);
-    }
 
     @Override
     public JavaClass getJavaClass() {
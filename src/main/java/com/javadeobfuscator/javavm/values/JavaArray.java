@@ -16,23 +16,70 @@
 
 package com.javadeobfuscator.javavm.values;
 
+import com.javadeobfuscator.javavm.VirtualMachine;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
+import org.objectweb.asm.Type;
 
+import java.lang.reflect.Array;
+
+/**
+ * A guest array. Arrays of a primitive type keep their elements unboxed in a host array of the same type, which
+ * natives can read and write directly through {@link #hostArray()}. Storing an element that isn't a known primitive
+ * into one, an unknown value for example, moves it over to wrapped storage for good.
+ * <p>
+ * The host array may be shared with other guest arrays or with the VM, like the contents of strings. A shared array is
+ * copied before this array is first written to.
+ */
 public class JavaArray extends JavaValue {
+    private static final int TYPES = JavaValueType.mask(JavaValueType.ARRAY, JavaValueType.OBJECT);
 
     private JavaClass originalClazz;
     private JavaClass clazz;
+    /*
+     * Exactly one of these is set
+     */
     private JavaWrapper[] values;
+    private Object primitives;
+    /*
+     * The sort of the component type while the elements are unboxed
+     */
+    private int sort;
+    /*
+     * Checked without the lock before every write, so a copy made on another thread is seen by the next write here.
+     * Cleared under the lock, by unshare
+     */
+    private volatile boolean shared;
 
     public JavaArray(JavaClass clazz, JavaWrapper[] values) {
+        super(TYPES);
         this.originalClazz = clazz;
         this.clazz = clazz;
         this.values = values;
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.ARRAY || type == JavaValueType.OBJECT;
+    /*
+     * Wraps the host array without copying it, its type has to match the component type of the class
+     */
+    public JavaArray(JavaClass clazz, Object hostArray) {
+        super(TYPES);
+        Type componentType = Type.getType(clazz.internalGetType().getDescriptor().substring(1));
+        if (hostArray.getClass() != hostArrayType(componentType.getSort())) {
+            throw new ExecutionException("Cannot back " + clazz.internalGetType() + " with " + hostArray.getClass().getName());
+        }
+        this.originalClazz = clazz;
+        this.clazz = clazz;
+        this.primitives = hostArray;
+        this.sort = componentType.getSort();
+    }
+
+    /*
+     * Wraps a host array that nobody writes to, it's copied before the guest does
+     */
+    public static JavaArray share(JavaClass clazz, Object hostArray) {
+        JavaArray result = new JavaArray(clazz, hostArray);
+        result.shared = true;
+        return result;
     }
 
     @Override
@@ -51,24 +98,322 @@ public class JavaArray extends JavaValue {
     }
 
     public void set(int index, JavaWrapper copy) {
+        if (primitives != null) {
+            if (copy.isKnown(JavaValueType.PRIMITIVE)) {
+                store(index, copy);
+                return;
+            }
+            box();
+        }
         values[index] = copy;
     }
 
     public JavaWrapper get(int index) {
+        if (primitives != null) {
+            return load(index);
+        }
         JavaWrapper val = values[index];
         return val == null ? JavaValue.forPrimitive(clazz.getVM(), clazz.internalGetType()) : val;
     }
 
+    /*
+     * The typed accessors below work on any array, but only skip boxing while the elements are unboxed
+     */
+    public int getInt(int index) {
+        switch (primitives == null ? Type.OBJECT : sort) {
+            case Type.INT:
+                return ((int[]) primitives)[index];
+            case Type.BYTE:
+                return ((byte[]) primitives)[index];
+            case Type.CHAR:
+                return ((char[]) primitives)[index];
+            case Type.SHORT:
+                return ((short[]) primitives)[index];
+            case Type.BOOLEAN:
+                return ((boolean[]) primitives)[index] ? 1 : 0;
+            default:
+                return get(index).asInt();
+        }
+    }
+
+    /*
+     * Narrows the value to the component type, the way the array store instructions do
+     */
+    public void setInt(int index, int value) {
+        if (shared) {
+            unshare();
+        }
+        switch (primitives == null ? Type.OBJECT : sort) {
+            case Type.INT:
+                ((int[]) primitives)[index] = value;
+                break;
+            case Type.BYTE:
+                ((byte[]) primitives)[index] = (byte) value;
+                break;
+            case Type.CHAR:
+                ((char[]) primitives)[index] = (char) value;
+                break;
+            case Type.SHORT:
+                ((short[]) primitives)[index] = (short) value;
+                break;
+            case Type.BOOLEAN:
+                ((boolean[]) primitives)[index] = (value & 1) != 0;
+                break;
+            default:
+                set(index, narrow(clazz.getVM(), componentSort(), value));
+                break;
+        }
+    }
+
+    public long getLong(int index) {
+        return primitives != null && sort == Type.LONG ? ((long[]) primitives)[index] : get(index).asLong();
+    }
+
+    public void setLong(int index, long value) {
+        if (primitives != null && sort == Type.LONG) {
+            if (shared) {
+                unshare();
+            }
+            ((long[]) primitives)[index] = value;
+        } else {
+            set(index, clazz.getVM().newLong(value));
+        }
+    }
+
+    public float getFloat(int index) {
+        return primitives != null && sort == Type.FLOAT ? ((float[]) primitives)[index] : get(index).asFloat();
+    }
+
+    public void setFloat(int index, float value) {
+        if (primitives != null && sort == Type.FLOAT) {
+            if (shared) {
+                unshare();
+            }
+            ((float[]) primitives)[index] = value;
+        } else {
+            set(index, clazz.getVM().newFloat(value));
+        }
+    }
+
+    public double getDouble(int index) {
+        return primitives != null && sort == Type.DOUBLE ? ((double[]) primitives)[index] : get(index).asDouble();
+    }
+
+    public void setDouble(int index, double value) {
+        if (primitives != null && sort == Type.DOUBLE) {
+            if (shared) {
+                unshare();
+            }
+            ((double[]) primitives)[index] = value;
+        } else {
+            set(index, clazz.getVM().newDouble(value));
+        }
+    }
+
     public int length() {
-        return values.length;
+        return primitives != null ? Array.getLength(primitives) : values.length;
     }
 
+    /*
+     * The host array holding the elements while they're unboxed, otherwise null. Writes to it are writes to this array
+     */
+    public Object hostArray() {
+        if (shared) {
+            unshare();
+        }
+        return primitives;
+    }
+
+    /*
+     * Like hostArray, but without copying a shared array first. Callers must not write to it, and should only read the
+     * field once, as another thread may box the elements in between
+     */
+    public Object readHostArray() {
+        return primitives;
+    }
+
+    /*
+     * Whether the host array is shared. Nothing writes to a shared host array, this array copies it first, so a host
+     * array read before this returned true can be kept without copying
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /*
+     * Whether every element is a known primitive, stored unboxed
+     */
+    public boolean isUnboxed() {
+        return primitives != null;
+    }
+
+    /*
+     * Boxes the elements of a primitive array. Prefer the typed accessors or hostArray
+     */
+    @Deprecated
     public JavaWrapper[] rawArray() {
+        box();
         return this.values;
     }
 
+    /*
+     * A new array of the same class holding the same elements
+     */
+    public synchronized JavaArray copy() {
+        JavaArray result;
+        if (primitives != null) {
+            // Both share the elements until either is written to
+            shared = true;
+            result = share(originalClazz, primitives);
+        } else {
+            result = new JavaArray(originalClazz, values.clone());
+        }
+        result.clazz = clazz;
+        return result;
+    }
+
+    /*
+     * Like System.arraycopy, the caller checks types and bounds
+     */
+    public static void copy(JavaArray src, int srcPos, JavaArray dest, int destPos, int length) {
+        if (src.primitives != null && dest.primitives != null && src.primitives.getClass() == dest.primitives.getClass()) {
+            System.arraycopy(src.primitives, srcPos, dest.hostArray(), destPos, length);
+        } else if (src.primitives == null && dest.primitives == null) {
+            System.arraycopy(src.values, srcPos, dest.values, destPos, length);
+        } else {
+            JavaWrapper[] tmp = new JavaWrapper[length];
+            for (int i = 0; i < length; i++) {
+                tmp[i] = src.get(srcPos + i);
+            }
+            for (int i = 0; i < length; i++) {
+                dest.set(destPos + i, tmp[i]);
+            }
+        }
+    }
+
     public JavaValue checkcast(JavaClass other) {
         this.clazz = other;
         return this;
     }
+
+    private int componentSort() {
+        return Type.getType(originalClazz.internalGetType().getDescriptor().substring(1)).getSort();
+    }
+
+    private JavaWrapper load(int index) {
+        VirtualMachine vm = clazz.getVM();
+        switch (sort) {
+            case Type.BOOLEAN:
+                return vm.newBoolean(((boolean[]) primitives)[index]);
+            case Type.BYTE:
+                return vm.newByte(((byte[]) primitives)[index]);
+            case Type.CHAR:
+                return vm.newChar(((char[]) primitives)[index]);
+            case Type.SHORT:
+                return vm.newShort(((short[]) primitives)[index]);
+            case Type.INT:
+                return vm.newInt(((int[]) primitives)[index]);
+            case Type.LONG:
+                return vm.newLong(((long[]) primitives)[index]);
+            case Type.FLOAT:
+                return vm.newFloat(((float[]) primitives)[index]);
+            case Type.DOUBLE:
+                return vm.newDouble(((double[]) primitives)[index]);
+            default:
+                throw new ExecutionException("Unexpected sort " + sort);
+        }
+    }
+
+    private void store(int index, JavaWrapper value) {
+        if (shared) {
+            unshare();
+        }
+        switch (sort) {
+            case Type.LONG:
+                ((long[]) primitives)[index] = value.asLong();
+                break;
+            case Type.FLOAT:
+                ((float[]) primitives)[index] = value.asFloat();
+                break;
+            case Type.DOUBLE:
+                ((double[]) primitives)[index] = value.asDouble();
+                break;
+            default:
+                setInt(index, value.asInt());
+                break;
+        }
+    }
+
+    /*
+     * Moves the elements over to wrapped storage, once something that isn't a known primitive is stored
+     */
+    private synchronized void box() {
+        if (primitives == null) {
+            return;
+        }
+        JavaWrapper[] boxed = new JavaWrapper[length()];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = load(i);
+        }
+        values = boxed;
+        primitives = null;
+    }
+
+    /*
+     * Two writers may both have seen the array shared, only the first copies it
+     */
+    private synchronized void unshare() {
+        if (!shared) {
+            return;
+        }
+        if (primitives != null) {
+            primitives = copyOf(primitives);
+        }
+        shared = false;
+    }
+
+    private static JavaWrapper narrow(VirtualMachine vm, int sort, int value) {
+        switch (sort) {
+            case Type.BOOLEAN:
+                return vm.newBoolean((value & 1) != 0);
+            case Type.BYTE:
+                return vm.newByte((byte) value);
+            case Type.CHAR:
+                return vm.newChar((char) value);
+            case Type.SHORT:
+                return vm.newShort((short) value);
+            default:
+                return vm.newInt(value);
+        }
+    }
+
+    private static Object copyOf(Object hostArray) {
+        int length = Array.getLength(hostArray);
+        Object result = Array.newInstance(hostArray.getClass().getComponentType(), length);
+        System.arraycopy(hostArray, 0, result, 0, length);
+        return result;
+    }
+
+    private static Class<?> hostArrayType(int sort) {
+        switch (sort) {
+            case Type.BOOLEAN:
+                return boolean[].class;
+            case Type.BYTE:
+                return byte[].class;
+            case Type.CHAR:
+                return char[].class;
+            case Type.SHORT:
+                return short[].class;
+            case Type.INT:
+                return int[].class;
+            case Type.LONG:
+                return long[].class;
+            case Type.FLOAT:
+                return float[].class;
+            case Type.DOUBLE:
+                return double[].class;
+            default:
+                return null;
+        }
+    }
 }
@@ -21,9 +21,10 @@ import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import org.objectweb.asm.Type;
 
 public class JavaNull extends JavaValue {
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.NULL || type == JavaValueType.OBJECT || type == JavaValueType.ARRAY;
+    private static final int TYPES = JavaValueType.mask(JavaValueType.NULL, JavaValueType.OBJECT, JavaValueType.ARRAY);
+
+    public JavaNull() {
+        super(TYPES);
     }
 
     @Override
@@ -16,65 +16,104 @@
 
 package com.javadeobfuscator.javavm.values;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.FieldLayout;
+import com.javadeobfuscator.javavm.internals.ResolvedField;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.nativeimpls.java_lang_Class;
 import com.javadeobfuscator.javavm.utils.ASMHelper;
-import com.javadeobfuscator.javavm.utils.NameHelper;
 import com.javadeobfuscator.javavm.utils.TypeHelper;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class JavaObject extends JavaValue {
     public static final String CLASS_OBJ_METADATA = "class";
     public static final String FIELD_OBJ_METADATA = "field";
-    public static final String VMTARGET = "vmtarget";
-    public static final String VMINDEX = "vmindex";
-    public Map<String, Object> metadata = new HashMap<>();
-    private int hashcode;
+    public static final String VMTARGET = VMSymbols.METADATA_VMTARGET;
+    public static final String VMINDEX = VMSymbols.METADATA_VMINDEX;
+    private static final AtomicIntegerFieldUpdater<JavaObject> HASHCODE = AtomicIntegerFieldUpdater.newUpdater(JavaObject.class, "hashcode");
+
+    /*
+     * The identity hash, 0 until something asks for it
+     */
+    private volatile int hashcode;
     private JavaClass originalClass;
     private JavaClass _class;
     private String _bytecodeType;
-    private Map<String, JavaWrapper> fields = new HashMap<>();
-
-    private final BiMap<Long, FieldNode> classOffsets = HashBiMap.create();
+    /*
+     * One slot per field of the class, see FieldLayout. Anything stored under a field the layout doesn't have goes to
+     * the overflow map, which is only created if that happens
+     */
+    private FieldLayout layout;
+    private JavaWrapper[] slots;
+    private Map<String, JavaWrapper> overflow;
 
     public JavaObject(JavaClass clazz) {
         this(clazz, clazz.internalGetType().getInternalName());
     }
 
     public JavaObject(JavaClass clazz, String originalType) {
+        super(JavaValueType.OBJECT.mask());
         if (clazz == null) {
             throw new ExecutionException("Null clazz: " + originalType);
         }
         this._class = clazz;
         this.originalClass = clazz;
         this._bytecodeType = originalType;
-        this.hashcode = System.identityHashCode(this);
+        this.layout = clazz.getFieldLayout();
+        this.slots = layout.newSlots(clazz.getVM());
+    }
+
+    private JavaObject(JavaObject original) {
+        super(JavaValueType.OBJECT.mask());
+        this._class = original._class;
+        this.originalClass = original.originalClass;
+        this._bytecodeType = original._bytecodeType;
+        this.layout = original.layout;
+        this.slots = original.slots.clone();
+        if (original.overflow != null) {
+            this.overflow = new HashMap<>(original.overflow);
+        }
     }
 
     // bleh
     @Deprecated
     public void doSpecialInitializationForClass() {
         if (getJavaClass() == getJavaClass().getVM().getSystemDictionary().getJavaLangClass()) {
-            // this is an instance of java/lang/Class, populate special offsets
-            classOffsets.putAll(getJavaClass().getFieldOffsets());
-            long nextSlot = getJavaClass().getNextSlot();
+            // this is an instance of java/lang/Class, the statics of the class it mirrors get slots after its own fields
             ClassNode classNode = java_lang_Class.getJavaClass(this).getClassNode();
             if (classNode == null) {
                 throw new ExecutionException("null classnode for " + java_lang_Class.getJavaClass(this));
             }
+            List<FieldNode> statics = new ArrayList<>();
             for (FieldNode fieldNode : classNode.fields) {
                 if (Modifier.isStatic(fieldNode.access)) {
-                    classOffsets.put(nextSlot++, fieldNode);
+                    statics.add(fieldNode);
+                }
+            }
+            FieldLayout extended = layout.extend(statics);
+            JavaWrapper[] extendedSlots = extended.newSlots(getJavaClass().getVM());
+            System.arraycopy(slots, 0, extendedSlots, 0, slots.length);
+            layout = extended;
+            slots = extendedSlots;
+            if (overflow != null) {
+                for (Map.Entry<String, JavaWrapper> entry : new ArrayList<>(overflow.entrySet())) {
+                    int slot = layout.slotOf(entry.getKey());
+                    if (slot >= 0) {
+                        slots[slot] = entry.getValue();
+                        overflow.remove(entry.getKey());
+                    }
                 }
             }
         }
@@ -82,30 +121,105 @@ public class JavaObject extends JavaValue {
 
     @Deprecated
     public FieldNode getFieldByOffset(long offset) {
-        return classOffsets.get(offset);
+        return layout.fieldAt((int) offset);
     }
 
     @Deprecated
     public long getOffsetByField(FieldNode field) {
-        return classOffsets.inverse().get(field);
+        int slot = layout.slotOf(field);
+        if (slot < 0) {
+            throw new ExecutionException("No slot for " + field.name + " " + field.desc);
+        }
+        return slot;
     }
 
+    public FieldLayout getLayout() {
+        return layout;
+    }
 
     public JavaWrapper getField(String name, String type) {
-        JavaWrapper result = fields.get(NameHelper.nameAndType(name, type));
-        if (result == null) {
-            return JavaValue.forPrimitive(_class.getVM(), TypeHelper.getTypeByDescriptor(type));
+        int slot = layout.slotOf(name, type);
+        if (slot >= 0) {
+            return slots[slot];
         }
-        return result;
+        return getOverflowField(_class.getVM().getSymbolTable().fieldKey(name, type), type);
     }
 
     public void setField(String name, String type, JavaWrapper wrapper) {
-        fields.put(NameHelper.nameAndType(name, type), wrapper);
+        int slot = layout.slotOf(name, type);
+        if (slot >= 0) {
+            slots[slot] = wrapper;
+        } else {
+            setOverflowField(_class.getVM().getSymbolTable().fieldKey(name, type), wrapper);
+        }
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.OBJECT;
+    /*
+     * For callers that have already computed the key with NameHelper.nameAndType
+     */
+    public JavaWrapper getFieldByKey(String key, String type) {
+        int slot = layout.slotOf(key);
+        if (slot >= 0) {
+            return slots[slot];
+        }
+        return getOverflowField(key, type);
+    }
+
+    public void setFieldByKey(String key, JavaWrapper wrapper) {
+        int slot = layout.slotOf(key);
+        if (slot >= 0) {
+            slots[slot] = wrapper;
+        } else {
+            setOverflowField(key, wrapper);
+        }
+    }
+
+    /*
+     * The slot a GETFIELD resolved to, unless this object's class doesn't have that field
+     */
+    public JavaWrapper getField(ResolvedField field) {
+        int slot = field.getSlot();
+        if (layout.holds(slot, field.getFieldNode())) {
+            return slots[slot];
+        }
+        return getFieldByKey(field.getKey(), field.getDesc());
+    }
+
+    public void setField(ResolvedField field, JavaWrapper wrapper) {
+        int slot = field.getSlot();
+        if (layout.holds(slot, field.getFieldNode())) {
+            slots[slot] = wrapper;
+        } else {
+            setFieldByKey(field.getKey(), wrapper);
+        }
+    }
+
+    /*
+     * Slots are the offsets sun.misc.Unsafe hands out
+     */
+    public JavaWrapper getFieldBySlot(int slot) {
+        layout.fieldAt(slot);
+        return slots[slot];
+    }
+
+    public void setFieldBySlot(int slot, JavaWrapper wrapper) {
+        layout.fieldAt(slot);
+        slots[slot] = wrapper;
+    }
+
+    private JavaWrapper getOverflowField(String key, String type) {
+        JavaWrapper result = overflow == null ? null : overflow.get(key);
+        if (result == null) {
+            return JavaValue.forPrimitive(_class.getVM(), TypeHelper.getTypeByDescriptor(type));
+        }
+        return result;
+    }
+
+    private void setOverflowField(String key, JavaWrapper wrapper) {
+        if (overflow == null) {
+            overflow = new HashMap<>();
+        }
+        overflow.put(key, wrapper);
     }
 
     public String type() {
@@ -139,15 +253,15 @@ public class JavaObject extends JavaValue {
                     if (getJavaClass().getClassNode().name.contains("java/lang/reflect/Field")) {
                         val = _class.getVM().internalExecute(now.getClassNode(), toString, JavaWrapper.wrap(this), null, null);
                     }
-                    return "JavaObject(type=" + _bytecodeType + ",id=" + hashcode + ",val=" + _class.getVM().convertJavaObjectToString(val) + ")";
+                    return "JavaObject(type=" + _bytecodeType + ",id=" + getHashCode() + ",val=" + _class.getVM().convertJavaObjectToString(val) + ")";
                 } finally {
                     VirtualMachine.DEBUG = oldDebug;
                 }
             } else {
-                return "JavaObject(type=" + _bytecodeType + ",id=" + hashcode + ",class=" + java_lang_Class.getJavaClass(this).getName() + ")";
+                return "JavaObject(type=" + _bytecodeType + ",id=" + getHashCode() + ",class=" + java_lang_Class.getJavaClass(this).getName() + ")";
             }
         } catch (Throwable t) {
-            return "JavaObject(type=" + _bytecodeType + ",id=" + hashcode + ",err=" + t.getMessage() + ")";
+            return "JavaObject(type=" + _bytecodeType + ",id=" + getHashCode() + ",err=" + t.getMessage() + ")";
         }
     }
 
@@ -175,10 +289,7 @@ public class JavaObject extends JavaValue {
     }
 
     public JavaObject vmClone() {
-        JavaObject clone = new JavaObject(_class, _bytecodeType);
-        clone.fields.putAll(fields);
-        clone.metadata.putAll(metadata);
-        return clone;
+        return new JavaObject(this);
     }
 
     @Override
@@ -187,7 +298,16 @@ public class JavaObject extends JavaValue {
     }
 
     public int getHashCode() {
-        return hashcode;
+        int result = hashcode;
+        if (result == 0) {
+            do {
+                result = ThreadLocalRandom.current().nextInt() & 0x7FFFFFFF;
+            } while (result == 0);
+            if (!HASHCODE.compareAndSet(this, 0, result)) {
+                result = hashcode;
+            }
+        }
+        return result;
     }
 
     @Override
@@ -19,16 +19,14 @@ package com.javadeobfuscator.javavm.values;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 
-import java.util.EnumSet;
-
 public class JavaTop extends JavaValue {
-    private static final EnumSet<JavaValueType> TYPES = EnumSet.of(JavaValueType.TOP);
+    private static final int TYPES = JavaValueType.TOP.mask();
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return TYPES.contains(type);
+    public JavaTop() {
+        super(TYPES);
     }
 
+
     public String toString() {
         return "JavaTop()";
     }
@@ -18,23 +18,18 @@ package com.javadeobfuscator.javavm.values;
 
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 
-import java.util.EnumSet;
-
 public class JavaUninitialized extends JavaValue {
-    private static final EnumSet<JavaValueType> TYPES = EnumSet.of(JavaValueType.UNINITIALIZED);
+    private static final int TYPES = JavaValueType.UNINITIALIZED.mask();
     private final JavaClass _class;
     private final String _bytecodeType;
     private JavaObject value;
     public JavaUninitialized(JavaClass clazz, String originalType) {
+        super(TYPES);
         this._class = clazz;
         this._bytecodeType = originalType;
         this.value = new JavaObject(clazz, originalType);
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return TYPES.contains(type);
-    }
 
     public JavaObject initializedValue() {
         return this.value;
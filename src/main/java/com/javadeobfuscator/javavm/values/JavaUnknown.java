@@ -16,11 +16,14 @@
 
 package com.javadeobfuscator.javavm.values;
 
+import com.javadeobfuscator.javavm.PathResult;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import org.objectweb.asm.Type;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Collectors;
 
 public class JavaUnknown extends JavaValue {
@@ -29,8 +32,10 @@ public class JavaUnknown extends JavaValue {
     public Type _desc;
     private JavaClass _class;
     private String _cause;
+    private List<PathResult> _paths = Collections.emptyList();
 
     public JavaUnknown(VirtualMachine vm, JavaClass type, String cause) {
+        super(typesOf(vm, type));
         this._class = type;
         this._cause = cause;
         this.vm = vm;
@@ -39,6 +44,7 @@ public class JavaUnknown extends JavaValue {
     }
 
     public JavaUnknown(VirtualMachine vm, JavaClass type, UnknownCause cause, JavaValue... sources) {
+        super(typesOf(vm, type));
         this._class = type;
         this._cause = cause.format(sources);
         this.vm = vm;
@@ -46,37 +52,36 @@ public class JavaUnknown extends JavaValue {
             throw new RuntimeException("creating javaunknown " + cause);
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.UNKNOWN || is0(type);
-    }
-
-    private boolean is0(JavaValueType type) {
-        switch (type) {
-            case PRIMITIVE:
-                return _class.isPrimitive();
-            case OBJECT:
-                return !_class.isPrimitive();
-            case FLOAT:
-                return _class == vm.FLOAT;
-            case LONG:
-                return _class == vm.LONG;
-            case DOUBLE:
-                return _class == vm.DOUBLE;
-            case INTEGER:
-                return _class == vm.INTEGER || _class == vm.BOOLEAN || _class == vm.BYTE || _class == vm.CHARACTER || _class == vm.SHORT;
-            case BOOLEAN:
-                return _class == vm.BOOLEAN;
-            case BYTE:
-                return _class == vm.BYTE;
-            case CHARACTER:
-                return _class == vm.CHARACTER;
-            case SHORT:
-                return _class == vm.SHORT;
-            case WIDE:
-                return _class == vm.DOUBLE || _class == vm.LONG;
+    /*
+     * An unknown is whatever its class would be, on top of being unknown
+     */
+    private static int typesOf(VirtualMachine vm, JavaClass type) {
+        int mask = JavaValueType.UNKNOWN.mask();
+        if (type == null) {
+            return mask;
+        }
+        if (!type.isPrimitive()) {
+            return mask | JavaValueType.OBJECT.mask();
+        }
+        mask |= JavaValueType.PRIMITIVE.mask();
+        if (type == vm.FLOAT) {
+            mask |= JavaValueType.FLOAT.mask();
+        } else if (type == vm.LONG) {
+            mask |= JavaValueType.mask(JavaValueType.LONG, JavaValueType.WIDE);
+        } else if (type == vm.DOUBLE) {
+            mask |= JavaValueType.mask(JavaValueType.DOUBLE, JavaValueType.WIDE);
+        } else if (type == vm.INTEGER) {
+            mask |= JavaValueType.INTEGER.mask();
+        } else if (type == vm.BOOLEAN) {
+            mask |= JavaValueType.mask(JavaValueType.INTEGER, JavaValueType.BOOLEAN);
+        } else if (type == vm.BYTE) {
+            mask |= JavaValueType.mask(JavaValueType.INTEGER, JavaValueType.BYTE);
+        } else if (type == vm.CHARACTER) {
+            mask |= JavaValueType.mask(JavaValueType.INTEGER, JavaValueType.CHARACTER);
+        } else if (type == vm.SHORT) {
+            mask |= JavaValueType.mask(JavaValueType.INTEGER, JavaValueType.SHORT);
         }
-        return false;
+        return mask;
     }
 
     @Override
@@ -93,6 +98,17 @@ public class JavaUnknown extends JavaValue {
         _cause += ";" + s;
     }
 
+    /*
+     * The paths that were explored if this is the result of a method that branched on unknown values
+     */
+    public List<PathResult> getPaths() {
+        return _paths;
+    }
+
+    public void setPaths(List<PathResult> paths) {
+        this._paths = Collections.unmodifiableList(paths);
+    }
+
     @Override
     public JavaClass getJavaClass() {
         return this._class;
@@ -18,24 +18,39 @@ package com.javadeobfuscator.javavm.values;
 
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.internals.ClassLoaderData;
+import com.javadeobfuscator.javavm.internals.ObjectMonitor;
+import com.javadeobfuscator.javavm.internals.VMSymbols;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import org.objectweb.asm.Type;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class JavaValue {
-    private final Lock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
-    private final Object metadataLock = new Object();
+    private static final AtomicReferenceFieldUpdater<JavaValue, ObjectMonitor> MONITOR = AtomicReferenceFieldUpdater.newUpdater(JavaValue.class, ObjectMonitor.class, "monitor");
+
     /*
-     * @Deprecated until field slots work
+     * Created the first time something synchronizes on this value, which almost nothing does
      */
-    @Deprecated
-    private volatile Map<String, Object> metadata;
+    private volatile ObjectMonitor monitor;
+    /*
+     * What the VM keeps about the few values that mirror something of its own, like the klass of a java/lang/Class.
+     * Created on first use and written while holding this, nothing else synchronizes on values
+     */
+    private volatile Metadata metadata;
+    /*
+     * The union of the masks of every JavaValueType this value is. Only a wrapper's changes, when it's made to point at
+     * another value
+     */
+    private int typeMask;
+
+    protected JavaValue(int typeMask) {
+        this.typeMask = typeMask;
+    }
 
     public static JavaWrapper forPrimitive(VirtualMachine vm, Type type) {
         if (type.getSort() == Type.METHOD || type.getSort() == Type.VOID) {
@@ -49,11 +64,11 @@ public abstract class JavaValue {
             case Type.CHAR:
                 return vm.newChar('\u0000');
             case Type.DOUBLE:
-                return JavaWrapper.createDouble(vm, 0.0D);
+                return vm.newDouble(0.0D);
             case Type.FLOAT:
-                return JavaWrapper.createFloat(vm, 0.0F);
+                return vm.newFloat(0.0F);
             case Type.INT:
-                return JavaWrapper.createInteger(vm, 0);
+                return vm.newInt(0);
             case Type.LONG:
                 return vm.newLong(0L);
             case Type.SHORT:
@@ -66,7 +81,24 @@ public abstract class JavaValue {
         }
     }
 
-    public abstract boolean is(JavaValueType type);
+    public final boolean is(JavaValueType type) {
+        return (typeMask & type.mask()) != 0;
+    }
+
+    /*
+     * Whether this is of the given type and isn't unknown, in one test
+     */
+    public final boolean isKnown(JavaValueType type) {
+        return (typeMask & (type.mask() | JavaValueType.UNKNOWN.mask())) == type.mask();
+    }
+
+    public final int getTypeMask() {
+        return typeMask;
+    }
+
+    void setTypeMask(int typeMask) {
+        this.typeMask = typeMask;
+    }
 
     public byte asByte() {
         throw new ExecutionException("Cannot call byteValue()");
@@ -127,72 +159,160 @@ public abstract class JavaValue {
      */
     public abstract int getSize();
 
+    public ObjectMonitor getMonitor() {
+        ObjectMonitor result = monitor;
+        if (result == null) {
+            MONITOR.compareAndSet(this, null, new ObjectMonitor());
+            result = monitor;
+        }
+        return result;
+    }
+
     public Condition getCondition() {
-        return condition;
+        return getMonitor().getCondition();
     }
 
     public Lock getLock() {
-        return lock;
+        return getMonitor();
     }
 
     @Deprecated
     public <T> T getMetadata(String key) {
-        synchronized (metadataLock) {
-            if (metadata == null) {
-                return null;
-            }
-            return (T) metadata.get(key);
-        }
+        Metadata current = metadata;
+        return current == null ? null : (T) current.get(key);
     }
 
     @Deprecated
     public void setMetadata(String key, Object data) {
-        synchronized (metadataLock) {
-            if (metadata == null) {
-                metadata = new HashMap<>(4);
-            }
-            metadata.put(key, data);
+        synchronized (this) {
+            metadata().put(key, data);
         }
     }
 
     @Deprecated
     public Map<String, Object> getMetadata() {
-        synchronized (metadataLock) {
-            if (metadata == null) {
-                return null;
+        Metadata current = metadata;
+        Map<String, Object> result = new HashMap<>();
+        if (current != null) {
+            synchronized (this) {
+                current.copyTo(result);
             }
-            return new HashMap<>(metadata);
         }
+        return result;
     }
 
     @Deprecated
     public void setMetadata(Map<String, Object> metadata0) {
         if (metadata0 != null) {
-            synchronized (metadataLock) {
-                if (metadata == null) {
-                    metadata = new HashMap<>(4);
+            synchronized (this) {
+                metadata = new Metadata();
+                for (Map.Entry<String, Object> entry : metadata0.entrySet()) {
+                    metadata.put(entry.getKey(), entry.getValue());
                 }
-                metadata.clear();
-                metadata.putAll(metadata0);
             }
         }
     }
 
+    /*
+     * Stores data if the key currently maps to expected, and returns what the key mapped to before
+     */
     public <T> T compareAndSwapMetadata(String key, T data, T expected) {
-        synchronized (metadataLock) {
-            // metadata == null implies that expected needs to be null
-            if (metadata == null) {
-                if (expected == null) {
-                    return null;
-                }
-                metadata = new HashMap<>();
+        synchronized (this) {
+            if (metadata == null && expected == null) {
+                metadata = new Metadata();
             }
-            T old = (T) metadata.get(key);
+            T old = metadata == null ? null : (T) metadata.get(key);
             if (old == expected) {
                 metadata.put(key, data);
-                return (T) data;
             }
-            return (T) old;
+            return old;
+        }
+    }
+
+    private Metadata metadata() {
+        if (metadata == null) {
+            metadata = new Metadata();
+        }
+        return metadata;
+    }
+
+    /*
+     * A field for each key the VM uses, and a side table for anything else
+     */
+    private static final class Metadata {
+        private volatile JavaClass klass;
+        private volatile ClassLoaderData loaderData;
+        private volatile Object oop;
+        private volatile Object backtrace;
+        private volatile Object vmtarget;
+        private volatile Object vmindex;
+        private volatile Map<String, Object> extra;
+
+        Object get(String key) {
+            switch (key) {
+                case VMSymbols.METADATA_KLASS:
+                    return klass;
+                case VMSymbols.METADATA_LOADER_DATA:
+                    return loaderData;
+                case VMSymbols.METADATA_OOP:
+                    return oop;
+                case VMSymbols.METADATA_BACKTRACE:
+                    return backtrace;
+                case VMSymbols.METADATA_VMTARGET:
+                    return vmtarget;
+                case VMSymbols.METADATA_VMINDEX:
+                    return vmindex;
+                default:
+                    Map<String, Object> current = extra;
+                    return current == null ? null : current.get(key);
+            }
+        }
+
+        void put(String key, Object data) {
+            switch (key) {
+                case VMSymbols.METADATA_KLASS:
+                    klass = (JavaClass) data;
+                    break;
+                case VMSymbols.METADATA_LOADER_DATA:
+                    loaderData = (ClassLoaderData) data;
+                    break;
+                case VMSymbols.METADATA_OOP:
+                    oop = data;
+                    break;
+                case VMSymbols.METADATA_BACKTRACE:
+                    backtrace = data;
+                    break;
+                case VMSymbols.METADATA_VMTARGET:
+                    vmtarget = data;
+                    break;
+                case VMSymbols.METADATA_VMINDEX:
+                    vmindex = data;
+                    break;
+                default:
+                    // Readers don't lock, so the side table is replaced rather than modified
+                    Map<String, Object> updated = extra == null ? new HashMap<>(2) : new HashMap<>(extra);
+                    updated.put(key, data);
+                    extra = updated;
+                    break;
+            }
+        }
+
+        void copyTo(Map<String, Object> result) {
+            putIfSet(result, VMSymbols.METADATA_KLASS, klass);
+            putIfSet(result, VMSymbols.METADATA_LOADER_DATA, loaderData);
+            putIfSet(result, VMSymbols.METADATA_OOP, oop);
+            putIfSet(result, VMSymbols.METADATA_BACKTRACE, backtrace);
+            putIfSet(result, VMSymbols.METADATA_VMTARGET, vmtarget);
+            putIfSet(result, VMSymbols.METADATA_VMINDEX, vmindex);
+            if (extra != null) {
+                result.putAll(extra);
+            }
+        }
+
+        private static void putIfSet(Map<String, Object> result, String key, Object data) {
+            if (data != null) {
+                result.put(key, data);
+            }
         }
     }
 }
@@ -34,4 +34,22 @@ public enum JavaValueType {
     BYTE,
     CHARACTER,
     SHORT, ARRAY,
+    ;
+
+    /*
+     * Every value carries the union of the masks of the types it is, so checking a type is a single bit test
+     */
+    private final int mask = 1 << ordinal();
+
+    public int mask() {
+        return mask;
+    }
+
+    public static int mask(JavaValueType... types) {
+        int mask = 0;
+        for (JavaValueType type : types) {
+            mask |= type.mask;
+        }
+        return mask;
+    }
 }
@@ -19,9 +19,6 @@ package com.javadeobfuscator.javavm.values;
 import com.javadeobfuscator.javavm.VirtualMachine;
 import com.javadeobfuscator.javavm.exceptions.ExecutionException;
 import com.javadeobfuscator.javavm.mirrors.JavaClass;
-import com.javadeobfuscator.javavm.values.prim.JDouble;
-import com.javadeobfuscator.javavm.values.prim.JFloat;
-import com.javadeobfuscator.javavm.values.prim.JInteger;
 import com.javadeobfuscator.javavm.values.prim.JPrimitive;
 
 import java.util.*;
@@ -29,16 +26,27 @@ import java.util.*;
 public class JavaWrapper extends JavaValue {
 
     private JavaValue _value;
+    private final boolean _constant;
 
-    private JavaWrapper(JavaValue value) {
+    private JavaWrapper(JavaValue value, boolean constant) {
+        super(value == null ? 0 : value.getTypeMask());
         this._value = value;
+        this._constant = constant;
     }
 
     public static JavaWrapper wrap(JavaValue value) {
-        return new JavaWrapper(value);
+        return new JavaWrapper(value, false);
     }
 
-    private static final JavaWrapper top = JavaWrapper.wrap(new JavaTop());
+    /*
+     * Wraps a value that's handed out to everyone who asks for it, like null or the VM's cached small integers. The
+     * wrapper can't be set to another value
+     */
+    public static JavaWrapper constant(JavaValue value) {
+        return new JavaWrapper(value, true);
+    }
+
+    private static final JavaWrapper top = JavaWrapper.constant(new JavaTop());
 
     public static JavaWrapper createTop() {
         return top;
@@ -50,27 +58,23 @@ public class JavaWrapper extends JavaValue {
 
     @Deprecated
     public static JavaWrapper createInteger(VirtualMachine vm, int value) {
-        return JavaWrapper.wrap(new JInteger(vm, value));
+        return vm.newInt(value);
     }
 
     @Deprecated
     public static JavaWrapper createFloat(VirtualMachine vm, float value) {
-        return JavaWrapper.wrap(new JFloat(vm, value));
+        return vm.newFloat(value);
     }
 
     @Deprecated
     public static JavaWrapper createDouble(VirtualMachine vm, double value) {
-        return JavaWrapper.wrap(new JDouble(vm, value));
+        return vm.newDouble(value);
     }
 
     public static JavaWrapper createArray(JavaClass type, JavaWrapper[] values) {
         return wrap(new JavaArray(type, values));
     }
 
-    public boolean is(JavaValueType type) {
-        return _value.is(type);
-    }
-
     public byte asByte() {
         return _value.asByte();
     }
@@ -107,8 +111,43 @@ public class JavaWrapper extends JavaValue {
         return _value;
     }
 
+    /*
+     * Points this reference at another value. Everything else that holds the old value keeps it, so this is only
+     * correct where the wrapper itself is the identity being changed. Use one of the methods below instead
+     */
+    @Deprecated
     public void set(JavaValue value) {
+        replace(value);
+    }
+
+    /*
+     * Completes a NEW once its constructor has run. Every copy of the uninitialized reference on the stack and in the
+     * locals is this same wrapper, so they all see the object
+     */
+    public void initialize(JavaObject value) {
+        if (!(_value instanceof JavaUninitialized)) {
+            throw new ExecutionException("Cannot initialize " + _value);
+        }
+        replace(value);
+    }
+
+    /*
+     * Gives up on tracking the contents of this reference, for instance after an array store at an unknown index
+     */
+    public void makeUnknown(VirtualMachine vm, String cause) {
+        replace(new JavaUnknown(vm, getJavaClass(), cause));
+    }
+
+    private void replace(JavaValue value) {
+        if (_constant) {
+            throw new ExecutionException("Cannot modify shared constant " + _value);
+        }
         this._value = value;
+        setTypeMask(value == null ? 0 : value.getTypeMask());
+    }
+
+    public boolean isConstant() {
+        return _constant;
     }
 
     @Override
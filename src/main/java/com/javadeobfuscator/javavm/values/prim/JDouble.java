@@ -22,11 +22,14 @@ import com.javadeobfuscator.javavm.values.JavaValueType;
 import org.objectweb.asm.Type;
 
 public class JDouble extends JPrimitive {
+    private static final int TYPES = JavaValueType.mask(JavaValueType.PRIMITIVE, JavaValueType.DOUBLE, JavaValueType.WIDE);
+
     private final VirtualMachine _vm;
 
     private final double _value;
 
     public JDouble(VirtualMachine vm, double value) {
+        super(TYPES);
         this._value = value;
         this._vm = vm;
     }
@@ -95,8 +98,4 @@ public class JDouble extends JPrimitive {
         return "JavaDouble(value=" + _value + ")";
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.PRIMITIVE || type == JavaValueType.DOUBLE || type == JavaValueType.WIDE;
-    }
 }
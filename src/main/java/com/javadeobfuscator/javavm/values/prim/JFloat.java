@@ -22,11 +22,14 @@ import com.javadeobfuscator.javavm.values.JavaValueType;
 import org.objectweb.asm.Type;
 
 public class JFloat extends JPrimitive {
+    private static final int TYPES = JavaValueType.mask(JavaValueType.PRIMITIVE, JavaValueType.FLOAT);
+
     private final VirtualMachine _vm;
 
     private final float _value;
 
     public JFloat(VirtualMachine vm, float value) {
+        super(TYPES);
         this._value = value;
         this._vm = vm;
     }
@@ -95,8 +98,4 @@ public class JFloat extends JPrimitive {
         return "JavaFloat(value=" + _value + ")";
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.PRIMITIVE || type == JavaValueType.FLOAT;
-    }
 }
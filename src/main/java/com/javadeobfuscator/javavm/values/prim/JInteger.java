@@ -22,6 +22,8 @@ import com.javadeobfuscator.javavm.values.JavaValueType;
 import org.objectweb.asm.Type;
 
 public final class JInteger extends JPrimitive {
+    private static final int TYPES = JavaValueType.mask(JavaValueType.PRIMITIVE, JavaValueType.INTEGER, JavaValueType.BOOLEAN, JavaValueType.BYTE, JavaValueType.CHARACTER, JavaValueType.SHORT);
+
     private final VirtualMachine _vm;
 
     private final Type _type; // can be INTEGER, CHARACTER, SHORT, BYTE, BOOLEAN
@@ -29,12 +31,14 @@ public final class JInteger extends JPrimitive {
 
     @Deprecated
     public JInteger(VirtualMachine vm, int value) {
+        super(TYPES);
         this._vm = vm;
         this._value = value;
         _type = null;
     }
 
     public JInteger(VirtualMachine vm, Type type, int value) {
+        super(TYPES);
         _vm = vm;
         _type = type;
         _value = value;
@@ -104,8 +108,4 @@ public final class JInteger extends JPrimitive {
         return "JavaInteger(value=" + _value + ")";
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.PRIMITIVE || type == JavaValueType.INTEGER || type == JavaValueType.BOOLEAN || type == JavaValueType.BYTE || type == JavaValueType.CHARACTER || type == JavaValueType.SHORT;
-    }
 }
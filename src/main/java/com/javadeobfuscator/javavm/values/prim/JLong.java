@@ -22,11 +22,14 @@ import com.javadeobfuscator.javavm.values.JavaValueType;
 import org.objectweb.asm.Type;
 
 public class JLong extends JPrimitive {
+    private static final int TYPES = JavaValueType.mask(JavaValueType.PRIMITIVE, JavaValueType.LONG, JavaValueType.WIDE);
+
     private final VirtualMachine _vm;
 
     private final long _value;
 
     public JLong(VirtualMachine vm, long value) {
+        super(TYPES);
         this._value = value;
         this._vm = vm;
     }
@@ -95,8 +98,4 @@ public class JLong extends JPrimitive {
         return "JavaLong(value=" + _value + ")";
     }
 
-    @Override
-    public boolean is(JavaValueType type) {
-        return type == JavaValueType.PRIMITIVE || type == JavaValueType.LONG || type == JavaValueType.WIDE;
-    }
 }
@@ -20,6 +20,10 @@ import com.javadeobfuscator.javavm.values.JavaValue;
 
 public abstract class JPrimitive extends JavaValue {
 
+    protected JPrimitive(int typeMask) {
+        super(typeMask);
+    }
+
     public abstract boolean asBoolean();
 
     public abstract char asChar();
@@ -19,16 +19,30 @@ package com.javadeobfuscator.javavm;
 import com.javadeobfuscator.javavm.ext.net.InterfaceAddress;
 import com.javadeobfuscator.javavm.ext.net.NetworkInterface;
 import com.javadeobfuscator.javavm.ext.net.*;
+import com.javadeobfuscator.javavm.exceptions.ExecutionException;
+import com.javadeobfuscator.javavm.exceptions.VMException;
+import com.javadeobfuscator.javavm.hooks.HookedFieldGetter;
+import com.javadeobfuscator.javavm.hooks.HookedMethod;
+import com.javadeobfuscator.javavm.internals.ConstMethod;
+import com.javadeobfuscator.javavm.internals.ExceptionTable;
+import com.javadeobfuscator.javavm.internals.InlineCache;
+import com.javadeobfuscator.javavm.internals.ObjectMonitor;
+import com.javadeobfuscator.javavm.internals.ResolvedField;
+import com.javadeobfuscator.javavm.internals.ResolvedType;
+import com.javadeobfuscator.javavm.internals.StringTable;
+import com.javadeobfuscator.javavm.internals.SymbolTable;
+import com.javadeobfuscator.javavm.jit.CompiledMethod;
+import com.javadeobfuscator.javavm.mirrors.JavaClass;
 import com.javadeobfuscator.javavm.utils.*;
 import com.javadeobfuscator.javavm.values.*;
 import org.junit.*;
 import org.objectweb.asm.tree.*;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
-import javax.tools.*;
 import java.io.*;
 import java.net.*;
-import java.nio.charset.*;
 import java.nio.file.*;
 import java.util.*;
 import java.util.zip.*;
@@ -111,6 +125,12 @@ public class CompilationTest {
         }
     }
 
+    @After
+    public void teardown() {
+        // the main thread stays bound to the VM that first ran on it until that VM shuts down
+        _vm.shutdown();
+    }
+
     @Test
     public void testExecution() throws Throwable {
         String source = "import javax.crypto.Cipher;\n" +
@@ -126,20 +146,7 @@ public class CompilationTest {
                 "    }\n" +
                 "}";
 
-        File root = Files.createTempDirectory("test").toFile();
-        File sourceFile = new File(root, "Test.java");
-        File targetFile = new File(root, "Test.class");
-        sourceFile.getParentFile().mkdirs();
-        Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
-
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        compiler.run(null, null, null, sourceFile.getPath());
-
-        Map<String, ClassNode> loaded;
-        ClassNode target;
-
-        loaded = load(targetFile);
-        target = loaded.get("Test");
+        ClassNode target = compile("Test", source);
 
 //        VirtualMachine.TRACE = true;
 //        VirtualMachine.DEBUG_PRINT_EXCEPTIONS = true;
@@ -155,4 +162,1107 @@ public class CompilationTest {
             System.out.println("===EXECUTION COMPLETED (" + TimeUnit.NANOSECONDS.toMillis(end - start) + "ms) ===\r\nResult: " + execution.getReturnValue());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testJitMatchesInterpreter() throws Throwable {
+        String source = "public class JitTest {\n" +
+                "    public static long run() {\n" +
+                "        int[] data = new int[64];\n" +
+                "        long total = 0;\n" +
+                "        for (int i = 0; i < 500; i++) {\n" +
+                "            total += mix(data, i);\n" +
+                "        }\n" +
+                "        return total;\n" +
+                "    }\n" +
+                "\n" +
+                "    public static int mix(int[] data, int seed) {\n" +
+                "        int h = seed * 31;\n" +
+                "        for (int i = 0; i < data.length; i++) {\n" +
+                "            data[i] = (data[i] ^ h) + (i << 3);\n" +
+                "            h = (h >>> 7) ^ data[i] * 0x9E3779B1;\n" +
+                "            switch (h & 3) {\n" +
+                "                case 0: h += 1; break;\n" +
+                "                case 1: h -= (byte) h; break;\n" +
+                "                default: h ^= (char) (h >> 2); break;\n" +
+                "            }\n" +
+                "        }\n" +
+                "        return h;\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("JitTest", source);
+        MethodNode targetMethod = ASMHelper.findMethod(target, "run", "()J");
+        _vm.classpath(Arrays.asList(target));
+
+        long interpreted = _vm.execute(target, targetMethod, null, Arrays.asList(), new ExecutionOptions()).getReturnValue().asLong();
+        VirtualMachine.JIT = true;
+        try {
+            // compiled code can't count instructions, so it only runs without a budget
+            long compiled = _vm.execute(target, targetMethod, null, Arrays.asList(), new ExecutionOptions().maxInstructions(Long.MAX_VALUE)).getReturnValue().asLong();
+            Assert.assertEquals(interpreted, compiled);
+            CompiledMethod mix = _vm.getConstMethod(ASMHelper.findMethod(target, "mix", "([II)I")).getCompiledMethod();
+            Assert.assertNotNull(mix);
+
+            // an array holding an unknown stays interpreted, compiled code has nothing to load it into
+            JavaWrapper data = ArrayHelper.newInstance(_vm, Type.INT_TYPE, 4);
+            Assert.assertTrue(mix.canEnter(new JavaWrapper[]{data, _vm.newInt(1)}));
+            data.asArray().set(0, JavaWrapper.wrap(new JavaUnknown(_vm, _vm.INTEGER, "test")));
+            Assert.assertFalse(mix.canEnter(new JavaWrapper[]{data, _vm.newInt(1)}));
+        } finally {
+            VirtualMachine.JIT = false;
+        }
+    }
+
+    @Test
+    public void testFrameStack() throws Throwable {
+        String source = "public class FrameTest {\n" +
+                "    public static int run() {\n" +
+                "        int total = depth(20000);\n" +
+                "        try {\n" +
+                "            fail(50);\n" +
+                "        } catch (IllegalStateException e) {\n" +
+                "            total += e.getMessage().length();\n" +
+                "        }\n" +
+                "        return total + locked(10);\n" +
+                "    }\n" +
+                "\n" +
+                "    static int depth(int n) {\n" +
+                "        return n == 0 ? 0 : 1 + depth(n - 1);\n" +
+                "    }\n" +
+                "\n" +
+                "    static void fail(int n) {\n" +
+                "        if (n == 0) throw new IllegalStateException(\"deep\");\n" +
+                "        fail(n - 1);\n" +
+                "    }\n" +
+                "\n" +
+                "    static synchronized int locked(int n) {\n" +
+                "        return n == 0 ? 0 : n + locked(n - 1);\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("FrameTest", source);
+        MethodNode targetMethod = ASMHelper.findMethod(target, "run", "()I");
+        _vm.classpath(Arrays.asList(target));
+
+        // deep enough to overflow the host stack if every guest call recursed
+        VirtualMachine.FRAME_STACK = true;
+        try {
+            int result = _vm.execute(target, targetMethod, null, Arrays.asList(), new ExecutionOptions()).getReturnValue().asInt();
+            Assert.assertEquals(20000 + 4 + 55, result);
+        } finally {
+            VirtualMachine.FRAME_STACK = false;
+        }
+    }
+
+    @Test
+    public void testBoundedExploration() throws Throwable {
+        String source = "public class ExploreTest {\n" +
+                "    public static int run(int x) {\n" +
+                "        int r = 0;\n" +
+                "        for (int i = 0; i < 20; i++) {\n" +
+                "            if ((x >> i & 1) == 0) r += i;\n" +
+                "        }\n" +
+                "        return r;\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("ExploreTest", source);
+        MethodNode targetMethod = ASMHelper.findMethod(target, "run", "(I)I");
+        _vm.classpath(Arrays.asList(target));
+
+        // x is unknown, so there are 2^20 paths through the loop
+        ExecutionOptions options = new ExecutionOptions().explore(new ExplorationOptions().strategy(ExplorationOptions.Strategy.BREADTH_FIRST).maxPaths(64));
+        JavaWrapper result = _vm.execute(target, targetMethod, null, Arrays.asList(), options).getReturnValue();
+        Assert.assertTrue(result.get() instanceof JavaUnknown);
+        List<PathResult> paths = ((JavaUnknown) result.get()).getPaths();
+        Assert.assertFalse(paths.isEmpty());
+        Assert.assertTrue(paths.size() <= 64);
+    }
+
+    @Test
+    public void testParallelExploration() throws Throwable {
+        String source = "public class ParallelTest {\n" +
+                "    public static int run(int x) {\n" +
+                "        int r = 0;\n" +
+                "        for (int i = 0; i < 6; i++) {\n" +
+                "            if ((x >> i & 1) == 0) r += 1 << i;\n" +
+                "        }\n" +
+                "        return r;\n" +
+                "    }\n" +
+                "    static int[] seen = new int[1];\n" +
+                "    public static int writes(int x) {\n" +
+                "        if (x == 0) seen[0]++;\n" +
+                "        return seen[0];\n" +
+                "    }\n" +
+                "    public static int locked(Object lock, int x) {\n" +
+                "        synchronized (lock) {\n" +
+                "            if (x == 0) {\n" +
+                "                synchronized (lock) { return 1; }\n" +
+                "            }\n" +
+                "            return 2;\n" +
+                "        }\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("ParallelTest", source);
+        MethodNode targetMethod = ASMHelper.findMethod(target, "run", "(I)I");
+        _vm.classpath(Arrays.asList(target));
+
+        ExecutionOptions sequential = new ExecutionOptions().explore(new ExplorationOptions());
+        List<PathResult> expected = ((JavaUnknown) _vm.execute(target, targetMethod, null, Arrays.asList(), sequential).getReturnValue().get()).getPaths();
+        Assert.assertEquals(64, expected.size());
+
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        ExecutionListener listener = new ExecutionListener() {
+            @Override
+            public void onInstruction(MethodExecution execution, AbstractInsnNode insn, Stack stack, Locals locals) {
+                threads.add(Thread.currentThread());
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ExecutionOptions parallel = new ExecutionOptions().explore(new ExplorationOptions().parallel(pool));
+            _vm.addListener(listener, ExecutionListener.INSTRUCTION);
+            List<PathResult> actual;
+            try {
+                actual = ((JavaUnknown) _vm.execute(target, targetMethod, null, Arrays.asList(), parallel).getReturnValue().get()).getPaths();
+                Assert.assertTrue(threads.stream().anyMatch(thread -> thread != Thread.currentThread()));
+
+                // paths share the heap, so one that writes to it stays on the calling thread
+                threads.clear();
+                MethodNode writes = ASMHelper.findMethod(target, "writes", "(I)I");
+                List<PathResult> writesPaths = ((JavaUnknown) _vm.execute(target, writes, null, Arrays.asList(), parallel).getReturnValue().get()).getPaths();
+                Assert.assertEquals(2, writesPaths.size());
+                Assert.assertEquals(Collections.singleton(Thread.currentThread()), threads);
+            } finally {
+                _vm.removeListener(listener);
+            }
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).getValue().asInt(), actual.get(i).getValue().asInt());
+                Assert.assertArrayEquals(expected.get(i).getDecisions(), actual.get(i).getDecisions());
+            }
+
+            // the paths exit a monitor the calling thread entered, so they can't be handed to the pool
+            MethodNode locked = ASMHelper.findMethod(target, "locked", "(Ljava/lang/Object;I)I");
+            JavaWrapper lock = JavaWrapper.wrap(new JavaObject(_vm.getSystemDictionary().getJavaLangObject()));
+            List<PathResult> lockedPaths = ((JavaUnknown) _vm.execute(target, locked, null, Arrays.asList(lock), parallel).getReturnValue().get()).getPaths();
+            Assert.assertEquals(2, lockedPaths.size());
+            for (PathResult path : lockedPaths) {
+                Assert.assertEquals(PathResult.Outcome.RETURNED, path.getOutcome());
+            }
+            Assert.assertFalse(lock.get().getMonitor().isHeldByCurrentThread());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelExplorationInInitializer() throws Throwable {
+        String source = "public class InitTest {\n" +
+                "    static int low = 3;\n" +
+                "    static int high = 4;\n" +
+                "    static int value = pick(unknown());\n" +
+                "    static native int unknown();\n" +
+                "    static int pick(int x) {\n" +
+                "        return x == 0 ? low : high;\n" +
+                "    }\n" +
+                "    public static int get() {\n" +
+                "        return value;\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("InitTest", source);
+        _vm.classpath(Arrays.asList(target));
+        _vm.hook(new HookedMethod("InitTest", "unknown", "()I").bind((HookedMethod.Hook) (ctx, inst, args) -> JavaWrapper.wrap(new JavaUnknown(_vm, _vm.INTEGER, "test"))));
+
+        // the paths of pick read statics of the class being initialized, which a pool thread would wait on forever
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            _vm.setExplorationOptions(new ExplorationOptions().parallel(pool));
+            JavaWrapper value = _vm.execute(target, ASMHelper.findMethod(target, "get", "()I"), null, Collections.emptyList(), new ExecutionOptions()).getReturnValue();
+            List<PathResult> paths = ((JavaUnknown) value.get()).getPaths();
+            Assert.assertEquals(2, paths.size());
+            // the branch is compiled as a jump to high
+            Assert.assertEquals(4, paths.get(0).getValue().asInt());
+            Assert.assertEquals(3, paths.get(1).getValue().asInt());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBudgets() throws Throwable {
+        String source = "public class BudgetTest {\n" +
+                "    public static int spin() {\n" +
+                "        int i = 0;\n" +
+                "        while (true) i++;\n" +
+                "    }\n" +
+                "\n" +
+                "    public static int recurse(int n) {\n" +
+                "        return recurse(n + 1);\n" +
+                "    }\n" +
+                "\n" +
+                "    public static int branchy(int x) {\n" +
+                "        return x == 0 ? count(40) : count(40) + 1;\n" +
+                "    }\n" +
+                "\n" +
+                "    static int count(int n) {\n" +
+                "        return n == 0 ? 0 : 1 + count(n - 1);\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("BudgetTest", source);
+        _vm.classpath(Arrays.asList(target));
+
+        MethodExecution spin = _vm.execute(target, ASMHelper.findMethod(target, "spin", "()I"), null, Arrays.asList(), new ExecutionOptions().maxInstructions(100000));
+        Assert.assertNull(spin.getReturnValue());
+        Assert.assertNotNull(spin.getAbortCause());
+        Assert.assertEquals(100000, spin.getBudget().getInstructions());
+
+        // without a budget of its own, an endless loop still ends
+        MethodExecution spinDefault = _vm.execute(target, ASMHelper.findMethod(target, "spin", "()I"), null, Arrays.asList(), new ExecutionOptions());
+        Assert.assertNotNull(spinDefault.getAbortCause());
+        Assert.assertEquals(ExecutionOptions.DEFAULT_MAX_INSTRUCTIONS, spinDefault.getBudget().getInstructions());
+
+        MethodExecution recurse = _vm.execute(target, ASMHelper.findMethod(target, "recurse", "(I)I"), null, Arrays.asList(_vm.newInt(0)), new ExecutionOptions().maxDepth(50));
+        Assert.assertNull(recurse.getReturnValue());
+        Assert.assertNotNull(recurse.getAbortCause());
+
+        // paths explored on a pool thread count their depth from the call they branched from, like on the caller
+        MethodNode branchy = ASMHelper.findMethod(target, "branchy", "(I)I");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int maxDepth = 35; maxDepth < 50; maxDepth++) {
+                ExecutionOptions sequential = new ExecutionOptions().maxDepth(maxDepth).explore(new ExplorationOptions());
+                ExecutionOptions parallel = new ExecutionOptions().maxDepth(maxDepth).explore(new ExplorationOptions().parallel(pool));
+                boolean sequentialAborted = _vm.execute(target, branchy, null, Collections.emptyList(), sequential).getAbortCause() != null;
+                boolean parallelAborted = _vm.execute(target, branchy, null, Collections.emptyList(), parallel).getAbortCause() != null;
+                Assert.assertEquals("maxDepth " + maxDepth, sequentialAborted, parallelAborted);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrimitiveSlots() throws Throwable {
+        String source = "public class PrimitiveTest {\n" +
+                "    public static long run(int seed) {\n" +
+                "        long acc = 0x123456789L;\n" +
+                "        int h = seed;\n" +
+                "        for (int i = 0; i < 1000; i++) {\n" +
+                "            h = h * 31 + (i ^ (h >>> 5));\n" +
+                "            acc = (acc << 3) ^ (acc >>> 7) ^ h;\n" +
+                "            if (acc < 0 && (int) acc > h) acc -= 1;\n" +
+                "        }\n" +
+                "        return acc + h;\n" +
+                "    }\n" +
+                "}";
+
+        File root = Files.createTempDirectory("test").toFile();
+        ClassNode target = compile(root, "PrimitiveTest", source);
+        MethodNode targetMethod = ASMHelper.findMethod(target, "run", "(I)J");
+        _vm.classpath(Arrays.asList(target));
+
+        long expected;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{root.toURI().toURL()}, null)) {
+            expected = (long) loader.loadClass("PrimitiveTest").getMethod("run", int.class).invoke(null, 7);
+        }
+        long actual = _vm.execute(target, targetMethod, null, Arrays.asList(_vm.newInt(7)), new ExecutionOptions()).getReturnValue().asLong();
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testFieldSlots() throws Throwable {
+        String source = "import java.util.AbstractList;\n" +
+                "import java.util.concurrent.atomic.AtomicInteger;\n" +
+                "public class FieldTest extends AbstractList<Object> implements Cloneable {\n" +
+                "    static int counter;\n" +
+                "    int modCount;\n" +
+                "    public Object get(int i) { return null; }\n" +
+                "    public int size() { return 0; }\n" +
+                "    int shadowed() {\n" +
+                "        super.modCount = 3;\n" +
+                "        this.modCount = 5;\n" +
+                "        return super.modCount * 10 + this.modCount;\n" +
+                "    }\n" +
+                "    public static int run() throws Exception {\n" +
+                "        FieldTest test = new FieldTest();\n" +
+                "        int result = test.shadowed();\n" +
+                "        FieldTest copy = (FieldTest) test.clone();\n" +
+                "        copy.modCount = 7;\n" +
+                "        AtomicInteger atomic = new AtomicInteger(4);\n" +
+                "        atomic.incrementAndGet();\n" +
+                "        counter += 2;\n" +
+                "        return result * 10000 + test.modCount * 1000 + copy.modCount * 100 + atomic.get() * 10 + counter;\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("FieldTest", source);
+        MethodNode targetMethod = ASMHelper.findMethod(target, "run", "()I");
+        _vm.classpath(Arrays.asList(target));
+
+        int actual = _vm.execute(target, targetMethod, null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt();
+        Assert.assertEquals(355752, actual);
+    }
+
+    @Test
+    public void testPrimitiveArrays() throws Throwable {
+        String source = "public class ArrayTest {\n" +
+                "    public static byte[] bytes() {\n" +
+                "        byte[] b = new byte[300];\n" +
+                "        for (int i = 0; i < b.length; i++) {\n" +
+                "            b[i] = (byte) (i * 7);\n" +
+                "        }\n" +
+                "        return b;\n" +
+                "    }\n" +
+                "    public static int run() {\n" +
+                "        int sum = 0;\n" +
+                "        for (byte x : bytes()) {\n" +
+                "            sum += x;\n" +
+                "        }\n" +
+                "        char[] chars = new char[6];\n" +
+                "        System.arraycopy(\"hello\".toCharArray(), 0, chars, 1, 5);\n" +
+                "        int wide = 65601;\n" +
+                "        chars[0] = (char) wide;\n" +
+                "        long[] longs = new long[]{1L << 40};\n" +
+                "        int[] ints = new int[]{1, 2, 3}.clone();\n" +
+                "        ints[0] = 10;\n" +
+                "        try {\n" +
+                "            ints[-1] = 0;\n" +
+                "        } catch (ArrayIndexOutOfBoundsException e) {\n" +
+                "            sum += 1000;\n" +
+                "        }\n" +
+                "        return sum + new String(chars).hashCode() + (int) (longs[0] >> 30) + ints[0] + ints[2];\n" +
+                "    }\n" +
+                "}";
+
+        File root = Files.createTempDirectory("test").toFile();
+        ClassNode target = compile(root, "ArrayTest", source);
+        _vm.classpath(Arrays.asList(target));
+
+        JavaWrapper bytes = _vm.execute(target, ASMHelper.findMethod(target, "bytes", "()[B"), null, Collections.emptyList(), new ExecutionOptions()).getReturnValue();
+        Assert.assertTrue(bytes.asArray().hostArray() instanceof byte[]);
+        Assert.assertEquals((byte) (299 * 7), ((byte[]) bytes.asArray().hostArray())[299]);
+
+        int expected = (int) new URLClassLoader(new URL[]{root.toURI().toURL()}).loadClass("ArrayTest").getMethod("run").invoke(null);
+        int actual = _vm.execute(target, ASMHelper.findMethod(target, "run", "()I"), null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt();
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testValueCaches() {
+        Assert.assertSame(_vm.newInt(42), _vm.newInt(42));
+        Assert.assertSame(_vm.newChar('a'), _vm.newChar('a'));
+        Assert.assertSame(_vm.newLong(-1), _vm.newLong(-1));
+        Assert.assertNotSame(_vm.newInt(42), _vm.newChar((char) 42));
+        Assert.assertNotSame(_vm.newDouble(0.0), _vm.newDouble(-0.0));
+        Assert.assertEquals(100000, _vm.newInt(100000).asInt());
+
+        JavaWrapper cached = _vm.newInt(1);
+        Assert.assertTrue(cached.isConstant());
+        try {
+            cached.set(_vm.newInt(2).get());
+            Assert.fail();
+        } catch (ExecutionException expected) {
+        }
+        Assert.assertEquals(1, _vm.newInt(1).asInt());
+    }
+
+    @Test
+    public void testTypeMasks() {
+        JavaWrapper character = _vm.newChar('a');
+        Assert.assertTrue(character.is(JavaValueType.PRIMITIVE));
+        Assert.assertTrue(character.isKnown(JavaValueType.INTEGER));
+        Assert.assertFalse(character.is(JavaValueType.WIDE));
+        Assert.assertTrue(_vm.newLong(1).is(JavaValueType.WIDE));
+        Assert.assertTrue(_vm.getNull().is(JavaValueType.ARRAY));
+
+        JavaWrapper array = ArrayConversionHelper.convertByteArray(_vm, new byte[]{1, 2});
+        Assert.assertTrue(array.isKnown(JavaValueType.ARRAY));
+        array.makeUnknown(_vm, "test");
+        Assert.assertTrue(array.is(JavaValueType.UNKNOWN));
+        Assert.assertTrue(array.is(JavaValueType.OBJECT));
+        Assert.assertFalse(array.isKnown(JavaValueType.OBJECT));
+        Assert.assertFalse(array.is(JavaValueType.PRIMITIVE));
+
+        JavaWrapper unknownInt = JavaWrapper.wrap(new JavaUnknown(_vm, _vm.BYTE, "test"));
+        Assert.assertTrue(unknownInt.is(JavaValueType.INTEGER));
+        Assert.assertTrue(unknownInt.is(JavaValueType.BYTE));
+        Assert.assertFalse(unknownInt.is(JavaValueType.SHORT));
+        Assert.assertFalse(unknownInt.isKnown(JavaValueType.INTEGER));
+    }
+
+    @Test
+    public void testSharedStrings() {
+        JavaArray first = _vm.getString("shared").asObject().getField("value", "[C").asArray();
+        JavaArray second = _vm.getString("shared").asObject().getField("value", "[C").asArray();
+        Assert.assertSame(first.readHostArray(), second.readHostArray());
+
+        JavaArray copy = second.copy();
+        copy.setInt(0, 'S');
+        second.setInt(1, 'H');
+        Assert.assertEquals("shared", new String((char[]) first.readHostArray()));
+        Assert.assertEquals("Shared", new String((char[]) copy.readHostArray()));
+        Assert.assertEquals("sHared", new String((char[]) second.readHostArray()));
+        Assert.assertSame(first.readHostArray(), _vm.getString("shared").asObject().getField("value", "[C").asArray().readHostArray());
+    }
+
+    @Test
+    public void testStringTable() {
+        StringTable table = _vm.getStringTable();
+        long hits = table.getHits();
+        JavaWrapper constant = _vm.getStringInterned("interned constant");
+        Assert.assertSame(constant.get(), _vm.getStringInterned("interned constant").get());
+
+        JavaWrapper created = _vm.getString("interned at runtime");
+        Assert.assertSame(created.get(), _vm.intern(created).get());
+        Assert.assertSame(created.get(), _vm.getStringInterned("interned at runtime").get());
+        Assert.assertSame(constant.get(), _vm.intern(_vm.getString("interned constant")).get());
+        Assert.assertEquals(hits + 3, table.getHits());
+        Assert.assertTrue(table.getHitRate() > 0);
+    }
+
+    @Test
+    public void testConcurrentClassLookup() throws Exception {
+        List<ClassNode> classes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ClassNode classNode = new ClassNode();
+            classNode.visit(52, 1, "LookupTest" + i, null, i == 0 ? "java/lang/Object" : "LookupTest" + (i - 1), null);
+            classes.add(classNode);
+        }
+        _vm.classpath(classes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JavaClass>> lookups = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String name = "LookupTest" + (7 - i % 8);
+                lookups.add(executor.submit(() -> JavaClass.forName(_vm, name)));
+            }
+            for (int i = 0; i < lookups.size(); i++) {
+                JavaClass found = lookups.get(i).get();
+                Assert.assertSame(JavaClass.forName(_vm, "LookupTest" + (7 - i % 8)), found);
+                Assert.assertNotNull(found.getFieldLayout());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testClassCircularity() {
+        List<ClassNode> classes = new ArrayList<>();
+        String[][] hierarchy = {{"CircularSelf", "CircularSelf"}, {"CircularA", "CircularB"}, {"CircularB", "CircularA"}, {"CircularC", "CircularA"}};
+        for (String[] entry : hierarchy) {
+            ClassNode classNode = new ClassNode();
+            classNode.visit(52, 1, entry[0], null, entry[1], null);
+            classes.add(classNode);
+        }
+        _vm.classpath(classes);
+
+        for (String name : new String[]{"CircularSelf", "CircularA", "CircularB", "CircularC", "CircularA"}) {
+            try {
+                JavaClass.forName(_vm, name);
+                Assert.fail(name + " was loaded");
+            } catch (VMException e) {
+                Assert.assertEquals("java/lang/ClassCircularityError", e.getWrapped().getJavaClass().getClassNode().name);
+            }
+        }
+        Assert.assertNotNull(JavaClass.forName(_vm, "java/util/ArrayList"));
+    }
+
+    @Test
+    public void testConcurrentClassCircularity() throws Exception {
+        List<ClassNode> classes = new ArrayList<>();
+        String[][] hierarchy = {{"CycleA", "CycleB"}, {"CycleB", "CycleC"}, {"CycleC", "CycleA"}};
+        for (String[] entry : hierarchy) {
+            ClassNode classNode = new ClassNode();
+            classNode.visit(52, 1, entry[0], null, entry[1], null);
+            classes.add(classNode);
+        }
+        _vm.classpath(classes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int round = 0; round < 20; round++) {
+                CyclicBarrier start = new CyclicBarrier(3);
+                List<Future<String>> lookups = new ArrayList<>();
+                for (String[] entry : hierarchy) {
+                    lookups.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            JavaClass.forName(_vm, entry[0]);
+                            return entry[0] + " was loaded";
+                        } catch (VMException e) {
+                            return e.getWrapped().getJavaClass().getClassNode().name;
+                        }
+                    }));
+                }
+                for (Future<String> lookup : lookups) {
+                    Assert.assertEquals("java/lang/ClassCircularityError", lookup.get(30, TimeUnit.SECONDS));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testObjectHeader() {
+        JavaObject object = new JavaObject(_vm.getSystemDictionary().getJavaLangObject());
+        int hash = object.getHashCode();
+        Assert.assertNotEquals(0, hash);
+        Assert.assertEquals(hash, object.getHashCode());
+        Assert.assertNotEquals(hash, object.vmClone().getHashCode());
+
+        Assert.assertNull(object.getMetadata(JavaObject.VMINDEX));
+        object.setMetadata(JavaObject.VMINDEX, 3);
+        object.setMetadata("custom", "value");
+        Assert.assertEquals(3, (int) object.getMetadata(JavaObject.VMINDEX));
+        Assert.assertEquals("value", object.getMetadata("custom"));
+        Assert.assertEquals(2, object.getMetadata().size());
+        Assert.assertEquals("value", object.compareAndSwapMetadata("custom", "other", null));
+        Assert.assertEquals("value", object.compareAndSwapMetadata("custom", "other", "value"));
+        Assert.assertEquals("other", object.getMetadata("custom"));
+    }
+
+    @Test
+    public void testObjectMonitor() throws Exception {
+        ObjectMonitor monitor = new ObjectMonitor();
+        monitor.lock();
+        monitor.lock();
+        Assert.assertTrue(monitor.isHeldByCurrentThread());
+
+        CountDownLatch entered = new CountDownLatch(1);
+        Thread contender = new Thread(() -> {
+            monitor.lock();
+            entered.countDown();
+            monitor.getCondition().signalAll();
+            monitor.unlock();
+        });
+        contender.start();
+        Assert.assertFalse(entered.await(50, TimeUnit.MILLISECONDS));
+
+        // Waiting inflates the thin lock and gives up both holds until the contender is done
+        while (entered.getCount() > 0) {
+            monitor.getCondition().await(10, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue(monitor.isHeldByCurrentThread());
+        monitor.unlock();
+        Assert.assertTrue(monitor.isHeldByCurrentThread());
+        monitor.unlock();
+        Assert.assertFalse(monitor.isHeldByCurrentThread());
+        contender.join();
+    }
+
+    @Test
+    public void testSymbolTable() {
+        SymbolTable symbols = _vm.getSymbolTable();
+        SymbolTable.MethodSymbol symbol = symbols.method("(IJLjava/lang/String;)V");
+        Assert.assertSame(symbol, symbols.method("(IJLjava/lang/String;)V"));
+        Assert.assertNotSame(symbol, new SymbolTable().method("(IJLjava/lang/String;)V"));
+        Assert.assertEquals(3, symbol.getArgumentCount());
+        Assert.assertEquals(4, symbol.getArgumentSlots());
+        Assert.assertFalse(symbol.returnsValue());
+        Assert.assertSame(symbols.fieldKey("value", "I"), symbols.fieldKey("value", "I"));
+        Assert.assertSame(TypeHelper.parseType(_vm, "java/lang/String"), TypeHelper.parseType(_vm, "java/lang/String"));
+
+        SymbolTable.TypeSymbol array = TypeHelper.getSymbol(_vm, "[[Ljava/lang/String;");
+        Assert.assertSame(array, TypeHelper.getSymbol(_vm, "[[Ljava/lang/String;"));
+        Assert.assertEquals(2, array.getDimensions());
+        Assert.assertEquals("[Ljava/lang/String;", array.getComponentType().getDescriptor());
+        Assert.assertEquals("Ljava/lang/String;", array.getElementType().getDescriptor());
+        Assert.assertEquals(0, TypeHelper.getSymbol(_vm, "java/lang/String").getDimensions());
+        Assert.assertNull(TypeHelper.getSymbol(_vm, "java/lang/String").getComponentType());
+    }
+
+    @Test
+    public void testConstMethod() {
+        LabelNode[] labels = new LabelNode[5];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new LabelNode();
+        }
+        MethodNode method = new MethodNode(Opcodes.ACC_STATIC, "decode", "(I)I", null, null);
+        InsnList insns = method.instructions;
+        insns.add(labels[0]);
+        insns.add(new LineNumberNode(1, labels[0]));
+        insns.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        insns.add(new JumpInsnNode(Opcodes.IFEQ, labels[2]));
+        insns.add(new IincInsnNode(0, 5));
+        insns.add(labels[1]);
+        VarInsnNode load = new VarInsnNode(Opcodes.ILOAD, 0);
+        insns.add(load);
+        insns.add(new TableSwitchInsnNode(1, 2, labels[3], labels[2], labels[3]));
+        insns.add(labels[2]);
+        insns.add(new InsnNode(Opcodes.ICONST_0));
+        insns.add(new InsnNode(Opcodes.IRETURN));
+        insns.add(labels[3]);
+        insns.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        insns.add(new LookupSwitchInsnNode(labels[2], new int[]{10, 20}, new LabelNode[]{labels[3], labels[2]}));
+        insns.add(labels[4]);
+        ConstMethod code = _vm.getConstMethod(method);
+
+        // labels and line numbers take no pc, they map to the next instruction or past the end
+        Assert.assertEquals(9, code.length());
+        int[] labelPcs = {0, 3, 5, 7, 9};
+        for (int i = 0; i < labels.length; i++) {
+            Assert.assertEquals(labelPcs[i], code.pcOf(labels[i]));
+        }
+        Assert.assertSame(load, code.insnAt(3));
+        Assert.assertEquals(3, code.pcOf(load));
+        Assert.assertEquals(Opcodes.IINC, code.opcodeAt(2));
+        Assert.assertEquals(0, code.operandAt(2));
+        Assert.assertEquals(5, code.incrementAt(2));
+
+        Assert.assertEquals(ConstMethod.NO_TARGET, code.jumpTargetAt(0));
+        Assert.assertEquals(5, code.jumpTargetAt(1));
+        Assert.assertArrayEquals(new int[]{7, 5, 7}, code.switchTargetsAt(4));
+        Assert.assertArrayEquals(new int[]{1, 2}, code.switchKeysAt(4));
+        Assert.assertArrayEquals(new int[]{5, 7, 5}, code.switchTargetsAt(8));
+        Assert.assertArrayEquals(new int[]{10, 20}, code.switchKeysAt(8));
+        try {
+            code.pcOf(new InsnNode(Opcodes.NOP));
+            Assert.fail("Foreign instruction was mapped");
+        } catch (ExecutionException expected) {
+        }
+
+        // editing the method decodes it again
+        Assert.assertSame(code, _vm.getConstMethod(method));
+        insns.insert(new InsnNode(Opcodes.NOP));
+        Assert.assertTrue(code.isStale());
+        ConstMethod edited = _vm.getConstMethod(method);
+        Assert.assertEquals(10, edited.length());
+        Assert.assertEquals(6, edited.jumpTargetAt(2));
+    }
+
+    @Test
+    public void testExceptionTable() {
+        LabelNode[] labels = new LabelNode[5];
+        LabelNode[] handlers = new LabelNode[4];
+        MethodNode method = new MethodNode(Opcodes.ACC_STATIC, "handlers", "()V", null, null);
+        for (int pc = 0; pc < labels.length; pc++) {
+            labels[pc] = new LabelNode();
+            method.instructions.add(labels[pc]);
+            method.instructions.add(new InsnNode(pc == labels.length - 1 ? Opcodes.RETURN : Opcodes.NOP));
+        }
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = new LabelNode();
+            method.instructions.add(handlers[i]);
+            method.instructions.add(new InsnNode(Opcodes.RETURN));
+        }
+        // nested inside the second block, which overlaps the last one
+        method.tryCatchBlocks.add(new TryCatchBlockNode(labels[1], labels[2], handlers[0], "java/lang/IllegalArgumentException"));
+        method.tryCatchBlocks.add(new TryCatchBlockNode(labels[0], labels[1], handlers[1], "java/lang/Throwable"));
+        method.tryCatchBlocks.add(new TryCatchBlockNode(labels[0], labels[3], handlers[2], "java/lang/RuntimeException"));
+        method.tryCatchBlocks.add(new TryCatchBlockNode(labels[2], labels[4], handlers[3], null));
+        ExceptionTable table = _vm.getConstMethod(method).getExceptionTable();
+
+        JavaWrapper numberFormat = JavaWrapper.wrap(new JavaObject(JavaClass.forName(_vm, "java/lang/NumberFormatException")));
+        JavaWrapper illegalState = JavaWrapper.wrap(new JavaObject(JavaClass.forName(_vm, "java/lang/IllegalStateException")));
+        JavaWrapper error = JavaWrapper.wrap(new JavaObject(JavaClass.forName(_vm, "java/lang/Error")));
+        Assert.assertEquals(6, table.findHandler(0, numberFormat));
+        // the catch-all block ends exactly here
+        Assert.assertEquals(5, table.findHandler(1, numberFormat));
+        Assert.assertEquals(7, table.findHandler(1, illegalState));
+        Assert.assertEquals(7, table.findHandler(2, illegalState));
+        Assert.assertEquals(8, table.findHandler(2, error));
+        Assert.assertEquals(8, table.findHandler(3, illegalState));
+        Assert.assertEquals(ExceptionTable.NO_HANDLER, table.findHandler(4, error));
+    }
+
+    @Test
+    public void testSuperinstructions() throws Throwable {
+        String source = "public class FuseTest {\n" +
+                "    int value = 11;\n" +
+                "    public static int run(int seed) {\n" +
+                "        int[] ints = {3, 1, 4, 1, 5, 9, 2, 6};\n" +
+                "        byte[] bytes = {-1, 2, -3};\n" +
+                "        char[] chars = {'a', 'b'};\n" +
+                "        int total = load(ints, -1);\n" +
+                "        for (int i = 0; i < ints.length; i++) {\n" +
+                "            int a = ints[i];\n" +
+                "            int b = seed;\n" +
+                "            total += a + b;\n" +
+                "            total ^= a << 3;\n" +
+                "            total += b * 7 - (a >>> 1);\n" +
+                "            if (a < b) total++;\n" +
+                "            if (a == 5) total += 100;\n" +
+                "            total = total * 31 + load(ints, i) + load(bytes, i) + load(chars, i);\n" +
+                "        }\n" +
+                "        return total + field(new FuseTest()) + field(null);\n" +
+                "    }\n" +
+                "    static int load(int[] array, int index) {\n" +
+                "        try { return array[index]; } catch (ArrayIndexOutOfBoundsException e) { return -1; }\n" +
+                "    }\n" +
+                "    static int load(byte[] array, int index) {\n" +
+                "        try { return array[index]; } catch (ArrayIndexOutOfBoundsException e) { return -1; }\n" +
+                "    }\n" +
+                "    static int load(char[] array, int index) {\n" +
+                "        try { return array[index]; } catch (ArrayIndexOutOfBoundsException e) { return -1; }\n" +
+                "    }\n" +
+                "    static int field(FuseTest holder) {\n" +
+                "        try { return holder.value; } catch (NullPointerException e) { return -2; }\n" +
+                "    }\n" +
+                "    public static int mix(int a, int b) {\n" +
+                "        return a + b * 3;\n" +
+                "    }\n" +
+                "}";
+
+        File root = Files.createTempDirectory("test").toFile();
+        ClassNode target = compile(root, "FuseTest", source);
+        MethodNode run = ASMHelper.findMethod(target, "run", "(I)I");
+        MethodNode mix = ASMHelper.findMethod(target, "mix", "(II)I");
+        _vm.classpath(Arrays.asList(target));
+
+        int expected;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{root.toURI().toURL()}, null)) {
+            expected = (int) loader.loadClass("FuseTest").getMethod("run", int.class).invoke(null, 4);
+        }
+        int fused = _vm.execute(target, run, null, Arrays.asList(_vm.newInt(4)), new ExecutionOptions()).getReturnValue().asInt();
+        JavaWrapper fusedUnknown = _vm.execute(target, mix, null, Arrays.asList(JavaWrapper.wrap(new JavaUnknown(_vm, _vm.INTEGER, "test")), _vm.newInt(2)), new ExecutionOptions()).getReturnValue();
+
+        // observing instructions runs every one of them on its own
+        int[] observed = new int[1];
+        ExecutionListener listener = new ExecutionListener() {
+            @Override
+            public void onInstruction(MethodExecution execution, AbstractInsnNode insn, Stack stack, Locals locals) {
+                // labels and line numbers are reported too, but cost nothing
+                if (insn.getOpcode() >= 0) {
+                    observed[0]++;
+                }
+            }
+        };
+        _vm.addListener(listener, ExecutionListener.INSTRUCTION);
+        int unfused;
+        int executed;
+        JavaWrapper unfusedUnknown;
+        try {
+            unfused = _vm.execute(target, run, null, Arrays.asList(_vm.newInt(4)), new ExecutionOptions()).getReturnValue().asInt();
+            executed = observed[0];
+            unfusedUnknown = _vm.execute(target, mix, null, Arrays.asList(JavaWrapper.wrap(new JavaUnknown(_vm, _vm.INTEGER, "test")), _vm.newInt(2)), new ExecutionOptions()).getReturnValue();
+        } finally {
+            _vm.removeListener(listener);
+        }
+        Assert.assertTrue(observed[0] > 0);
+        Assert.assertEquals(expected, fused);
+        Assert.assertEquals(expected, unfused);
+        Assert.assertTrue(fusedUnknown.get() instanceof JavaUnknown);
+        Assert.assertTrue(unfusedUnknown.get() instanceof JavaUnknown);
+
+        // a fused sequence is charged for every instruction it covers
+        Assert.assertNull(_vm.execute(target, run, null, Arrays.asList(_vm.newInt(4)), new ExecutionOptions().maxInstructions(executed)).getAbortCause());
+        Assert.assertNotNull(_vm.execute(target, run, null, Arrays.asList(_vm.newInt(4)), new ExecutionOptions().maxInstructions(executed - 1)).getAbortCause());
+    }
+
+    @Test
+    public void testListeners() throws Throwable {
+        String source = "public class EventTest {\n" +
+                "    public static int run() {\n" +
+                "        Object object = new Object();\n" +
+                "        int[] ints = new int[2];\n" +
+                "        try {\n" +
+                "            fail();\n" +
+                "        } catch (IllegalStateException e) {\n" +
+                "        }\n" +
+                "        return helper(ints.length);\n" +
+                "    }\n" +
+                "    static void fail() {\n" +
+                "        throw new IllegalStateException();\n" +
+                "    }\n" +
+                "    static int helper(int x) {\n" +
+                "        return x + 1;\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("EventTest", source);
+        MethodNode run = ASMHelper.findMethod(target, "run", "()I");
+        _vm.classpath(Arrays.asList(target));
+
+        // library code runs too, only the events of EventTest's own frames are recorded
+        List<String> all = new ArrayList<>();
+        List<String> calls = new ArrayList<>();
+        class Recorder implements ExecutionListener {
+            private final List<String> events;
+
+            Recorder(List<String> events) {
+                this.events = events;
+            }
+
+            @Override
+            public void onInstruction(MethodExecution execution, AbstractInsnNode insn, Stack stack, Locals locals) {
+                if (execution.getClassNode() == target && insn.getOpcode() == Opcodes.IRETURN) {
+                    events.add("instruction " + execution.getMethodNode().name);
+                }
+            }
+
+            @Override
+            public void onCall(ClassNode classNode, MethodNode methodNode, JavaWrapper instance, JavaWrapper[] args) {
+                if (classNode == target) {
+                    events.add("call " + methodNode.name);
+                }
+            }
+
+            @Override
+            public void onReturn(ClassNode classNode, MethodNode methodNode, JavaWrapper result) {
+                if (classNode == target) {
+                    events.add("return " + methodNode.name + " " + (result == null ? null : result.asInt()));
+                }
+            }
+
+            @Override
+            public void onException(MethodExecution execution, AbstractInsnNode insn, JavaWrapper exception) {
+                if (execution.getClassNode() == target) {
+                    events.add("exception " + execution.getMethodNode().name + " " + exception.getJavaClass().getClassNode().name);
+                }
+            }
+
+            @Override
+            public void onAllocation(MethodExecution execution, AbstractInsnNode insn, JavaWrapper value) {
+                if (execution.getClassNode() == target) {
+                    events.add("allocation " + execution.getMethodNode().name + " " + value.getJavaClass().getClassNode().name);
+                }
+            }
+        }
+        Recorder everything = new Recorder(all);
+        Recorder callsOnly = new Recorder(calls);
+        _vm.addListener(everything, ExecutionListener.ALL);
+        _vm.addListener(callsOnly, ExecutionListener.CALL);
+        try {
+            Assert.assertEquals(3, _vm.execute(target, run, null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt());
+        } finally {
+            _vm.removeListener(everything);
+        }
+        Assert.assertEquals(Arrays.asList(
+                "call run",
+                "allocation run java/lang/Object",
+                "allocation run [I",
+                "call fail",
+                "allocation fail java/lang/IllegalStateException",
+                // once where it's thrown and once in every frame it unwinds through
+                "exception fail java/lang/IllegalStateException",
+                "exception run java/lang/IllegalStateException",
+                "call helper",
+                "instruction helper",
+                "return helper 3",
+                "instruction run",
+                "return run 3"
+        ), all);
+        // the other listener only subscribed to calls
+        Assert.assertEquals(Arrays.asList("call run", "call fail", "call helper"), calls);
+
+        // removed listeners hear nothing, the others keep listening
+        all.clear();
+        calls.clear();
+        try {
+            _vm.execute(target, run, null, Collections.emptyList(), new ExecutionOptions());
+        } finally {
+            _vm.removeListener(callsOnly);
+        }
+        Assert.assertTrue(all.isEmpty());
+        Assert.assertEquals(Arrays.asList("call run", "call fail", "call helper"), calls);
+    }
+
+    @Test
+    public void testInlineCaches() throws Throwable {
+        String source = "public class CacheTest {\n" +
+                "    static int value() { return 1; }\n" +
+                "    public static int run() { return value(); }\n" +
+                "    public static String describe() {\n" +
+                "        StringBuilder builder = new StringBuilder();\n" +
+                "        for (Object value : new Object[]{1, 2L, 'c', true, \"s\", (short) 3, (byte) 4}) {\n" +
+                "            builder.append(value.toString()).append(',');\n" +
+                "        }\n" +
+                "        return builder.toString();\n" +
+                "    }\n" +
+                "}";
+
+        ClassNode target = compile("CacheTest", source);
+        MethodNode run = ASMHelper.findMethod(target, "run", "()I");
+        MethodNode describe = ASMHelper.findMethod(target, "describe", "()Ljava/lang/String;");
+        _vm.classpath(Arrays.asList(target));
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(1, _vm.execute(target, run, null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt());
+        }
+        // registering a hook has to drop the target the call site already cached
+        _vm.hook(new HookedMethod("CacheTest", "value", "()I").bind((HookedMethod.Hook) (ctx, inst, args) -> _vm.newInt(2)));
+        Assert.assertEquals(2, _vm.execute(target, run, null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt());
+
+        // one call site sees more receiver classes than it will remember
+        for (int i = 0; i < 2; i++) {
+            JavaWrapper described = _vm.execute(target, describe, null, Collections.emptyList(), new ExecutionOptions()).getReturnValue();
+            Assert.assertEquals("1,2,c,true,s,3,4,", _vm.convertJavaObjectToString(described));
+        }
+        ConstMethod code = _vm.getConstMethod(describe);
+        boolean megamorphic = false;
+        for (int pc = 0; pc < code.length(); pc++) {
+            InlineCache cache = code.inlineCacheAt(pc);
+            if (cache != null && ((MethodInsnNode) code.insnAt(pc)).name.equals("toString") && ((MethodInsnNode) code.insnAt(pc)).owner.equals("java/lang/Object")) {
+                megamorphic = cache.isMegamorphic();
+            }
+        }
+        Assert.assertTrue(megamorphic);
+    }
+
+    @Test
+    public void testResolvedReferences() throws Throwable {
+        String source = "public class LinkTest {\n" +
+                "    static int counter = 1;\n" +
+                "    public static int read() { return counter; }\n" +
+                "    public static Object make() { return new StringBuilder(); }\n" +
+                "}";
+
+        ClassNode target = compile("LinkTest", source);
+        MethodNode read = ASMHelper.findMethod(target, "read", "()I");
+        MethodNode make = ASMHelper.findMethod(target, "make", "()Ljava/lang/Object;");
+        _vm.classpath(Arrays.asList(target));
+
+        Assert.assertEquals(1, _vm.execute(target, read, null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt());
+        ConstMethod readCode = _vm.getConstMethod(read);
+        int getstatic = 0;
+        while (readCode.opcodeAt(getstatic) != Opcodes.GETSTATIC) {
+            getstatic++;
+        }
+        ResolvedField field = (ResolvedField) readCode.resolvedAt(getstatic);
+        Assert.assertEquals("LinkTest", field.getDeclaringClass().getClassNode().name);
+        Assert.assertNull(field.getGetter());
+        Assert.assertSame(field, ResolvedField.resolve(_vm, readCode, getstatic));
+
+        // a new hook has to be picked up by the instruction that already resolved the field
+        _vm.hook(new HookedFieldGetter("LinkTest", "counter", "I").bind((ctx, inst) -> _vm.newInt(5)));
+        Assert.assertEquals(5, _vm.execute(target, read, null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt());
+        ResolvedField hooked = (ResolvedField) readCode.resolvedAt(getstatic);
+        Assert.assertNotSame(field, hooked);
+        Assert.assertNotNull(hooked.getGetter());
+
+        _vm.execute(target, make, null, Collections.emptyList(), new ExecutionOptions());
+        ConstMethod makeCode = _vm.getConstMethod(make);
+        int allocation = 0;
+        while (makeCode.opcodeAt(allocation) != Opcodes.NEW) {
+            allocation++;
+        }
+        ResolvedType type = ResolvedType.lookup(_vm, makeCode, allocation);
+        Assert.assertEquals("java/lang/StringBuilder", type.getJavaClass().getClassNode().name);
+
+        // so does a change to the classpath
+        _vm.classpath(Collections.emptyList());
+        Assert.assertNull(ResolvedType.lookup(_vm, makeCode, allocation));
+        _vm.execute(target, make, null, Collections.emptyList(), new ExecutionOptions());
+        ResolvedType relinked = ResolvedType.lookup(_vm, makeCode, allocation);
+        Assert.assertNotSame(type, relinked);
+        Assert.assertSame(type.getJavaClass(), relinked.getJavaClass());
+    }
+
+    @Test
+    public void testForkedFrames() {
+        JavaWrapper object = JavaWrapper.wrap(new JavaObject(_vm.getSystemDictionary().getJavaLangObject()));
+        Stack stack = new Stack(_vm);
+        stack.pushInt(1);
+        stack.push(object);
+        stack.pushLong(3L);
+
+        // writing to the fork leaves the original alone
+        Stack fork = stack.copy();
+        Assert.assertEquals(3L, fork.popLong());
+        fork.pushInt(7);
+        Assert.assertEquals(4, stack.size());
+        Assert.assertEquals(3L, stack.popLong());
+        Assert.assertSame(object, stack.pop());
+        // and popping the original doesn't clear the slots the fork still sees
+        Assert.assertEquals(1, stack.popInt());
+        Assert.assertEquals(7, fork.popInt());
+        Assert.assertSame(object, fork.pop());
+        Assert.assertEquals(1, fork.popInt());
+
+        // the same the other way around
+        stack.pushInt(2);
+        fork = stack.copy();
+        stack.pop();
+        stack.push(object);
+        Assert.assertEquals(1, fork.size());
+        Assert.assertEquals(2, fork.popInt());
+
+        Locals locals = new Locals(_vm, 4);
+        locals.setInt(0, 1);
+        locals.set(1, object);
+        locals.setLong(2, 5L);
+        Locals forked = locals.copy();
+        forked.setInt(0, 9);
+        forked.remove(1);
+        Assert.assertEquals(1, locals.getInt(0));
+        Assert.assertSame(object, locals.get(1));
+        Assert.assertEquals(5L, locals.getLong(2));
+        Assert.assertEquals(9, forked.getInt(0));
+        Assert.assertEquals(5L, forked.getLong(2));
+
+        forked = locals.copy();
+        locals.clear();
+        locals.setLong(2, 6L);
+        Assert.assertEquals(1, forked.getInt(0));
+        Assert.assertSame(object, forked.get(1));
+        Assert.assertEquals(5L, forked.getLong(2));
+    }
+
+    @Test
+    public void testFramePool() throws Throwable {
+        String source = "public class PoolTest {\n" +
+                "    public static int unwind() {\n" +
+                "        int total = 0;\n" +
+                "        for (int i = 0; i < 10; i++) {\n" +
+                "            try {\n" +
+                "                fail(i);\n" +
+                "            } catch (IllegalStateException e) {\n" +
+                "                total = total * 31 + sum(i);\n" +
+                "            }\n" +
+                "        }\n" +
+                "        return total;\n" +
+                "    }\n" +
+                "    public static int forked(int x) {\n" +
+                "        sum(20);\n" +
+                "        return branch(x);\n" +
+                "    }\n" +
+                "    static int branch(int x) {\n" +
+                "        int local = sum(3);\n" +
+                "        if (x == 0) return local + 1;\n" +
+                "        return local + 2;\n" +
+                "    }\n" +
+                "    static void fail(int n) {\n" +
+                "        int[] garbage = new int[n + 1];\n" +
+                "        if (n == 0) throw new IllegalStateException();\n" +
+                "        fail(n - 1);\n" +
+                "    }\n" +
+                "    static int sum(int n) {\n" +
+                "        return n == 0 ? 0 : n + sum(n - 1);\n" +
+                "    }\n" +
+                "}";
+
+        File root = Files.createTempDirectory("test").toFile();
+        ClassNode target = compile(root, "PoolTest", source);
+        _vm.classpath(Arrays.asList(target));
+
+        int expected;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{root.toURI().toURL()}, null)) {
+            expected = (int) loader.loadClass("PoolTest").getMethod("unwind").invoke(null);
+        }
+        VirtualMachine.FRAME_STACK = true;
+        try {
+            // exceptions unwind through pooled frames, which the calls after them reuse
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(expected, _vm.execute(target, ASMHelper.findMethod(target, "unwind", "()I"), null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt());
+            }
+
+            // the paths share the stack and locals of a pooled frame, which goes back to the pool and is reused
+            JavaWrapper forked = _vm.execute(target, ASMHelper.findMethod(target, "forked", "(I)I"), null, Collections.emptyList(), new ExecutionOptions()).getReturnValue();
+            Assert.assertEquals(expected, _vm.execute(target, ASMHelper.findMethod(target, "unwind", "()I"), null, Collections.emptyList(), new ExecutionOptions()).getReturnValue().asInt());
+            List<PathResult> paths = ((JavaUnknown) forked.get()).getPaths();
+            Assert.assertEquals(2, paths.size());
+            // the jump is taken first
+            Assert.assertEquals(8, paths.get(0).getValue().asInt());
+            Assert.assertEquals(7, paths.get(1).getValue().asInt());
+        } finally {
+            VirtualMachine.FRAME_STACK = false;
+        }
+    }
+}
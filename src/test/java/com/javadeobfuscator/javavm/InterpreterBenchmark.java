@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.javadeobfuscator.javavm;
+
+import com.javadeobfuscator.javavm.utils.ASMHelper;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.javadeobfuscator.javavm.TestHelper.*;
+
+/**
+ * Times the interpreter on a few typical workloads. Not a test, run its main method on the test classpath, before and
+ * after a change:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) com.javadeobfuscator.javavm.InterpreterBenchmark
+ * </pre>
+ * Every workload runs {@link #ROUNDS} times in one VM after full initialization. The median of the last
+ * {@link #MEASURED} rounds is printed, so the first rounds warm up the host JIT and the VM's caches.
+ */
+public class InterpreterBenchmark {
+    private static final int ROUNDS = 12;
+    private static final int MEASURED = 5;
+
+    private static final String SOURCE = "public class Bench {\n" +
+            "    public static int decrypt() {\n" +
+            "        int total = 0;\n" +
+            "        for (int n = 0; n < 200; n++) {\n" +
+            "            char[] chars = \"aXk2!pQz9_Lm3#Rt7&Vb1*Nc5^Yw0%Gh\".concat(\"12345678\").toCharArray();\n" +
+            "            for (int i = 0; i < chars.length; i++) {\n" +
+            "                chars[i] = (char) (chars[i] ^ (n + i * 31) & 0x1F);\n" +
+            "            }\n" +
+            "            total += new String(chars).hashCode();\n" +
+            "        }\n" +
+            "        return total;\n" +
+            "    }\n" +
+            "\n" +
+            "    public static int arithmetic() {\n" +
+            "        int h = 17;\n" +
+            "        for (int i = 0; i < 200000; i++) {\n" +
+            "            h = (h * 31 + i) ^ (h >>> 7);\n" +
+            "        }\n" +
+            "        return h;\n" +
+            "    }\n" +
+            "\n" +
+            "    public static int fib() {\n" +
+            "        return fib(20);\n" +
+            "    }\n" +
+            "\n" +
+            "    private static int fib(int n) {\n" +
+            "        return n < 2 ? n : fib(n - 1) + fib(n - 2);\n" +
+            "    }\n" +
+            "\n" +
+            "    public static int collections() {\n" +
+            "        java.util.Map<String, Integer> map = new java.util.HashMap<>();\n" +
+            "        for (int i = 0; i < 2000; i++) {\n" +
+            "            map.put(new StringBuilder().append(\"key\").append(i).toString(), i);\n" +
+            "        }\n" +
+            "        return map.size();\n" +
+            "    }\n" +
+            "\n" +
+            "    public static int exceptions() {\n" +
+            "        int caught = 0;\n" +
+            "        for (int i = 0; i < 2000; i++) {\n" +
+            "            try {\n" +
+            "                throw new IllegalStateException();\n" +
+            "            } catch (IllegalStateException e) {\n" +
+            "                caught++;\n" +
+            "            }\n" +
+            "        }\n" +
+            "        return caught;\n" +
+            "    }\n" +
+            "}";
+
+    public static void main(String[] args) throws Exception {
+        String lib = System.getProperty("java.home") + File.separator + "lib" + File.separator;
+        List<byte[]> jvmFiles = new ArrayList<>();
+        jvmFiles.addAll(loadBytes(new File(lib + "rt.jar")));
+        jvmFiles.addAll(loadBytes(new File(lib + "jce.jar")));
+        jvmFiles.addAll(loadBytes(new File(lib + "jsse.jar")));
+
+        VirtualMachine vm = new VirtualMachine(jvmFiles);
+        vm.fullInitialization();
+        try {
+            ClassNode bench = compile("Bench", SOURCE);
+            vm.classpath(Collections.singletonList(bench));
+            for (String workload : Arrays.asList("decrypt", "arithmetic", "fib", "collections", "exceptions")) {
+                MethodNode method = ASMHelper.findMethod(bench, workload, "()I");
+                long[] times = new long[ROUNDS];
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    vm.execute(bench, method, null, Collections.emptyList(), new ExecutionOptions());
+                    times[round] = System.nanoTime() - start;
+                }
+                long[] measured = Arrays.copyOfRange(times, ROUNDS - MEASURED, ROUNDS);
+                Arrays.sort(measured);
+                System.out.printf("%-12s %8.2fms%n", workload, measured[MEASURED / 2] / 1e6);
+            }
+        } finally {
+            vm.shutdown();
+        }
+    }
+}
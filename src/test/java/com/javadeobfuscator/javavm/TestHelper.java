@@ -3,8 +3,11 @@ package com.javadeobfuscator.javavm;
 import org.objectweb.asm.tree.*;
 import org.objectweb.asm.ClassReader;
 
+import javax.tools.*;
 import java.io.*;
 import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
 import java.util.*;
 import java.util.zip.*;
 
@@ -60,4 +63,22 @@ public class TestHelper {
 
         return map;
     }
-}
\ No newline at end of file
+
+    public static ClassNode compile(String className, String source) throws IOException {
+        return compile(Files.createTempDirectory("test").toFile(), className, source);
+    }
+
+    /*
+     * Compiles a single top-level class into the given directory, so that the host can load it from there too
+     */
+    public static ClassNode compile(File root, String className, String source) throws IOException {
+        File sourceFile = new File(root, className + ".java");
+        Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler.run(null, null, null, sourceFile.getPath()) != 0) {
+            throw new IllegalStateException("Could not compile " + className);
+        }
+        return load(new File(root, className + ".class")).get(className);
+    }
+}